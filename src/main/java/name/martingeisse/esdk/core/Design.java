@@ -5,6 +5,9 @@
 package name.martingeisse.esdk.core;
 
 import name.martingeisse.esdk.core.library.signal.BitConstant;
+import name.martingeisse.esdk.core.library.signal.getter.LevelizedEvaluator;
+import name.martingeisse.esdk.core.library.signal.getter.SignalCache;
+import name.martingeisse.esdk.core.tools.optimization.SignalOptimizer;
 import name.martingeisse.esdk.core.tools.validation.DesignValidationResult;
 import name.martingeisse.esdk.core.tools.validation.DesignValidator;
 import name.martingeisse.esdk.core.tools.validation.ValidationException;
@@ -20,7 +23,15 @@ public class Design {
 
     private final List<DesignItem> items = new ArrayList<>();
     private boolean constructionFinalized;
+    private boolean signalOptimizationEnabled = false;
+    private final SignalOptimizer signalOptimizer = new SignalOptimizer(this);
+    private final SignalCache signalCache = new SignalCache(this);
     private Simulation simulation;
+    private boolean partitionedSimulationEnabled = false;
+    private long partitionedSimulationSyncInterval = 0;
+    private boolean levelizedSimulationEnabled = false;
+    private LevelizedEvaluator levelizedEvaluator;
+    private boolean quiescenceDetectionEnabled = false;
 
     /**
      * Note: This constructor sets this design to be used as the implicit design for new items.
@@ -82,24 +93,157 @@ public class Design {
         for (DesignItem item : items) {
             item.finalizeConstructionAfterValidation();
         }
+        if (signalOptimizationEnabled) {
+            signalOptimizer.optimize();
+        }
         constructionFinalized = true;
     }
 
+    public final boolean isSignalOptimizationEnabled() {
+        return signalOptimizationEnabled;
+    }
+
+    /**
+     * Enables or disables the simplification of signals when construction gets finalized (disabled by default). See
+     * {@link SignalOptimizer}. This does not change the simulated behavior or the meaning of the generated Verilog
+     * code, but the generated Verilog code leaves out combinational logic that is unused after simplification, unless
+     * it has been named or declared explicitly. Must be called before construction is finalized.
+     */
+    public final void setSignalOptimizationEnabled(boolean signalOptimizationEnabled) {
+        if (constructionFinalized) {
+            throw new IllegalStateException("construction already finalized");
+        }
+        this.signalOptimizationEnabled = signalOptimizationEnabled;
+    }
+
+    /**
+     * Returns the optimizer that maps the signals of this design to simplified signals. Before construction has been
+     * finalized, or if signal optimization is disabled, each signal is mapped to itself.
+     */
+    public final SignalOptimizer getSignalOptimizer() {
+        return signalOptimizer;
+    }
+
+    /**
+     * Returns the cache used by the generated simulation code of this design for signals that are used in more than
+     * one place.
+     */
+    public final SignalCache getSignalCache() {
+        return signalCache;
+    }
+
     // ----------------------------------------------------------------------------------------------------------------
     // simulation
     // ----------------------------------------------------------------------------------------------------------------
 
+    public final boolean isPartitionedSimulationEnabled() {
+        return partitionedSimulationEnabled;
+    }
+
+    public final long getPartitionedSimulationSyncInterval() {
+        return partitionedSimulationSyncInterval;
+    }
+
+    /**
+     * Enables or disables partitioned simulation, which simulates independent clock domains on separate threads
+     * and exchanges the values of signals that cross domains only at synchronization points. Unlike the other
+     * simulation options, this does change the simulated behavior, because a domain sees the values of registers from other
+     * domains with a delay of up to one synchronization interval. Clock domains that share other state, such as memories,
+     * are simulated together.
+     * <p>
+     * The sync interval is the maximum number of ticks between synchronization points. It must be positive and is
+     * not chosen automatically, since it determines how far cross-domain reads lag behind: a multiple of the
+     * hyperperiod of the clocks, at which all their edges coincide, keeps the pattern of synchronization points
+     * regular. It is ignored when partitioned simulation is disabled. Must be called before the simulation is
+     * prepared.
+     */
+    public final void setPartitionedSimulationEnabled(boolean partitionedSimulationEnabled, long syncInterval) {
+        if (simulation != null) {
+            throw new IllegalStateException("simulation already prepared");
+        }
+        if (partitionedSimulationEnabled && syncInterval < 1) {
+            throw new IllegalArgumentException("syncInterval must be positive");
+        }
+        this.partitionedSimulationEnabled = partitionedSimulationEnabled;
+        this.partitionedSimulationSyncInterval = syncInterval;
+    }
+
+    public final boolean isLevelizedSimulationEnabled() {
+        return levelizedSimulationEnabled;
+    }
+
+    /**
+     * Enables or disables levelized simulation. When enabled, all combinational signals get sorted into levels when
+     * the simulation is prepared, and get computed level by level at the start of each clock edge by a
+     * {@link LevelizedEvaluator}, instead of being computed on demand by the clocked blocks that use them. This does
+     * not change the simulated behavior, but fails if the design contains a combinational loop. It is ignored when
+     * partitioned simulation is enabled. Must be called before the simulation is prepared.
+     */
+    public final void setLevelizedSimulationEnabled(boolean levelizedSimulationEnabled) {
+        if (simulation != null) {
+            throw new IllegalStateException("simulation already prepared");
+        }
+        this.levelizedSimulationEnabled = levelizedSimulationEnabled;
+    }
+
+    /**
+     * Returns the evaluator used for levelized simulation, or null if the simulation has not been prepared yet or does
+     * not use levelized simulation.
+     */
+    public final LevelizedEvaluator getLevelizedEvaluator() {
+        return levelizedEvaluator;
+    }
+
+    public final boolean isQuiescenceDetectionEnabled() {
+        return quiescenceDetectionEnabled;
+    }
+
+    /**
+     * Enables or disables quiescence detection. When enabled, the simulation detects that the clock edges from clock
+     * generators do not change the state of the design anymore, except for free-running counters, and then skips
+     * ahead to the next one-shot event, advancing the counters by the number of skipped clock edges. This does not
+     * change the simulated behavior. It pays off for designs that wait for a timer or testbench event for a long
+     * time, and only works if all clocked items of those clocks have observable state; see
+     * {@link QuiescenceDetector}. It is ignored when partitioned simulation is enabled. Must be called before the
+     * simulation is prepared.
+     */
+    public final void setQuiescenceDetectionEnabled(boolean quiescenceDetectionEnabled) {
+        if (simulation != null) {
+            throw new IllegalStateException("simulation already prepared");
+        }
+        this.quiescenceDetectionEnabled = quiescenceDetectionEnabled;
+    }
+
     public final void simulate() {
         prepareSimulation();
         continueSimulation();
     }
 
+    /**
+     * Prepares the simulation using a {@link TimingWheelEventScheduler}, which works well for designs whose events
+     * are mostly scheduled a few ticks ahead, such as clock edges.
+     */
     public final void prepareSimulation() {
+        prepareSimulation(new TimingWheelEventScheduler());
+    }
+
+    public final void prepareSimulation(EventScheduler scheduler) {
+        if (scheduler == null) {
+            throw new IllegalArgumentException("scheduler cannot be null");
+        }
         if (simulation != null) {
             throw new IllegalStateException("simulation already prepared");
         }
         finalizeConstruction();
-        simulation = new Simulation();
+        simulation = new Simulation(scheduler);
+        if (partitionedSimulationEnabled) {
+            simulation.enablePartitioning(this, partitionedSimulationSyncInterval);
+        } else if (levelizedSimulationEnabled) {
+            levelizedEvaluator = LevelizedEvaluator.create(this);
+        }
+        if (quiescenceDetectionEnabled && !partitionedSimulationEnabled) {
+            simulation.enableQuiescenceDetection(this);
+        }
         for (DesignItem item : items) {
             item.initializeSimulation();
         }
@@ -120,6 +264,16 @@ public class Design {
         simulation.fire(eventCallback, ticks);
     }
 
+    /**
+     * Fires the specified callback periodically, for the first time after (offset) ticks and then every (period)
+     * ticks until the simulation ends. The callback is reused for every occurrence, so this does not allocate
+     * anything per occurrence, unlike a callback that re-fires itself.
+     */
+    public final void fireEvery(Runnable eventCallback, long period, long offset) {
+        needSimulation();
+        simulation.fireEvery(eventCallback, period, offset);
+    }
+
     private void needSimulation() {
         if (simulation == null) {
             throw new IllegalStateException("simulation not prepared");
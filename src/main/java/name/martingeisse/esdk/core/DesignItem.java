@@ -155,6 +155,13 @@ public abstract class DesignItem implements DesignItemOwned {
 		design.fire(callback, ticks);
 	}
 
+	/**
+	 * Convenience method to fire a periodic simulation event.
+	 */
+	protected final void fireEvery(Runnable callback, long period, long offset) {
+		design.fireEvery(callback, period, offset);
+	}
+
 	// ----------------------------------------------------------------------------------------------------------------
 	// synthesis
 	// ----------------------------------------------------------------------------------------------------------------
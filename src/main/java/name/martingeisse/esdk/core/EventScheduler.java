@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2018 Martin Geisse
+ * This file is distributed under the terms of the MIT license.
+ */
+package name.martingeisse.esdk.core;
+
+import java.util.List;
+
+/**
+ * Holds the pending events of a simulation, ordered by the simulation time at which they happen. The simulation
+ * takes events off the scheduler in batches: All events scheduled for the same point in time are removed as a whole,
+ * which is what the delta-cycle semantics of the simulation are built on (see {@link Simulation}).
+ *
+ * Times passed to {@link #schedule(long, Runnable)} must not be earlier than the time of the last batch removed from
+ * this scheduler. The simulation guarantees this since it never schedules events in the past.
+ *
+ * Implementations are not thread-safe.
+ */
+public interface EventScheduler {
+
+	/**
+	 * Adds an event to this scheduler.
+	 */
+	void schedule(long when, Runnable callback);
+
+	/**
+	 * Checks whether any events are pending.
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Returns the time of the earliest pending event. Must not be called if this scheduler is empty.
+	 */
+	long getNextTime();
+
+	/**
+	 * Removes all events scheduled for the earliest pending time and adds their callbacks to the specified list.
+	 * Must not be called if this scheduler is empty.
+	 *
+	 * @return the time of the removed events
+	 */
+	long removeNextBatch(List<Runnable> batch);
+
+}
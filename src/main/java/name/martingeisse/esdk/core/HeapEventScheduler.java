@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018 Martin Geisse
+ * This file is distributed under the terms of the MIT license.
+ */
+package name.martingeisse.esdk.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simple scheduler that keeps all events in a binary heap. Insertion and extraction are O(log n), independent of
+ * how far in the future an event is scheduled.
+ *
+ * The heap is stored in parallel arrays instead of event objects, so scheduling an event does not allocate anything
+ * once the arrays have grown to their working size. Events for the same time are ordered by a sequence number, so
+ * within a batch, events are returned in the order they were scheduled.
+ */
+public final class HeapEventScheduler implements EventScheduler {
+
+	private long[] times = new long[16];
+	private long[] sequenceNumbers = new long[16];
+	private Runnable[] callbacks = new Runnable[16];
+	private int size = 0;
+	private long sequenceCounter = 0;
+
+	@Override
+	public void schedule(long when, Runnable callback) {
+		if (size == times.length) {
+			int newLength = size * 2;
+			times = Arrays.copyOf(times, newLength);
+			sequenceNumbers = Arrays.copyOf(sequenceNumbers, newLength);
+			callbacks = Arrays.copyOf(callbacks, newLength);
+		}
+		long sequenceNumber = sequenceCounter++;
+		int index = size;
+		size++;
+		while (index > 0) {
+			int parent = (index - 1) >> 1;
+			if (!isBefore(when, sequenceNumber, parent)) {
+				break;
+			}
+			move(parent, index);
+			index = parent;
+		}
+		set(index, when, sequenceNumber, callback);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public long getNextTime() {
+		if (size == 0) {
+			throw new IllegalStateException("no pending events");
+		}
+		return times[0];
+	}
+
+	@Override
+	public long removeNextBatch(List<Runnable> batch) {
+		long when = getNextTime();
+		while (size > 0 && times[0] == when) {
+			batch.add(callbacks[0]);
+			removeFirst();
+		}
+		return when;
+	}
+
+	private void removeFirst() {
+		size--;
+		long lastTime = times[size];
+		long lastSequenceNumber = sequenceNumbers[size];
+		Runnable lastCallback = callbacks[size];
+		callbacks[size] = null;
+		if (size == 0) {
+			return;
+		}
+		int index = 0;
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && isBefore(times[child + 1], sequenceNumbers[child + 1], child)) {
+				child++;
+			}
+			if (!isBefore(times[child], sequenceNumbers[child], lastTime, lastSequenceNumber)) {
+				break;
+			}
+			move(child, index);
+			index = child;
+		}
+		set(index, lastTime, lastSequenceNumber, lastCallback);
+	}
+
+	private boolean isBefore(long time, long sequenceNumber, int index) {
+		return isBefore(time, sequenceNumber, times[index], sequenceNumbers[index]);
+	}
+
+	private static boolean isBefore(long time1, long sequenceNumber1, long time2, long sequenceNumber2) {
+		return time1 < time2 || (time1 == time2 && sequenceNumber1 < sequenceNumber2);
+	}
+
+	private void move(int from, int to) {
+		set(to, times[from], sequenceNumbers[from], callbacks[from]);
+	}
+
+	private void set(int index, long time, long sequenceNumber, Runnable callback) {
+		times[index] = time;
+		sequenceNumbers[index] = sequenceNumber;
+		callbacks[index] = callback;
+	}
+
+}
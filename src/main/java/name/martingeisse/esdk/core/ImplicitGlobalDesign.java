@@ -25,6 +25,14 @@ public final class ImplicitGlobalDesign {
         return holder.get();
     }
 
+    /**
+     * Removes the implicit design for the current thread. Threads that are reused for multiple designs, such as pool
+     * threads, should call this when done with a design, so the thread does not keep it alive.
+     */
+    public static void clear() {
+        holder.remove();
+    }
+
     public static Design getOrFail() {
         Design design = get();
         if (design == null) {
@@ -0,0 +1,523 @@
+/*
+ * Copyright (c) 2018 Martin Geisse
+ * This file is distributed under the terms of the MIT license.
+ */
+package name.martingeisse.esdk.core;
+
+import name.martingeisse.esdk.core.library.clocked.Clock;
+import name.martingeisse.esdk.core.library.clocked.ClockedItem;
+import name.martingeisse.esdk.core.library.memory.Memory;
+import name.martingeisse.esdk.core.library.memory.MemoryPort;
+import name.martingeisse.esdk.core.library.memory.SynchronousMemoryPort;
+import name.martingeisse.esdk.core.library.procedural.ClockedBlock;
+import name.martingeisse.esdk.core.library.procedural.ProceduralMemory;
+import name.martingeisse.esdk.core.library.procedural.ProceduralRegister;
+import name.martingeisse.esdk.core.library.signal.Signal;
+import name.martingeisse.esdk.core.library.signal.connector.SignalConnector;
+import name.martingeisse.esdk.core.library.simulation.ClockGenerator;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.SignalUsageConsumer;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.FakeVerilogExpressionWriter;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExpressionNesting;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExpressionWriter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Simulates independent clock domains on separate threads.
+ *
+ * Each clock that is driven by a {@link ClockGenerator} forms a clock domain, consisting of the clocked items that
+ * use that clock. Domains that share state other than procedural registers -- for example, a memory that is
+ * written in one domain and read in another, or the output of a simulation item from another domain -- are merged
+ * into a single partition. The signals read by each clocked item are discovered from the signal graph by re-using
+ * the signal usage analysis of Verilog generation; items that cannot be analyzed that way (such as simulation-only
+ * items) are assumed to read procedural registers from any partition. Since such an item may also change any state
+ * other than registers, for example a settable signal, its domain is merged with all domains that read such state,
+ * i.e. that read memories or signals that cannot be analyzed either.
+ *
+ * The simulation then alternates between two phases:
+ * - At a synchronization point, all events for that point in time are processed on the calling thread, exactly as
+ *   in sequential simulation. This includes one-shot events, periodic events that are not clock generators,
+ *   and clock edges that happen to occur at that time.
+ * - Between synchronization points (a "window"), each partition runs its clock edges on its own thread. Procedural
+ *   registers that are read across partitions are double-buffered: other partitions see the value from the start of
+ *   the window. All other state is either private to one partition or only changed at synchronization points.
+ *
+ * Synchronization points are the times of events other than clock edges, plus at least one point per sync interval.
+ * The sync interval is chosen by the caller, since it trades accuracy for speed: a domain sees registers from other
+ * domains with a delay of up to one sync interval; this is fine for designs that treat clock domain
+ * crossings as asynchronous anyway, but it does change the simulated behavior compared to sequential simulation.
+ *
+ * Events fired from within a window are deferred to the end of the window. Stopping the simulation from within a
+ * window stops each partition before its next clock edge.
+ */
+final class PartitionedSimulation {
+
+	private final Simulation simulation;
+	private final SimulationPartition[] partitions;
+	private final int[][] partitionSlots;
+	private final Set<Integer> clockSlots;
+	private final long syncInterval;
+	private final ThreadLocal<Integer> currentPartitionIndex = new ThreadLocal<>();
+	private final long[] partitionTimes;
+	private final List<DeferredEvent> deferredEvents = new ArrayList<>();
+	private final Throwable[] failures;
+	private CyclicBarrier barrier;
+	private boolean windowActive;
+	private boolean terminate;
+	private long windowEnd;
+
+	private PartitionedSimulation(Simulation simulation, SimulationPartition[] partitions, int[][] partitionSlots, long syncInterval) {
+		this.simulation = simulation;
+		this.partitions = partitions;
+		this.partitionSlots = partitionSlots;
+		this.clockSlots = new HashSet<>();
+		for (int[] slots : partitionSlots) {
+			for (int slot : slots) {
+				clockSlots.add(slot);
+			}
+		}
+		this.syncInterval = syncInterval;
+		this.partitionTimes = new long[partitions.length];
+		this.failures = new Throwable[partitions.length];
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+	// partitioning
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Partitions the design, or returns null if the design has fewer than two independent partitions.
+	 */
+	static PartitionedSimulation create(Design design, Simulation simulation, long syncInterval) {
+
+		// find the clocks driven by clock generators, and the periodic event slots of those generators
+		Map<Clock, List<Integer>> clockToSlots = new IdentityHashMap<>();
+		List<Clock> clocks = new ArrayList<>();
+		for (ClockGenerator generator : design.getItems(ClockGenerator.class)) {
+			for (int slot = 0; slot < simulation.periodicEventCount; slot++) {
+				if (simulation.periodicCallbacks[slot] == generator.getAction()) {
+					Clock clock = generator.getClock();
+					if (!clockToSlots.containsKey(clock)) {
+						clockToSlots.put(clock, new ArrayList<>());
+						clocks.add(clock);
+					}
+					clockToSlots.get(clock).add(slot);
+				}
+			}
+		}
+		if (clocks.size() < 2) {
+			return null;
+		}
+
+		// analyze which clock domains read which signals, merging domains that share state other than registers
+		Analysis analysis = new Analysis(design, clocks);
+		for (ClockedItem item : design.getItems(ClockedItem.class)) {
+			if (clockToSlots.containsKey(item.getClock())) {
+				analysis.analyzeItem(item);
+			}
+		}
+		analysis.mergeOpaqueWriters();
+
+		// build partitions from the merged domains
+		Map<Clock, Integer> rootToPartition = new IdentityHashMap<>();
+		List<List<Integer>> slotLists = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		for (Clock clock : clocks) {
+			Clock root = analysis.find(clock);
+			Integer index = rootToPartition.get(root);
+			if (index == null) {
+				index = slotLists.size();
+				rootToPartition.put(root, index);
+				slotLists.add(new ArrayList<>());
+				names.add(getClockName(clock, clocks.indexOf(clock)));
+			} else {
+				names.set(index, names.get(index) + "+" + getClockName(clock, clocks.indexOf(clock)));
+			}
+			slotLists.get(index).addAll(clockToSlots.get(clock));
+		}
+		if (slotLists.size() < 2) {
+			return null;
+		}
+		SimulationPartition[] partitions = new SimulationPartition[slotLists.size()];
+		int[][] partitionSlots = new int[partitions.length][];
+		for (int i = 0; i < partitions.length; i++) {
+			partitions[i] = new SimulationPartition(names.get(i));
+			List<Integer> slots = slotLists.get(i);
+			Collections.sort(slots);
+			partitionSlots[i] = slots.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		// make registers that are read across partitions double-buffered
+		for (ProceduralRegister register : design.getItems(ProceduralRegister.class)) {
+			ClockedBlock block = register.getClockedBlock();
+			if (block == null || !clockToSlots.containsKey(block.getClock())) {
+				continue;
+			}
+			Clock ownerRoot = analysis.find(block.getClock());
+			boolean crossing = false;
+			for (Clock reader : analysis.getReaders(register)) {
+				if (analysis.find(reader) != ownerRoot) {
+					crossing = true;
+				}
+			}
+			for (Clock reader : analysis.opaqueReaders) {
+				if (analysis.find(reader) != ownerRoot) {
+					crossing = true;
+				}
+			}
+			if (crossing) {
+				register.setSimulationPartition(partitions[rootToPartition.get(ownerRoot)]);
+			}
+		}
+
+		return new PartitionedSimulation(simulation, partitions, partitionSlots, syncInterval);
+	}
+
+	private static String getClockName(Clock clock, int index) {
+		return clock.getName() != null ? clock.getName() : ("clock" + index);
+	}
+
+	/**
+	 * Collects the signals read by the clocked items of each clock domain, and merges domains using union-find.
+	 */
+	private static final class Analysis {
+
+		private final Design design;
+		private final Map<Clock, Clock> parents = new IdentityHashMap<>();
+		private final Map<ProceduralRegister, Set<Clock>> registerReaders = new IdentityHashMap<>();
+		private final Set<Clock> opaqueReaders = Collections.newSetFromMap(new IdentityHashMap<>());
+		private final Set<Clock> opaqueWriters = Collections.newSetFromMap(new IdentityHashMap<>());
+		private final Set<Clock> memoryReaders = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		Analysis(Design design, List<Clock> clocks) {
+			this.design = design;
+			for (Clock clock : clocks) {
+				parents.put(clock, clock);
+			}
+		}
+
+		Clock find(Clock clock) {
+			Clock parent = parents.get(clock);
+			if (parent == clock) {
+				return clock;
+			}
+			Clock root = find(parent);
+			parents.put(clock, root);
+			return root;
+		}
+
+		void merge(Clock a, Clock b) {
+			if (a == null || b == null || !parents.containsKey(a) || !parents.containsKey(b)) {
+				return;
+			}
+			parents.put(find(a), find(b));
+		}
+
+		Set<Clock> getReaders(ProceduralRegister register) {
+			Set<Clock> readers = registerReaders.get(register);
+			return readers == null ? Collections.emptySet() : readers;
+		}
+
+		void analyzeItem(ClockedItem item) {
+			Clock reader = item.getClock();
+			Reader consumer = new Reader(reader);
+			if (item instanceof SynchronousMemoryPort) {
+				SynchronousMemoryPort port = (SynchronousMemoryPort) item;
+				port.analyzeSignalUsage(consumer);
+				mergeWithWriters(reader, port.getMemory());
+				return;
+			}
+			try {
+				item.getVerilogContribution().analyzeSignalUsage(consumer);
+			} catch (RuntimeException e) {
+				// simulation-only item or otherwise not analyzable
+				opaqueReaders.add(reader);
+				opaqueWriters.add(reader);
+			}
+		}
+
+		/**
+		 * Merges the clock domains of items that could not be analyzed with all domains that read state other than
+		 * registers, since those items may change such state in ways the analysis cannot see. Must be called after
+		 * all items have been analyzed.
+		 */
+		void mergeOpaqueWriters() {
+			for (Clock writer : opaqueWriters) {
+				for (Clock reader : opaqueReaders) {
+					merge(reader, writer);
+				}
+				for (Clock reader : memoryReaders) {
+					merge(reader, writer);
+				}
+			}
+		}
+
+		/**
+		 * Merges the reader with all clock domains that can change the contents of the specified memory.
+		 */
+		void mergeWithWriters(Clock reader, Memory memory) {
+			memoryReaders.add(reader);
+			for (MemoryPort port : memory.getPorts()) {
+				if (port instanceof SynchronousMemoryPort) {
+					merge(reader, ((SynchronousMemoryPort) port).getClock());
+				}
+			}
+		}
+
+		void mergeWithWriters(Clock reader, ProceduralMemory memory) {
+			memoryReaders.add(reader);
+			for (ClockedBlock block : design.getItems(ClockedBlock.class)) {
+				if (block.getAssignedProceduralMemories() != null && block.getAssignedProceduralMemories().contains(memory)) {
+					merge(reader, block.getClock());
+				}
+			}
+		}
+
+		private final class Reader implements SignalUsageConsumer {
+
+			private final Clock reader;
+			private final Set<Signal> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+			private final VerilogExpressionWriter fakeExpressionWriter = new FakeVerilogExpressionWriter() {
+
+				@Override
+				protected void visitSignal(Signal signal, VerilogExpressionNesting nesting) {
+					consumeSignalUsage(signal, nesting);
+				}
+
+				@Override
+				protected void visitMemory(ProceduralMemory memory) {
+					mergeWithWriters(reader, memory);
+				}
+
+			};
+
+			Reader(Clock reader) {
+				this.reader = reader;
+			}
+
+			@Override
+			public void consumeSignalUsage(Signal signal, VerilogExpressionNesting nesting) {
+				while (signal instanceof SignalConnector) {
+					signal = ((SignalConnector) signal).getConnected();
+				}
+				if (signal == null || signal instanceof Clock || !visited.add(signal)) {
+					return;
+				}
+				if (signal instanceof ProceduralRegister) {
+					registerReaders.computeIfAbsent((ProceduralRegister) signal, r -> Collections.newSetFromMap(new IdentityHashMap<>())).add(reader);
+					return;
+				}
+				DesignItem owner = signal.getDesignItem();
+				if (owner instanceof ClockedItem) {
+					// state of another clocked item, such as synchronous read data or a simulated register
+					merge(reader, ((ClockedItem) owner).getClock());
+				} else if (owner instanceof Memory) {
+					mergeWithWriters(reader, (Memory) owner);
+					return;
+				}
+				try {
+					signal.analyzeSignalUsage(this);
+				} catch (RuntimeException e) {
+					if (!(owner instanceof ClockedItem)) {
+						opaqueReaders.add(reader);
+					}
+				}
+			}
+
+			@Override
+			public VerilogExpressionWriter getFakeExpressionWriter() {
+				return fakeExpressionWriter;
+			}
+
+		}
+
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+	// simulation
+	// ----------------------------------------------------------------------------------------------------------------
+
+	boolean isWindowActive() {
+		return windowActive;
+	}
+
+	void deferFire(Runnable callback, long ticks) {
+		Integer index = currentPartitionIndex.get();
+		if (index == null) {
+			throw new IllegalStateException("events can only be fired from partition threads while partitions are running independently");
+		}
+		synchronized (deferredEvents) {
+			deferredEvents.add(new DeferredEvent(partitionTimes[index] + ticks, callback));
+		}
+	}
+
+	void run() {
+		barrier = new CyclicBarrier(partitions.length);
+		terminate = false;
+		List<Thread> threads = new ArrayList<>();
+		partitions[0].setThread(Thread.currentThread());
+		for (int i = 1; i < partitions.length; i++) {
+			int index = i;
+			Thread thread = new Thread(() -> runWorker(index), "simulation-" + partitions[i]);
+			thread.setDaemon(true);
+			partitions[i].setThread(thread);
+			threads.add(thread);
+			thread.start();
+		}
+		try {
+			while (!simulation.isStopped() && simulation.hasPendingEvents()) {
+
+				// process all events for the current synchronization point sequentially
+				long synchronizationTime = simulation.getNextEventTime();
+				while (!simulation.isStopped() && simulation.hasPendingEvents() && simulation.getNextEventTime() == synchronizationTime) {
+					simulation.runBatch();
+				}
+				if (simulation.isStopped() || !simulation.hasPendingEvents()) {
+					break;
+				}
+
+				// run the partitions independently up to the next synchronization point
+				windowEnd = Math.min(getNextNonClockEventTime(), synchronizationTime + syncInterval);
+				for (SimulationPartition partition : partitions) {
+					partition.startWindow();
+				}
+				windowActive = true;
+				awaitBarrier();
+				runWindow(0);
+				awaitBarrier();
+				windowActive = false;
+				for (SimulationPartition partition : partitions) {
+					partition.endWindow();
+				}
+
+				// handle events fired from within the window and errors
+				for (DeferredEvent event : deferredEvents) {
+					simulation.scheduleAt(Math.max(event.when, windowEnd), event.callback);
+				}
+				deferredEvents.clear();
+				for (int i = 0; i < failures.length; i++) {
+					Throwable failure = failures[i];
+					if (failure != null) {
+						failures[i] = null;
+						if (failure instanceof RuntimeException) {
+							throw (RuntimeException) failure;
+						} else if (failure instanceof Error) {
+							throw (Error) failure;
+						} else {
+							throw new RuntimeException(failure);
+						}
+					}
+				}
+
+			}
+		} finally {
+			terminate = true;
+			awaitBarrier();
+			for (Thread thread : threads) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	private long getNextNonClockEventTime() {
+		long next = simulation.getNextOneShotTime();
+		for (int slot = 0; slot < simulation.periodicEventCount; slot++) {
+			if (!clockSlots.contains(slot)) {
+				next = Math.min(next, simulation.periodicNextTimes[slot]);
+			}
+		}
+		return next;
+	}
+
+	private void runWorker(int index) {
+		while (true) {
+			awaitBarrier();
+			if (terminate) {
+				return;
+			}
+			runWindow(index);
+			awaitBarrier();
+		}
+	}
+
+	/**
+	 * Runs all clock edges of one partition that happen before the end of the current window. Errors are recorded
+	 * and stop the simulation instead of being thrown, so all threads reach the barrier at the end of the window.
+	 */
+	private void runWindow(int index) {
+		currentPartitionIndex.set(index);
+		int[] slots = partitionSlots[index];
+		long[] nextTimes = new long[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			nextTimes[i] = simulation.periodicNextTimes[slots[i]];
+		}
+		Runnable[] firing = new Runnable[slots.length];
+		try {
+			while (!simulation.isStopped()) {
+				long time = Long.MAX_VALUE;
+				for (long nextTime : nextTimes) {
+					time = Math.min(time, nextTime);
+				}
+				if (time >= windowEnd) {
+					break;
+				}
+				partitionTimes[index] = time;
+				int firingCount = 0;
+				for (int i = 0; i < slots.length; i++) {
+					if (nextTimes[i] == time) {
+						firing[firingCount] = simulation.periodicCallbacks[slots[i]];
+						firingCount++;
+						nextTimes[i] = time + simulation.periodicPeriods[slots[i]];
+					}
+				}
+				for (int i = 0; i < firingCount; i++) {
+					firing[i].run();
+				}
+			}
+		} catch (Throwable t) {
+			failures[index] = t;
+			simulation.stop();
+		} finally {
+			for (int i = 0; i < slots.length; i++) {
+				simulation.periodicNextTimes[slots[i]] = nextTimes[i];
+			}
+			currentPartitionIndex.remove();
+		}
+	}
+
+	private void awaitBarrier() {
+		try {
+			barrier.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (BrokenBarrierException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static final class DeferredEvent {
+
+		final long when;
+		final Runnable callback;
+
+		DeferredEvent(long when, Runnable callback) {
+			this.when = when;
+			this.callback = callback;
+		}
+
+	}
+
+}
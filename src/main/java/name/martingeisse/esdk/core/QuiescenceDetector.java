@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2018 Martin Geisse
+ * This file is distributed under the terms of the MIT license.
+ */
+package name.martingeisse.esdk.core;
+
+import name.martingeisse.esdk.core.library.clocked.ChangeTracked;
+import name.martingeisse.esdk.core.library.clocked.Clock;
+import name.martingeisse.esdk.core.library.clocked.ClockedItem;
+import name.martingeisse.esdk.core.library.memory.Memory;
+import name.martingeisse.esdk.core.library.memory.SynchronousMemoryPort;
+import name.martingeisse.esdk.core.library.procedural.ClockedBlock;
+import name.martingeisse.esdk.core.library.procedural.ProceduralMemory;
+import name.martingeisse.esdk.core.library.procedural.ProceduralRegister;
+import name.martingeisse.esdk.core.library.procedural.ProceduralVectorRegister;
+import name.martingeisse.esdk.core.library.procedural.statement.Statement;
+import name.martingeisse.esdk.core.library.procedural.statement.VectorAssignment;
+import name.martingeisse.esdk.core.library.signal.Signal;
+import name.martingeisse.esdk.core.library.signal.VectorConstant;
+import name.martingeisse.esdk.core.library.signal.connector.SignalConnector;
+import name.martingeisse.esdk.core.library.signal.getter.ClockedBlockSensitivity;
+import name.martingeisse.esdk.core.library.signal.operation.VectorOperation;
+import name.martingeisse.esdk.core.library.simulation.ClockGenerator;
+import name.martingeisse.esdk.core.tools.optimization.SignalOptimizer;
+import name.martingeisse.esdk.core.util.Matrix;
+import name.martingeisse.esdk.core.util.vector.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Detects that the clock edges from clock generators cannot change the design anymore, and skips them up to the next
+ * one-shot event.
+ *
+ * The state of the design consists of its registers, memories, synchronous memory ports, settable signals and
+ * simulated pins, whose changes are counted (see {@link ChangeTracked}). If that state has not changed at all while
+ * every clock generator fired at least once, and no one-shot event happened in the meantime, then each clock edge
+ * maps the state to itself, so all further clock edges do the same until some one-shot event changes something. The
+ * simulation can therefore jump to the time of the next one-shot event directly. Since change counts never decrease,
+ * it is enough to compare their sum from time to time.
+ *
+ * Free-running counters are allowed to change while the design is quiescent. A free-running counter is a register
+ * assigned by a clocked block whose only statement is "register = register + constant", and that is not read by any
+ * other clocked item. Its value is a function of the number of clock edges, so it gets advanced by the number of
+ * skipped edges when jumping.
+ *
+ * This is only possible if all periodic events are clock generators and the clocked items in their clock domains
+ * are either clocked blocks or synchronous memory ports that only read signals whose changes can be tracked (see
+ * {@link ClockedBlockSensitivity}). Otherwise, a clocked item might have state that cannot be observed, and the
+ * detector stays inactive. Clocked items of other clocks are only simulated in one-shot events anyway. The skipped
+ * clock edges are not observable: Simulation code only runs in events, and the state seen by the next event is
+ * exactly the state it would have seen without skipping. If there is no pending one-shot event, nothing is skipped.
+ */
+final class QuiescenceDetector {
+
+	// the number of batches between two checks of the change counts
+	private static final int CHECK_INTERVAL = 64;
+
+	private final Design design;
+	private final Simulation simulation;
+
+	// the state to track, determined for the current number of periodic events
+	private int analyzedPeriodicEventCount = -1;
+	private boolean active;
+	private ChangeTracked[] trackedItems;
+	private Matrix[] matrices;
+	private Counter[] counters;
+
+	// the time since which the state has not changed
+	private int countdown = CHECK_INTERVAL;
+	private long lastChangeSum = -1;
+	private long lastOneShotBatchCount = -1;
+	private long quietSince;
+
+	QuiescenceDetector(Design design, Simulation simulation) {
+		this.design = design;
+		this.simulation = simulation;
+	}
+
+	/**
+	 * Forgets what has been observed so far, so the state has to stay unchanged from now on before anything gets
+	 * skipped.
+	 */
+	void reset() {
+		lastChangeSum = -1;
+	}
+
+	/**
+	 * Must be called after each batch of events.
+	 */
+	void checkAfterBatch(long now) {
+		countdown--;
+		if (countdown > 0) {
+			return;
+		}
+		countdown = CHECK_INTERVAL;
+		if (analyzedPeriodicEventCount != simulation.periodicEventCount) {
+			analyze();
+		}
+		if (!active) {
+			return;
+		}
+
+		// restart the observation if anything has changed
+		long changeSum = getChangeSum();
+		long oneShotBatchCount = simulation.getOneShotBatchCount();
+		if (changeSum != lastChangeSum || oneShotBatchCount != lastOneShotBatchCount) {
+			lastChangeSum = changeSum;
+			lastOneShotBatchCount = oneShotBatchCount;
+			quietSince = now;
+			return;
+		}
+
+		// every periodic event must have happened since then
+		for (int i = 0; i < simulation.periodicEventCount; i++) {
+			if (simulation.periodicNextTimes[i] - simulation.periodicPeriods[i] <= quietSince) {
+				return;
+			}
+		}
+
+		// skip to the next one-shot event
+		long target = simulation.getNextOneShotTime();
+		if (target == Long.MAX_VALUE) {
+			return;
+		}
+		skipTo(target);
+	}
+
+	private long getChangeSum() {
+		long sum = 0;
+		for (ChangeTracked item : trackedItems) {
+			sum += item.getChangeCount();
+		}
+		for (Matrix matrix : matrices) {
+			sum += matrix.getModificationCount();
+		}
+		return sum;
+	}
+
+	// skips all occurrences of periodic events before the specified time; those at that time are kept to form a
+	// batch with the one-shot events
+	private void skipTo(long target) {
+		long[] skippedCounts = new long[simulation.periodicEventCount];
+		for (int i = 0; i < simulation.periodicEventCount; i++) {
+			long nextTime = simulation.periodicNextTimes[i];
+			if (nextTime < target) {
+				long period = simulation.periodicPeriods[i];
+				skippedCounts[i] = (target - nextTime + period - 1) / period;
+				simulation.periodicNextTimes[i] = nextTime + skippedCounts[i] * period;
+			}
+		}
+		for (Counter counter : counters) {
+			long edges = 0;
+			for (int slot : counter.slots) {
+				edges += skippedCounts[slot];
+			}
+			if (edges != 0) {
+				counter.advance(edges);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+	// analysis
+	// ----------------------------------------------------------------------------------------------------------------
+
+	private void analyze() {
+		analyzedPeriodicEventCount = simulation.periodicEventCount;
+		active = false;
+		lastChangeSum = -1;
+
+		// all periodic events must be clock generators
+		Map<Clock, List<Integer>> clockToSlots = new IdentityHashMap<>();
+		List<ClockGenerator> generators = design.getItems(ClockGenerator.class);
+		for (int slot = 0; slot < simulation.periodicEventCount; slot++) {
+			Clock clock = null;
+			for (ClockGenerator generator : generators) {
+				if (simulation.periodicCallbacks[slot] == generator.getAction()) {
+					clock = generator.getClock();
+				}
+			}
+			if (clock == null) {
+				return;
+			}
+			clockToSlots.computeIfAbsent(clock, c -> new ArrayList<>()).add(slot);
+		}
+
+		// all clocked items in those clock domains must have observable state
+		List<ClockedItem> readers = new ArrayList<>();
+		List<ClockedBlockSensitivity> sensitivities = new ArrayList<>();
+		List<Counter> counterCandidates = new ArrayList<>();
+		for (ClockedItem item : design.getItems(ClockedItem.class)) {
+			if (!clockToSlots.containsKey(item.getClock())) {
+				continue;
+			}
+			ClockedBlockSensitivity sensitivity;
+			if (item instanceof ClockedBlock) {
+				ClockedBlock block = (ClockedBlock) item;
+				sensitivity = ClockedBlockSensitivity.analyze(block);
+				Counter counter = analyzeCounter(block);
+				if (counter != null) {
+					counter.slots = clockToSlots.get(item.getClock()).stream().mapToInt(Integer::intValue).toArray();
+					counterCandidates.add(counter);
+				}
+			} else if (item instanceof SynchronousMemoryPort) {
+				SynchronousMemoryPort port = (SynchronousMemoryPort) item;
+				List<Signal> signals = new ArrayList<>();
+				for (Signal signal : Arrays.asList(port.getClockEnableSignal(), port.getWriteEnableSignal(),
+						port.getAddressSignal(), port.getWriteDataSignal())) {
+					if (signal != null) {
+						signals.add(signal);
+					}
+				}
+				sensitivity = ClockedBlockSensitivity.analyze(design, signals);
+			} else {
+				return;
+			}
+			if (sensitivity == null) {
+				return;
+			}
+			readers.add(item);
+			sensitivities.add(sensitivity);
+		}
+
+		// free-running counters must not be read by other clocked items
+		List<Counter> counterList = new ArrayList<>();
+		Set<ChangeTracked> counterRegisters = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Counter counter : counterCandidates) {
+			boolean read = false;
+			for (int i = 0; i < readers.size(); i++) {
+				if (readers.get(i) != counter.register.getClockedBlock() && sensitivities.get(i).contains(counter.register)) {
+					read = true;
+				}
+			}
+			if (!read) {
+				counterList.add(counter);
+				counterRegisters.add(counter.register);
+			}
+		}
+
+		// collect the state to track
+		List<ChangeTracked> trackedItemList = new ArrayList<>();
+		Set<Matrix> matrixSet = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (DesignItem item : design.getItems()) {
+			if (item instanceof ChangeTracked && !counterRegisters.contains(item)) {
+				trackedItemList.add((ChangeTracked) item);
+			} else if (item instanceof ProceduralMemory) {
+				matrixSet.add(((ProceduralMemory) item).getMatrix());
+			} else if (item instanceof Memory) {
+				matrixSet.add(((Memory) item).getMatrix());
+			}
+		}
+		trackedItems = trackedItemList.toArray(new ChangeTracked[0]);
+		matrices = matrixSet.toArray(new Matrix[0]);
+		counters = counterList.toArray(new Counter[0]);
+		active = true;
+	}
+
+	// returns a counter without slots if the block is a free-running counter, or null if not
+	private Counter analyzeCounter(ClockedBlock block) {
+		List<Statement> statements = block.getStatements().getStatements();
+		if (statements.size() != 1 || !(statements.get(0) instanceof VectorAssignment)) {
+			return null;
+		}
+		VectorAssignment assignment = (VectorAssignment) statements.get(0);
+		if (!(assignment.getDestination() instanceof ProceduralVectorRegister)) {
+			return null;
+		}
+		ProceduralVectorRegister register = (ProceduralVectorRegister) assignment.getDestination();
+		Signal source = resolve(assignment.getSource());
+		if (!(source instanceof VectorOperation)) {
+			return null;
+		}
+		VectorOperation operation = (VectorOperation) source;
+		if (operation.getOperator() != VectorOperation.Operator.ADD) {
+			return null;
+		}
+		Signal left = resolve(operation.getLeftOperand());
+		Signal right = resolve(operation.getRightOperand());
+		if (left == register && right instanceof VectorConstant) {
+			return new Counter(register, ((VectorConstant) right).getValue());
+		} else if (right == register && left instanceof VectorConstant) {
+			return new Counter(register, ((VectorConstant) left).getValue());
+		} else {
+			return null;
+		}
+	}
+
+	private Signal resolve(Signal signal) {
+		SignalOptimizer optimizer = design.getSignalOptimizer();
+		while (true) {
+			if (signal instanceof SignalConnector) {
+				signal = ((SignalConnector) signal).getConnected();
+				continue;
+			}
+			Signal optimized = optimizer.getOptimized(signal);
+			if (optimized == signal) {
+				return signal;
+			}
+			signal = optimized;
+		}
+	}
+
+	private static final class Counter {
+
+		private final ProceduralVectorRegister register;
+		private final Vector increment;
+		private int[] slots;
+
+		Counter(ProceduralVectorRegister register, Vector increment) {
+			this.register = register;
+			this.increment = increment;
+		}
+
+		void advance(long edges) {
+			int width = register.getWidth();
+			long truncatedEdges = (width < 64) ? (edges & ((1L << width) - 1)) : edges;
+			Vector total = increment.multiply(Vector.of(width, truncatedEdges));
+			register.overrideCurrentValue(register.getValue().add(total));
+		}
+
+	}
+
+}
@@ -5,8 +5,8 @@
 package name.martingeisse.esdk.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.PriorityQueue;
 
 /**
  * To obtain at least some degree of reproducible behavior, this simulation implements delta-cycles in a similar
@@ -18,12 +18,63 @@ import java.util.PriorityQueue;
  * No batching is done for events scheduled for later. This means, for example, that an event scheduled by the second
  * "now"-batch for one second in the future may actually be processed *before* an event scheduled by the first
  * "now"-batch for one second in the future.
+ *
+ * Pending events are kept in an {@link EventScheduler}; see there for the available implementations. Periodic
+ * events (see {@link #fireEvery(Runnable, long, long)}) are kept separately in reusable slots and are never
+ * re-scheduled, so they don't allocate anything per occurrence. When a periodic event and one-shot events happen at
+ * the same time, they belong to the same batch, with the periodic events running first.
+ *
+ * In partitioned mode, independent clock domains are simulated on separate threads; see
+ * {@link PartitionedSimulation}.
+ *
+ * With quiescence detection, periodic clock edges that cannot change anything are skipped up to the next one-shot
+ * event; see {@link QuiescenceDetector}.
  */
 final class Simulation {
 
-	private final PriorityQueue<ScheduledEvent> eventQueue = new PriorityQueue<>();
+	private final EventScheduler scheduler;
+	private final List<Runnable> batch = new ArrayList<>();
 	private long now = 0;
-	private boolean stopped = false;
+	private long nextOneShotTime = Long.MAX_VALUE;
+	private long oneShotBatchCount = 0;
+
+	// volatile because partitioned simulation may stop the simulation from any partition thread
+	private volatile boolean stopped = false;
+
+	// periodic events, stored as parallel arrays and updated in place each time they fire; package-private for
+	// use by partitioned simulation
+	int periodicEventCount = 0;
+	long[] periodicNextTimes = new long[4];
+	long[] periodicPeriods = new long[4];
+	Runnable[] periodicCallbacks = new Runnable[4];
+
+	// partitioned mode
+	private Design partitionedDesign;
+	private long partitionSyncInterval;
+	private PartitionedSimulation partitionedSimulation;
+
+	// quiescence detection
+	private QuiescenceDetector quiescenceDetector;
+
+	Simulation(EventScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Requests partitioned simulation (see {@link PartitionedSimulation}). Whether the design can actually be
+	 * partitioned is determined when the simulation starts running.
+	 */
+	void enablePartitioning(Design design, long syncInterval) {
+		this.partitionedDesign = design;
+		this.partitionSyncInterval = syncInterval;
+	}
+
+	/**
+	 * Enables quiescence detection (see {@link QuiescenceDetector}). Not used in partitioned mode.
+	 */
+	void enableQuiescenceDetection(Design design) {
+		this.quiescenceDetector = new QuiescenceDetector(design, this);
+	}
 
 	public void fire(Runnable eventCallback, long ticks) {
 		if (eventCallback == null) {
@@ -32,43 +83,139 @@ final class Simulation {
 		if (ticks < 0) {
 			throw new IllegalArgumentException("ticks cannot be negative");
 		}
-		eventQueue.add(new ScheduledEvent(now + ticks, eventCallback));
+		if (partitionedSimulation != null && partitionedSimulation.isWindowActive()) {
+			partitionedSimulation.deferFire(eventCallback, ticks);
+			return;
+		}
+		scheduleAt(now + ticks, eventCallback);
+	}
+
+	void scheduleAt(long when, Runnable eventCallback) {
+		scheduler.schedule(when, eventCallback);
+		if (when < nextOneShotTime) {
+			nextOneShotTime = when;
+		}
+	}
+
+	public void fireEvery(Runnable eventCallback, long period, long offset) {
+		if (eventCallback == null) {
+			throw new IllegalArgumentException("eventCallback cannot be null");
+		}
+		if (period < 1) {
+			throw new IllegalArgumentException("period must be positive");
+		}
+		if (offset < 0) {
+			throw new IllegalArgumentException("offset cannot be negative");
+		}
+		if (partitionedSimulation != null && partitionedSimulation.isWindowActive()) {
+			throw new IllegalStateException("cannot add periodic events while simulation partitions are running independently");
+		}
+		if (periodicEventCount == periodicCallbacks.length) {
+			int newLength = periodicEventCount * 2;
+			periodicNextTimes = Arrays.copyOf(periodicNextTimes, newLength);
+			periodicPeriods = Arrays.copyOf(periodicPeriods, newLength);
+			periodicCallbacks = Arrays.copyOf(periodicCallbacks, newLength);
+		}
+		periodicNextTimes[periodicEventCount] = now + offset;
+		periodicPeriods[periodicEventCount] = period;
+		periodicCallbacks[periodicEventCount] = eventCallback;
+		periodicEventCount++;
 	}
 
 	public void run() {
 		stopped = false;
-		List<ScheduledEvent> batch = new ArrayList<>();
-		while (!stopped && !eventQueue.isEmpty()) {
-			now = eventQueue.peek().when;
-			batch.clear();
-			while (!eventQueue.isEmpty() && eventQueue.peek().when == now) {
-				batch.add(eventQueue.remove());
+		if (partitionedDesign != null) {
+			if (partitionedSimulation == null) {
+				partitionedSimulation = PartitionedSimulation.create(partitionedDesign, this, partitionSyncInterval);
+				if (partitionedSimulation == null) {
+					// cannot be partitioned -- don't try again
+					partitionedDesign = null;
+				}
+			}
+			if (partitionedSimulation != null) {
+				partitionedSimulation.run();
+				batch.clear();
+				return;
 			}
-			for (ScheduledEvent event : batch) {
-				event.callback.run();
+		}
+		if (quiescenceDetector != null) {
+			// anything may have been changed by code outside the simulation
+			quiescenceDetector.reset();
+		}
+		while (!stopped && (periodicEventCount > 0 || nextOneShotTime != Long.MAX_VALUE)) {
+			runBatch();
+			if (quiescenceDetector != null) {
+				quiescenceDetector.checkAfterBatch(now);
 			}
 		}
+		batch.clear();
 	}
 
-	public void stop() {
-		stopped = true;
+	boolean isStopped() {
+		return stopped;
+	}
+
+	boolean hasPendingEvents() {
+		return periodicEventCount > 0 || nextOneShotTime != Long.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the time of the earliest pending event. Must only be called if there are pending events.
+	 */
+	long getNextEventTime() {
+		long next = nextOneShotTime;
+		for (int i = 0; i < periodicEventCount; i++) {
+			next = Math.min(next, periodicNextTimes[i]);
+		}
+		return next;
 	}
 
-	private static class ScheduledEvent implements Comparable<ScheduledEvent> {
+	long getNextOneShotTime() {
+		return nextOneShotTime;
+	}
+
+	/**
+	 * Returns the number of batches run so far that contained one-shot events.
+	 */
+	long getOneShotBatchCount() {
+		return oneShotBatchCount;
+	}
 
-		final long when;
-		final Runnable callback;
+	/**
+	 * Runs a single batch, i.e. all periodic and one-shot events for the earliest pending time.
+	 */
+	void runBatch() {
 
-		ScheduledEvent(long when, Runnable callback) {
-			this.when = when;
-			this.callback = callback;
+		now = getNextEventTime();
+
+		// Collect the whole batch before running any callback. Periodic events go first; their slots are
+		// advanced to the next period right away.
+		batch.clear();
+		for (int i = 0; i < periodicEventCount; i++) {
+			if (periodicNextTimes[i] == now) {
+				batch.add(periodicCallbacks[i]);
+				periodicNextTimes[i] = now + periodicPeriods[i];
+			}
+		}
+		if (nextOneShotTime == now) {
+			removeOneShotBatch();
 		}
 
-		@Override
-		public int compareTo(ScheduledEvent o) {
-			return Long.compare(when, o.when);
+		// run the batch
+		for (int i = 0, n = batch.size(); i < n; i++) {
+			batch.get(i).run();
 		}
 
 	}
 
+	private void removeOneShotBatch() {
+		scheduler.removeNextBatch(batch);
+		oneShotBatchCount++;
+		nextOneShotTime = scheduler.isEmpty() ? Long.MAX_VALUE : scheduler.getNextTime();
+	}
+
+	public void stop() {
+		stopped = true;
+	}
+
 }
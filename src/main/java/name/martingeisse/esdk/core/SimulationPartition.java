@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2018 Martin Geisse
+ * This file is distributed under the terms of the MIT license.
+ */
+package name.martingeisse.esdk.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One partition (a group of clock domains) in partitioned simulation. Each partition is simulated by its own thread
+ * between synchronization points.
+ *
+ * State that is read by other partitions -- currently only procedural registers -- is double-buffered: The owning
+ * partition updates the state as usual, while other partitions see the value that was "published" at the last
+ * synchronization point. Such state registers a publisher with its partition and uses {@link #isForeignThread()} to
+ * decide which value to return.
+ *
+ * Application code does not normally use this class.
+ */
+public final class SimulationPartition {
+
+	private final String name;
+	private final List<Runnable> publishers = new ArrayList<>();
+	private Thread thread;
+	private boolean windowActive;
+
+	SimulationPartition(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Adds a callback that copies the current value of some state to its published value.
+	 */
+	public void addPublisher(Runnable publisher) {
+		publishers.add(publisher);
+	}
+
+	/**
+	 * Checks whether the current thread must see the published state of this partition. This is the case while the
+	 * partitions run independently and the current thread is not the one simulating this partition.
+	 */
+	public boolean isForeignThread() {
+		return windowActive && Thread.currentThread() != thread;
+	}
+
+	void setThread(Thread thread) {
+		this.thread = thread;
+	}
+
+	void startWindow() {
+		for (Runnable publisher : publishers) {
+			publisher.run();
+		}
+		windowActive = true;
+	}
+
+	void endWindow() {
+		windowActive = false;
+	}
+
+	@Override
+	public String toString() {
+		return "SimulationPartition[" + name + "]";
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2018 Martin Geisse
+ * This file is distributed under the terms of the MIT license.
+ */
+package name.martingeisse.esdk.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scheduler that keeps near-future events in a timing wheel and falls back to a heap for far-future events.
+ *
+ * The wheel has a power-of-two number of buckets, one for each point in time within a window that starts at the
+ * current time (the time of the last batch taken off this scheduler). Since the window is never larger than the
+ * wheel, each bucket only ever contains events for a single point in time, so inserting an event and taking a whole
+ * batch are O(1) and do not allocate once the bucket arrays have grown to their working size. Finding the next
+ * non-empty bucket uses a bitmap of occupied buckets and scans 64 buckets at a time.
+ *
+ * Events beyond the window are kept in a {@link HeapEventScheduler} and moved into the wheel when the window
+ * advances far enough to include them. This keeps the invariant that all events in the overflow heap are later than
+ * all events in the wheel.
+ *
+ * Within a batch, events are returned in the order they were scheduled.
+ */
+public final class TimingWheelEventScheduler implements EventScheduler {
+
+	public static final int DEFAULT_WHEEL_SIZE = 1024;
+
+	private final int mask;
+	private final long[] bucketTimes;
+	private final Runnable[][] bucketCallbacks;
+	private final int[] bucketSizes;
+	private final long[] occupancy;
+	private final HeapEventScheduler overflow = new HeapEventScheduler();
+	private final List<Runnable> migrationBuffer = new ArrayList<>();
+	private long currentTime = 0;
+	private int wheelEventCount = 0;
+
+	public TimingWheelEventScheduler() {
+		this(DEFAULT_WHEEL_SIZE);
+	}
+
+	/**
+	 * The wheel size is the number of ticks into the future for which events are handled by the wheel. It must be
+	 * a power of two and at least 64.
+	 */
+	public TimingWheelEventScheduler(int wheelSize) {
+		if (wheelSize < 64 || Integer.bitCount(wheelSize) != 1) {
+			throw new IllegalArgumentException("wheel size must be a power of two and at least 64: " + wheelSize);
+		}
+		this.mask = wheelSize - 1;
+		this.bucketTimes = new long[wheelSize];
+		this.bucketCallbacks = new Runnable[wheelSize][];
+		this.bucketSizes = new int[wheelSize];
+		this.occupancy = new long[wheelSize >> 6];
+	}
+
+	@Override
+	public void schedule(long when, Runnable callback) {
+		if (when < currentTime) {
+			throw new IllegalArgumentException("cannot schedule an event in the past: " + when + " < " + currentTime);
+		}
+		if (when - currentTime > mask) {
+			overflow.schedule(when, callback);
+		} else {
+			addToWheel(when, callback);
+		}
+	}
+
+	private void addToWheel(long when, Runnable callback) {
+		int index = (int) when & mask;
+		int size = bucketSizes[index];
+		Runnable[] callbacks = bucketCallbacks[index];
+		if (callbacks == null) {
+			callbacks = new Runnable[4];
+			bucketCallbacks[index] = callbacks;
+		} else if (size == callbacks.length) {
+			Runnable[] newCallbacks = new Runnable[size * 2];
+			System.arraycopy(callbacks, 0, newCallbacks, 0, size);
+			callbacks = newCallbacks;
+			bucketCallbacks[index] = callbacks;
+		}
+		if (size == 0) {
+			bucketTimes[index] = when;
+			occupancy[index >> 6] |= 1L << index;
+		}
+		callbacks[size] = callback;
+		bucketSizes[index] = size + 1;
+		wheelEventCount++;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return wheelEventCount == 0 && overflow.isEmpty();
+	}
+
+	@Override
+	public long getNextTime() {
+		if (wheelEventCount == 0) {
+			return overflow.getNextTime();
+		}
+		return bucketTimes[findNextBucket()];
+	}
+
+	@Override
+	public long removeNextBatch(List<Runnable> batch) {
+		if (wheelEventCount == 0) {
+			// the wheel is empty, so jump directly to the earliest overflow event
+			advance(overflow.getNextTime());
+		}
+		int index = findNextBucket();
+		long when = bucketTimes[index];
+		advance(when);
+		Runnable[] callbacks = bucketCallbacks[index];
+		int size = bucketSizes[index];
+		for (int i = 0; i < size; i++) {
+			batch.add(callbacks[i]);
+			callbacks[i] = null;
+		}
+		bucketSizes[index] = 0;
+		occupancy[index >> 6] &= ~(1L << index);
+		wheelEventCount -= size;
+		return when;
+	}
+
+	/**
+	 * Moves the window forward and migrates overflow events that are now inside the window into the wheel.
+	 */
+	private void advance(long newTime) {
+		currentTime = newTime;
+		while (!overflow.isEmpty() && overflow.getNextTime() - currentTime <= mask) {
+			migrationBuffer.clear();
+			long when = overflow.removeNextBatch(migrationBuffer);
+			for (Runnable callback : migrationBuffer) {
+				addToWheel(when, callback);
+			}
+		}
+		migrationBuffer.clear();
+	}
+
+	/**
+	 * Finds the first occupied bucket, starting at the current time and wrapping around. Must only be called when
+	 * the wheel is not empty.
+	 */
+	private int findNextBucket() {
+		int start = (int) currentTime & mask;
+		int wordIndex = start >> 6;
+		long word = occupancy[wordIndex] & (-1L << start);
+		for (int i = 0; i <= occupancy.length; i++) {
+			if (word != 0) {
+				return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+			}
+			wordIndex = (wordIndex + 1) % occupancy.length;
+			word = occupancy[wordIndex];
+		}
+		throw new IllegalStateException("timing wheel bitmap does not match event count");
+	}
+
+}
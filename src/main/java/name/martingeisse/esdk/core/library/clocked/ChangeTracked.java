@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2018 Martin Geisse
+ * This file is distributed under the terms of the MIT license.
+ */
+package name.martingeisse.esdk.core.library.clocked;
+
+/**
+ * Implemented by simulated state and inputs that count the changes to their value, such as registers and settable
+ * signals. This allows clocked items to detect that nothing they depend on has changed since the last clock edge,
+ * in which case they don't have to compute their next state again.
+ */
+public interface ChangeTracked {
+
+	/**
+	 * Returns a number that gets incremented whenever the value changes. It may also get incremented when the value
+	 * is set to the same value again, but it never changes in any other way.
+	 */
+	long getChangeCount();
+
+}
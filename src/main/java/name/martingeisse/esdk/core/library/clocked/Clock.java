@@ -9,12 +9,18 @@ import name.martingeisse.esdk.core.DesignItemOwned;
 import name.martingeisse.esdk.core.library.procedural.ClockedBlock;
 import name.martingeisse.esdk.core.library.signal.BitSignal;
 import name.martingeisse.esdk.core.library.signal.ClockSignal;
+import name.martingeisse.esdk.core.library.signal.getter.ClockEdgeDispatcher;
+import name.martingeisse.esdk.core.library.signal.getter.ClockEdgeDispatcherGenerator;
+import name.martingeisse.esdk.core.library.signal.getter.ClockedBlockSensitivity;
+import name.martingeisse.esdk.core.library.signal.getter.LevelizedEvaluator;
+import name.martingeisse.esdk.core.library.signal.getter.SignalCache;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.contribution.EmptyVerilogContribution;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.contribution.VerilogContribution;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExpressionWriter;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 
 /**
@@ -32,6 +38,13 @@ public final class Clock extends DesignItem implements DesignItemOwned, ClockSig
 
 	private final BitSignal inputSignal;
 	private List<ClockedItem> targetItemsForSimulation;
+	private ClockedItem[] targetItemArray;
+	private boolean parallelSimulationEnabled;
+	private ParallelComputePhase parallelComputePhase;
+	private SignalCache signalCache;
+	private boolean activityDrivenSimulationEnabled;
+	private ClockEdgeDispatcher clockEdgeDispatcher;
+	private LevelizedEvaluator levelizedEvaluator;
 
 	public Clock(BitSignal inputSignal) {
 		this.inputSignal = checkSameDesign(inputSignal);
@@ -64,6 +77,53 @@ public final class Clock extends DesignItem implements DesignItemOwned, ClockSig
 	// simulation
 	// ----------------------------------------------------------------------------------------------------------------
 
+	public boolean isParallelSimulationEnabled() {
+		return parallelSimulationEnabled;
+	}
+
+	/**
+	 * Enables or disables parallel simulation of the items in this clock domain. When enabled, the
+	 * {@link ClockedItem#computeNextState()} phase of each clock edge is split into chunks of roughly equal estimated
+	 * cost that run concurrently in the common fork-join pool; updateState() still runs sequentially afterwards.
+	 * <p>
+	 * This is only correct if all clocked items honor the computeNextState() contract, i.e. do not change any shared
+	 * state there. It pays off for clock domains with many expensive items, such as hundreds of clocked blocks; for
+	 * small domains, the synchronization overhead outweighs the gain.
+	 * <p>
+	 * Must be called before the simulation is prepared.
+	 */
+	public void setParallelSimulationEnabled(boolean parallelSimulationEnabled) {
+		needNotPrepared();
+		this.parallelSimulationEnabled = parallelSimulationEnabled;
+	}
+
+	public boolean isActivityDrivenSimulationEnabled() {
+		return activityDrivenSimulationEnabled;
+	}
+
+	/**
+	 * Enables or disables activity-driven simulation of the clocked blocks in this clock domain. When enabled, a
+	 * clocked block skips its {@link ClockedItem#computeNextState()} phase if none of the registers, memories and
+	 * inputs it reads or assigns has changed since the last clock edge, since it would compute the same next state
+	 * again. This does not change the simulated behavior. Blocks that read signals whose changes cannot be tracked
+	 * are simulated on every clock edge (see {@link ClockedBlockSensitivity}).
+	 * <p>
+	 * This pays off for designs where many blocks are idle most of the time, such as peripherals waiting for a bus
+	 * request. It is ignored when partitioned simulation is enabled.
+	 * <p>
+	 * Must be called before the simulation is prepared.
+	 */
+	public void setActivityDrivenSimulationEnabled(boolean activityDrivenSimulationEnabled) {
+		needNotPrepared();
+		this.activityDrivenSimulationEnabled = activityDrivenSimulationEnabled;
+	}
+
+	private void needNotPrepared() {
+		if (targetItemsForSimulation != null) {
+			throw new IllegalStateException("simulation already prepared");
+		}
+	}
+
 	@Override
 	protected void initializeSimulation() {
 		this.targetItemsForSimulation = new ArrayList<>();
@@ -75,14 +135,43 @@ public final class Clock extends DesignItem implements DesignItemOwned, ClockSig
 				}
 			}
 		}
+		targetItemArray = targetItemsForSimulation.toArray(new ClockedItem[0]);
+		if (!targetItemsForSimulation.isEmpty()) {
+			// calls each item from its own call site, so the JIT can inline them
+			clockEdgeDispatcher = ClockEdgeDispatcherGenerator.generate(getDesign(), targetItemsForSimulation);
+		}
+		if (parallelSimulationEnabled && targetItemArray.length > 1 && ForkJoinPool.getCommonPoolParallelism() > 1) {
+			parallelComputePhase = new ParallelComputePhase(ForkJoinPool.commonPool(), targetItemsForSimulation);
+		}
+		signalCache = getDesign().getSignalCache();
+		levelizedEvaluator = getDesign().getLevelizedEvaluator();
 	}
 
 	public void simulateClockEdge() {
-		for (ClockedItem item : targetItemsForSimulation) {
-			item.computeNextState();
+		if (levelizedEvaluator != null) {
+			// the statements of clocked blocks read combinational signals from the evaluator
+			levelizedEvaluator.evaluate();
+		}
+		if (parallelComputePhase != null) {
+			parallelComputePhase.computeNextState();
+		} else {
+			// the values of shared signals cannot change until the state gets updated, so they can be cached until then
+			boolean cacheEnabled = signalCache.isEnabled();
+			if (cacheEnabled) {
+				signalCache.beginEpoch();
+			}
+			try {
+				if (clockEdgeDispatcher != null) {
+					clockEdgeDispatcher.computeNextState();
+				}
+			} finally {
+				if (cacheEnabled) {
+					signalCache.endEpoch();
+				}
+			}
 		}
-		for (ClockedItem item : targetItemsForSimulation) {
-			item.updateState();
+		if (clockEdgeDispatcher != null) {
+			clockEdgeDispatcher.updateState();
 		}
 	}
 
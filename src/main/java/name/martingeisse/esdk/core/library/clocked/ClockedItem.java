@@ -50,4 +50,13 @@ public abstract class ClockedItem extends DesignItem implements DesignItemOwned
 	 */
 	public abstract void updateState();
 
+	/**
+	 * Returns a rough estimate of the cost of {@link #computeNextState()} relative to other clocked items. This is
+	 * used to balance the load when computing the next state of many items in parallel. The default implementation
+	 * returns 1.
+	 */
+	public int getSimulationCostEstimate() {
+		return 1;
+	}
+
 }
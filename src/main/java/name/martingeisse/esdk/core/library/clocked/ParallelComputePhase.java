@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018 Martin Geisse
+ * This file is distributed under the terms of the MIT license.
+ */
+package name.martingeisse.esdk.core.library.clocked;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the {@link ClockedItem#computeNextState()} phase of a clock edge on multiple threads. This is allowed because
+ * computeNextState() must not change any state that is visible to other items.
+ *
+ * The items are partitioned into one chunk per thread of the pool, balanced by their estimated cost using the
+ * longest-processing-time-first rule: Items are sorted by decreasing cost, and each item goes to the chunk with the
+ * smallest total cost so far. The first chunk is run by the calling thread, the others by the pool. Waiting for all
+ * chunks to finish acts as the barrier before the updateState() phase.
+ */
+final class ParallelComputePhase {
+
+	private final ForkJoinPool pool;
+	private final ClockedItem[] localChunk;
+	private final ChunkTask[] tasks;
+
+	ParallelComputePhase(ForkJoinPool pool, List<ClockedItem> items) {
+		this.pool = pool;
+
+		// sort by decreasing cost
+		List<ClockedItem> sortedItems = new ArrayList<>(items);
+		int[] costs = new int[sortedItems.size()];
+		sortedItems.sort(Comparator.comparingInt(ClockedItem::getSimulationCostEstimate).reversed());
+		for (int i = 0; i < costs.length; i++) {
+			costs[i] = sortedItems.get(i).getSimulationCostEstimate();
+		}
+
+		// assign each item to the least loaded chunk
+		int chunkCount = Math.max(1, Math.min(pool.getParallelism(), sortedItems.size()));
+		List<List<ClockedItem>> chunks = new ArrayList<>();
+		long[] chunkCosts = new long[chunkCount];
+		for (int i = 0; i < chunkCount; i++) {
+			chunks.add(new ArrayList<>());
+		}
+		for (int i = 0; i < costs.length; i++) {
+			int leastLoaded = 0;
+			for (int j = 1; j < chunkCount; j++) {
+				if (chunkCosts[j] < chunkCosts[leastLoaded]) {
+					leastLoaded = j;
+				}
+			}
+			chunks.get(leastLoaded).add(sortedItems.get(i));
+			chunkCosts[leastLoaded] += costs[i];
+		}
+
+		this.localChunk = chunks.get(0).toArray(new ClockedItem[0]);
+		this.tasks = new ChunkTask[chunkCount - 1];
+		for (int i = 1; i < chunkCount; i++) {
+			tasks[i - 1] = new ChunkTask(chunks.get(i).toArray(new ClockedItem[0]));
+		}
+	}
+
+	void computeNextState() {
+		for (ChunkTask task : tasks) {
+			task.reinitialize();
+			pool.execute(task);
+		}
+		RuntimeException exception = null;
+		try {
+			computeNextState(localChunk);
+		} catch (RuntimeException e) {
+			exception = e;
+		}
+		// always wait for all tasks, even after an exception, so no task is still running when this method returns
+		for (ChunkTask task : tasks) {
+			try {
+				task.join();
+			} catch (RuntimeException e) {
+				if (exception == null) {
+					exception = e;
+				}
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	private static void computeNextState(ClockedItem[] items) {
+		for (ClockedItem item : items) {
+			item.computeNextState();
+		}
+	}
+
+	private static final class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ClockedItem[] items;
+
+		ChunkTask(ClockedItem[] items) {
+			this.items = items;
+		}
+
+		@Override
+		protected void compute() {
+			computeNextState(items);
+		}
+
+	}
+
+}
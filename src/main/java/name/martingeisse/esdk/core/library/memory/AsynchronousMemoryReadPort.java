@@ -83,12 +83,16 @@ public final class AsynchronousMemoryReadPort extends DesignItem implements Memo
 	public void printImplementation(VerilogWriter out) {
 	}
 
-	final class ReadDataSignal extends DesignItem implements VectorSignal, DesignItemOwned {
+	public final class ReadDataSignal extends DesignItem implements VectorSignal, DesignItemOwned {
 
 		ReadDataSignal() {
 			setName("memoryAsyncRead");
 		}
 
+		public AsynchronousMemoryReadPort getPort() {
+			return AsynchronousMemoryReadPort.this;
+		}
+
 		@Override
 		public int getWidth() {
 			return memory.getMatrix().getColumnCount();
@@ -96,7 +100,12 @@ public final class AsynchronousMemoryReadPort extends DesignItem implements Memo
 
 		@Override
 		public Vector getValue() {
-			return memory.getMatrix().getRow(addressSignal.getValue().getAsUnsignedInt());
+			return memory.getMatrix().getRow(addressSignal.getValueAsUnsignedInt());
+		}
+
+		@Override
+		public long getValueAsLong() {
+			return memory.getMatrix().getRowAsLong(addressSignal.getValueAsUnsignedInt());
 		}
 
 		@Override
@@ -39,6 +39,10 @@ public final class LookupTable extends DesignItem implements VectorSignal, Desig
 		return memory.getMatrix();
 	}
 
+	public AsynchronousMemoryReadPort getPort() {
+		return port;
+	}
+
 	@Override
 	public int getWidth() {
 		return port.getReadDataSignal().getWidth();
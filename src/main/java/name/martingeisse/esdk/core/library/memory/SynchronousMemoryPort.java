@@ -2,6 +2,7 @@ package name.martingeisse.esdk.core.library.memory;
 
 import name.martingeisse.esdk.core.DesignItem;
 import name.martingeisse.esdk.core.DesignItemOwned;
+import name.martingeisse.esdk.core.library.clocked.ChangeTracked;
 import name.martingeisse.esdk.core.library.clocked.ClockedItem;
 import name.martingeisse.esdk.core.library.signal.BitSignal;
 import name.martingeisse.esdk.core.library.signal.ClockSignal;
@@ -20,7 +21,7 @@ import name.martingeisse.esdk.core.util.vector.Vector;
 /**
  *
  */
-public final class SynchronousMemoryPort extends ClockedItem implements MemoryPort {
+public final class SynchronousMemoryPort extends ClockedItem implements MemoryPort, ChangeTracked {
 
 	private final Memory memory;
 	private final ReadSupport readSupport;
@@ -34,11 +35,12 @@ public final class SynchronousMemoryPort extends ClockedItem implements MemoryPo
 
 	private boolean sampledClockEnable;
 	private boolean sampledWriteEnable;
-	private Vector sampledAddress;
+	private int sampledAddress;
 	private Vector sampledWriteData;
 
 	private Vector synchronousReadData;
 	private final VectorSignal readDataSignal;
+	private long changeCount;
 
 	SynchronousMemoryPort(ClockSignal clockSignal, Memory memory,
 						  ReadSupport readSupport, WriteSupport writeSupport,
@@ -148,7 +150,11 @@ public final class SynchronousMemoryPort extends ClockedItem implements MemoryPo
 	// helper signals
 	// ----------------------------------------------------------------------------------------------------------------
 
-	final class AsynchronousReadDataSignal extends DesignItem implements VectorSignal, DesignItemOwned {
+	public final class AsynchronousReadDataSignal extends DesignItem implements VectorSignal, DesignItemOwned {
+
+		public SynchronousMemoryPort getPort() {
+			return SynchronousMemoryPort.this;
+		}
 
 		@Override
 		public int getWidth() {
@@ -157,7 +163,12 @@ public final class SynchronousMemoryPort extends ClockedItem implements MemoryPo
 
 		@Override
 		public Vector getValue() {
-			return memory.getMatrix().getRow(addressSignal.getValue().getAsUnsignedInt());
+			return memory.getMatrix().getRow(addressSignal.getValueAsUnsignedInt());
+		}
+
+		@Override
+		public long getValueAsLong() {
+			return memory.getMatrix().getRowAsLong(addressSignal.getValueAsUnsignedInt());
 		}
 
 		@Override
@@ -175,7 +186,11 @@ public final class SynchronousMemoryPort extends ClockedItem implements MemoryPo
 
 	}
 
-	final class SynchronousReadDataSignal extends DesignItem implements VectorSignal, DesignItemOwned {
+	public final class SynchronousReadDataSignal extends DesignItem implements VectorSignal, DesignItemOwned {
+
+		public SynchronousMemoryPort getPort() {
+			return SynchronousMemoryPort.this;
+		}
 
 		@Override
 		public int getWidth() {
@@ -212,7 +227,7 @@ public final class SynchronousMemoryPort extends ClockedItem implements MemoryPo
 	public void computeNextState() {
 		sampledClockEnable = clockEnableSignal == null || clockEnableSignal.getValue();
 		sampledWriteEnable = writeEnableSignal == null || writeEnableSignal.getValue();
-		sampledAddress = addressSignal == null ? null : addressSignal.getValue();
+		sampledAddress = addressSignal == null ? 0 : addressSignal.getValueAsUnsignedInt();
 		sampledWriteData = writeDataSignal == null ? null : writeDataSignal.getValue();
 	}
 
@@ -222,31 +237,48 @@ public final class SynchronousMemoryPort extends ClockedItem implements MemoryPo
 			// inactive
 			return;
 		}
-		int rowIndex = sampledAddress.getAsUnsignedInt();
+		int rowIndex = sampledAddress;
 		Vector currentSynchronousReadResult = memory.getMatrix().getRow(rowIndex);
 		if (writeSupport != WriteSupport.SYNCHRONOUS || !sampledWriteEnable) {
 			// read
-			synchronousReadData = currentSynchronousReadResult;
+			setSynchronousReadData(currentSynchronousReadResult);
 			return;
 		}
-		// write
-		memory.getMatrix().setRow(rowIndex, sampledWriteData);
+		// write (skipped if the row doesn't change, so the modification count of the matrix only counts real changes)
+		if (!sampledWriteData.equals(currentSynchronousReadResult)) {
+			memory.getMatrix().setRow(rowIndex, sampledWriteData);
+		}
 		switch (readWriteInteractionMode) {
 
 			case NO_READ:
 				break;
 
 			case READ_FIRST:
-				synchronousReadData = currentSynchronousReadResult;
+				setSynchronousReadData(currentSynchronousReadResult);
 				break;
 
 			case WRITE_FIRST:
-				synchronousReadData = sampledWriteData;
+				setSynchronousReadData(sampledWriteData);
 				break;
 
 		}
 	}
 
+	private void setSynchronousReadData(Vector synchronousReadData) {
+		if (!synchronousReadData.equals(this.synchronousReadData)) {
+			this.synchronousReadData = synchronousReadData;
+			changeCount++;
+		}
+	}
+
+	/**
+	 * Counts the changes to the synchronous read data. Writes to the memory are counted by its matrix.
+	 */
+	@Override
+	public long getChangeCount() {
+		return changeCount;
+	}
+
 	// ----------------------------------------------------------------------------------------------------------------
 	// Verilog generation
 	// ----------------------------------------------------------------------------------------------------------------
@@ -6,6 +6,7 @@ package name.martingeisse.esdk.core.library.pin;
 
 import name.martingeisse.esdk.core.DesignItem;
 import name.martingeisse.esdk.core.DesignItemOwned;
+import name.martingeisse.esdk.core.library.clocked.ChangeTracked;
 import name.martingeisse.esdk.core.library.signal.BitSignal;
 import name.martingeisse.esdk.core.library.signal.simulation.SimulatedSettableBitSignal;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.contribution.EmptyVerilogContribution;
@@ -16,9 +17,10 @@ import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExp
  * This similar to an {@link SimulatedSettableBitSignal} except that won't complain about synthesis as long as it is not
  * asked for an implementation expression.
  */
-public class PinSimulationSignal extends DesignItem implements BitSignal, DesignItemOwned {
+public class PinSimulationSignal extends DesignItem implements BitSignal, DesignItemOwned, ChangeTracked {
 
 	private boolean value;
+	private long changeCount;
 
 	// ----------------------------------------------------------------------------------------------------------------
 	// simulation
@@ -30,7 +32,15 @@ public class PinSimulationSignal extends DesignItem implements BitSignal, Design
 	}
 
 	public void setValue(boolean value) {
-		this.value = value;
+		if (value != this.value) {
+			this.value = value;
+			changeCount++;
+		}
+	}
+
+	@Override
+	public long getChangeCount() {
+		return changeCount;
 	}
 
 	// ----------------------------------------------------------------------------------------------------------------
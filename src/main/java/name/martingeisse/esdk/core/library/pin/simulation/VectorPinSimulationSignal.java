@@ -6,6 +6,7 @@ package name.martingeisse.esdk.core.library.pin.simulation;
 
 import name.martingeisse.esdk.core.DesignItem;
 import name.martingeisse.esdk.core.DesignItemOwned;
+import name.martingeisse.esdk.core.library.clocked.ChangeTracked;
 import name.martingeisse.esdk.core.library.signal.VectorSignal;
 import name.martingeisse.esdk.core.library.signal.simulation.SimulatedSettableVectorSignal;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.contribution.EmptyVerilogContribution;
@@ -17,10 +18,11 @@ import name.martingeisse.esdk.core.util.vector.Vector;
  * This similar to an {@link SimulatedSettableVectorSignal} except that won't complain about synthesis as long as it is not
  * asked for an implementation expression.
  */
-public class VectorPinSimulationSignal extends DesignItem implements VectorSignal, DesignItemOwned {
+public class VectorPinSimulationSignal extends DesignItem implements VectorSignal, DesignItemOwned, ChangeTracked {
 
 	private final int width;
 	private Vector value;
+	private long changeCount;
 
 	public VectorPinSimulationSignal(int width) {
 		this.width = width;
@@ -45,9 +47,17 @@ public class VectorPinSimulationSignal extends DesignItem implements VectorSigna
 		if (value.getWidth() != width) {
 			throw new IllegalArgumentException("get vector value of wrong width " + value.getWidth() + ", expected " + width);
 		}
+		if (!value.equals(this.value)) {
+			changeCount++;
+		}
 		this.value = value;
 	}
 
+	@Override
+	public long getChangeCount() {
+		return changeCount;
+	}
+
 	// ----------------------------------------------------------------------------------------------------------------
 	// Verilog generation
 	// ----------------------------------------------------------------------------------------------------------------
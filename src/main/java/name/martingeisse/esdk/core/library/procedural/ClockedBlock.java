@@ -7,6 +7,9 @@ package name.martingeisse.esdk.core.library.procedural;
 import name.martingeisse.esdk.core.library.clocked.ClockedItem;
 import name.martingeisse.esdk.core.library.procedural.statement.StatementSequence;
 import name.martingeisse.esdk.core.library.signal.ClockSignal;
+import name.martingeisse.esdk.core.library.signal.getter.CompiledStatement;
+import name.martingeisse.esdk.core.library.signal.getter.ClockedBlockSensitivity;
+import name.martingeisse.esdk.core.library.signal.getter.DefaultSignalGetterFactory;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.SignalUsageConsumer;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.SynthesisPreparationContext;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.VerilogWriter;
@@ -28,6 +31,12 @@ public final class ClockedBlock extends ClockedItem {
 	private List<ProceduralRegister> assignedProceduralRegisters;
 	private List<ProceduralMemory> assignedProceduralMemories;
 
+	// the statements compiled into a single method, or null if they are too large to be compiled
+	private CompiledStatement compiledStatements;
+
+	// what the statements depend on, or null if this block must be executed on every clock edge
+	private ClockedBlockSensitivity sensitivity;
+
 	public ClockedBlock(ClockSignal clockSignal) {
 		super(clockSignal);
 		this.statements = new StatementSequence();
@@ -86,9 +95,31 @@ public final class ClockedBlock extends ClockedItem {
 	// simulation
 	// ----------------------------------------------------------------------------------------------------------------
 
+	@Override
+	protected void initializeSimulation() {
+		super.initializeSimulation();
+		compiledStatements = DefaultSignalGetterFactory.getCompiledStatement(statements);
+		if (getClock().isActivityDrivenSimulationEnabled() && !getDesign().isPartitionedSimulationEnabled()) {
+			sensitivity = ClockedBlockSensitivity.analyze(this);
+		}
+	}
+
 	@Override
 	public void computeNextState() {
-		statements.execute();
+		if (sensitivity != null && !sensitivity.checkForChanges()) {
+			// nothing has changed, so the statements would assign the values that the registers already have
+			return;
+		}
+		if (compiledStatements != null) {
+			compiledStatements.execute();
+		} else {
+			statements.execute();
+		}
+	}
+
+	@Override
+	public int getSimulationCostEstimate() {
+		return Math.max(1, statements.getTreeSize());
 	}
 
 	@Override
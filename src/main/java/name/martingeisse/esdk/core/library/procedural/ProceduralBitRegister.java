@@ -16,6 +16,7 @@ public final class ProceduralBitRegister extends ProceduralRegister implements B
 
 	private boolean value;
 	private boolean nextValue;
+	private boolean publishedValue;
 
 	public ProceduralBitRegister() {
 	}
@@ -32,7 +33,7 @@ public final class ProceduralBitRegister extends ProceduralRegister implements B
 
 	@Override
 	public boolean getValue() {
-		return value;
+		return isReadFromForeignPartition() ? publishedValue : value;
 	}
 
 	public boolean getNextValue() {
@@ -44,9 +45,32 @@ public final class ProceduralBitRegister extends ProceduralRegister implements B
 		this.nextValue = nextValue;
 	}
 
+	// public so generated simulation code can call it directly; should not be called by application code
 	@Override
-	void updateValue() {
-		value = nextValue;
+	public void updateValue() {
+		if (value != nextValue) {
+			value = nextValue;
+			countChange();
+		}
+	}
+
+	@Override
+	void publishValue() {
+		publishedValue = value;
+	}
+
+	/**
+	 * This method directly sets the current value. This is useful, for example, to override the initial value of
+	 * a register for simulation.
+	 *
+	 * DO NOT CALL THIS from within any clock handler! Doing so makes the behavior dependent on the order in which
+	 * clock handlers are executed, which is undefined by design.
+	 */
+	public void overrideCurrentValue(boolean value) {
+		this.value = value;
+		// see ProceduralVectorRegister for why the next value must be overridden too
+		this.nextValue = value;
+		countChange();
 	}
 
 	// ----------------------------------------------------------------------------------------------------------------
@@ -100,11 +100,29 @@ public final class ProceduralMemory extends DesignItem implements DesignItemOwne
     }
 
     /**
-     * Updates the value from the stored next value.
+     * Updates the value from the stored next value. This is called by the simulation and should not be called by
+     * application code.
+     *
+     * Rows whose value does not change are not written, so the modification count of the matrix only changes if its
+     * contents do. Clocked blocks use this to detect that a memory they read has not changed.
      */
-    void updateMatrix() {
-        for (Update update : updates) {
-            matrix.setRow(update.index, update.value);
+    public void updateMatrix() {
+        if (updates.isEmpty()) {
+            return;
+        }
+        if (matrix.getColumnCount() <= 64) {
+            // compare as longs, but store the vector, so reading the row as a vector does not create another one
+            for (Update update : updates) {
+                if (matrix.getRowAsLong(update.index) != update.value.getAsSignedLong()) {
+                    matrix.setRow(update.index, update.value);
+                }
+            }
+        } else {
+            for (Update update : updates) {
+                if (!matrix.getRow(update.index).equals(update.value)) {
+                    matrix.setRow(update.index, update.value);
+                }
+            }
         }
         updates.clear();
     }
@@ -51,6 +51,11 @@ public final class ProceduralMemoryConstantIndexSelection extends DesignItem imp
 		return memory.getMatrix().getRow(index);
 	}
 
+	@Override
+	public long getValueAsLong() {
+		return memory.getMatrix().getRowAsLong(index);
+	}
+
 	// ----------------------------------------------------------------------------------------------------------------
 	// Verilog generation
 	// ----------------------------------------------------------------------------------------------------------------
@@ -53,7 +53,12 @@ public final class ProceduralMemoryIndexSelection extends DesignItem implements
 
 	@Override
 	public Vector getValue() {
-		return memory.getMatrix().getRow(indexSignal.getValue().getAsUnsignedInt());
+		return memory.getMatrix().getRow(indexSignal.getValueAsUnsignedInt());
+	}
+
+	@Override
+	public long getValueAsLong() {
+		return memory.getMatrix().getRowAsLong(indexSignal.getValueAsUnsignedInt());
 	}
 
 	// ----------------------------------------------------------------------------------------------------------------
@@ -6,6 +6,8 @@ package name.martingeisse.esdk.core.library.procedural;
 
 import name.martingeisse.esdk.core.DesignItem;
 import name.martingeisse.esdk.core.DesignItemOwned;
+import name.martingeisse.esdk.core.SimulationPartition;
+import name.martingeisse.esdk.core.library.clocked.ChangeTracked;
 import name.martingeisse.esdk.core.library.procedural.statement.target.AssignmentTarget;
 import name.martingeisse.esdk.core.library.signal.BitConstant;
 import name.martingeisse.esdk.core.library.signal.Signal;
@@ -23,11 +25,13 @@ import java.util.function.Consumer;
 /**
  *
  */
-public abstract class ProceduralRegister extends DesignItem implements Signal, AssignmentTarget, DesignItemOwned {
+public abstract class ProceduralRegister extends DesignItem implements Signal, AssignmentTarget, DesignItemOwned, ChangeTracked {
 
 	private boolean initialized;
 	private ClockedBlock clockedBlock;
 	private boolean errorIfNotAssigned = true;
+	private SimulationPartition simulationPartition;
+	private long changeCount;
 
 	/**
 	 * This getter returns null before finishing construction.
@@ -82,6 +86,41 @@ public abstract class ProceduralRegister extends DesignItem implements Signal, A
 	 */
 	abstract void updateValue();
 
+	@Override
+	public final long getChangeCount() {
+		return changeCount;
+	}
+
+	/**
+	 * Must be called by subclasses whenever the current value changes.
+	 */
+	final void countChange() {
+		changeCount++;
+	}
+
+	/**
+	 * Makes this register double-buffered for partitioned simulation, because it is read by other partitions than
+	 * the one it belongs to. This is called by the simulation and should not be called by application code.
+	 */
+	public final void setSimulationPartition(SimulationPartition simulationPartition) {
+		this.simulationPartition = simulationPartition;
+		simulationPartition.addPublisher(this::publishValue);
+	}
+
+	/**
+	 * Checks whether the value is being read by another partition than the one this register belongs to, in which
+	 * case the published value must be returned.
+	 */
+	final boolean isReadFromForeignPartition() {
+		SimulationPartition partition = simulationPartition;
+		return partition != null && partition.isForeignThread();
+	}
+
+	/**
+	 * Copies the current value to the value seen by other partitions.
+	 */
+	abstract void publishValue();
+
 	// ----------------------------------------------------------------------------------------------------------------
 	// Verilog generation
 	// ----------------------------------------------------------------------------------------------------------------
@@ -20,6 +20,7 @@ public final class ProceduralVectorRegister extends ProceduralRegister implement
 	private final int width;
 	private Vector value;
 	private Vector nextValue;
+	private Vector publishedValue;
 
 	public ProceduralVectorRegister(int width) {
 		this.width = width;
@@ -64,7 +65,17 @@ public final class ProceduralVectorRegister extends ProceduralRegister implement
 
 	@Override
 	public Vector getValue() {
-		return value;
+		return isReadFromForeignPartition() ? publishedValue : value;
+	}
+
+	@Override
+	public long getValueAsLong() {
+		return getValue().getAsSignedLong();
+	}
+
+	@Override
+	public int getValueAsInt() {
+		return getValue().getAsSignedInt();
 	}
 
 	public Vector getNextValue() {
@@ -82,9 +93,20 @@ public final class ProceduralVectorRegister extends ProceduralRegister implement
 		this.nextValue = nextValue;
 	}
 
+	// public so generated simulation code can call it directly; should not be called by application code
+	@Override
+	public void updateValue() {
+		if (nextValue != value) {
+			if (!nextValue.equals(value)) {
+				countChange();
+			}
+			value = nextValue;
+		}
+	}
+
 	@Override
-	void updateValue() {
-		value = nextValue;
+	void publishValue() {
+		publishedValue = value;
 	}
 
 	/**
@@ -107,6 +129,7 @@ public final class ProceduralVectorRegister extends ProceduralRegister implement
 		// value always gets written to the current value in updateValue(), restoring the old value from before this
 		// method got called.
 		this.nextValue = value;
+		countChange();
 	}
 
 	// ----------------------------------------------------------------------------------------------------------------
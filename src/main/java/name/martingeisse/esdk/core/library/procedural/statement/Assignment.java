@@ -21,7 +21,7 @@ public abstract class Assignment extends Statement {
 
 	public abstract Signal getDestination();
 	public abstract Signal getSource();
-	protected abstract AssignmentTarget getAssignmentTarget();
+	public abstract AssignmentTarget getAssignmentTarget();
 
 	// ----------------------------------------------------------------------------------------------------------------
 	// construction
@@ -33,7 +33,7 @@ public final class BitAssignment extends Assignment {
 	}
 
 	@Override
-	protected AssignmentTarget getAssignmentTarget() {
+	public AssignmentTarget getAssignmentTarget() {
 		if (assignmentTarget == null) {
 			assignmentTarget = AssignmentTargetFactory.buildBitAssignmentTarget(destination);
 		}
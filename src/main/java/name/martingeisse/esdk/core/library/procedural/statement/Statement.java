@@ -22,6 +22,14 @@ public abstract class Statement extends DesignItem implements DesignItemOwned {
 
 	public abstract boolean isEffectivelyNop();
 
+	/**
+	 * Returns the number of statements in the tree rooted at this statement, not counting statement sequences
+	 * themselves. This is used as a rough estimate of the cost of executing the statement.
+	 */
+	public int getTreeSize() {
+		return 1;
+	}
+
 	// ----------------------------------------------------------------------------------------------------------------
 	// construction
 	// ----------------------------------------------------------------------------------------------------------------
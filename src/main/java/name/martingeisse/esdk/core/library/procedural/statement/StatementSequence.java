@@ -44,6 +44,15 @@ public class StatementSequence extends Statement {
 		return true;
 	}
 
+	@Override
+	public int getTreeSize() {
+		int size = 0;
+		for (Statement statement : statements) {
+			size += statement.getTreeSize();
+		}
+		return size;
+	}
+
 	// ----------------------------------------------------------------------------------------------------------------
 	// factory methods
 	// ----------------------------------------------------------------------------------------------------------------
@@ -6,6 +6,8 @@ import name.martingeisse.esdk.core.library.procedural.ProceduralRegister;
 import name.martingeisse.esdk.core.library.signal.VectorSignal;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.SignalUsageConsumer;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.VerilogWriter;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExpressionNesting;
+import name.martingeisse.esdk.core.util.SwitchJumpTable;
 import name.martingeisse.esdk.core.util.vector.Vector;
 
 import java.util.ArrayList;
@@ -20,6 +22,7 @@ public final class SwitchStatement extends Statement {
 	private final VectorSignal selector;
 	private final List<Case> cases;
 	private final StatementSequence defaultBranch;
+	private SwitchJumpTable jumpTable;
 
 	public SwitchStatement(VectorSignal selector) {
 		this.selector = selector;
@@ -52,6 +55,7 @@ public final class SwitchStatement extends Statement {
 		}
 		Case aCase = new Case(selectorValues);
 		cases.add(aCase);
+		jumpTable = null;
 		return aCase.getBranch();
 	}
 
@@ -84,20 +88,47 @@ public final class SwitchStatement extends Statement {
 		return (defaultBranch == null || defaultBranch.isEffectivelyNop());
 	}
 
+	@Override
+	public int getTreeSize() {
+		int size = 1 + defaultBranch.getTreeSize();
+		for (Case aCase : cases) {
+			size += aCase.getBranch().getTreeSize();
+		}
+		return size;
+	}
+
 	@Override
 	public void collectAssignedRegistersAndMemories(Consumer<ProceduralRegister> registerConsumer, Consumer<ProceduralMemory> memoryConsumer) {
 		cases.forEach(aCase -> aCase.branch.collectAssignedRegistersAndMemories(registerConsumer, memoryConsumer));
 		defaultBranch.collectAssignedRegistersAndMemories(registerConsumer, memoryConsumer);
 	}
 
+	@Override
+	protected void initializeSimulation() {
+		super.initializeSimulation();
+		List<List<Vector>> caseSelectorValues = new ArrayList<>();
+		for (Case aCase : cases) {
+			caseSelectorValues.add(aCase.getSelectorValues());
+		}
+		jumpTable = SwitchJumpTable.build(selector.getWidth(), caseSelectorValues);
+	}
+
 	@Override
 	public void execute() {
 		Vector actualSelectorValue = selector.getValue();
-		for (Case aCase : cases) {
-			for (Vector caseSelectorValue : aCase.getSelectorValues()) {
-				if (actualSelectorValue.equals(caseSelectorValue)) {
-					aCase.getBranch().execute();
-					return;
+		if (jumpTable != null) {
+			int caseIndex = jumpTable.getCaseIndex(actualSelectorValue);
+			if (caseIndex >= 0) {
+				cases.get(caseIndex).getBranch().execute();
+				return;
+			}
+		} else {
+			for (Case aCase : cases) {
+				for (Vector caseSelectorValue : aCase.getSelectorValues()) {
+					if (actualSelectorValue.equals(caseSelectorValue)) {
+						aCase.getBranch().execute();
+						return;
+					}
 				}
 			}
 		}
@@ -108,6 +139,7 @@ public final class SwitchStatement extends Statement {
 
 	@Override
 	public void analyzeSignalUsage(SignalUsageConsumer consumer) {
+		consumer.getFakeExpressionWriter().printSignal(selector, VerilogExpressionNesting.ALL);
 		for (Case aCase : cases) {
 			aCase.getBranch().analyzeSignalUsage(consumer);
 		}
@@ -36,7 +36,7 @@ public final class VectorAssignment extends Assignment {
 	}
 
 	@Override
-	protected AssignmentTarget getAssignmentTarget() {
+	public AssignmentTarget getAssignmentTarget() {
 		if (assignmentTarget == null) {
 			assignmentTarget = AssignmentTargetFactory.buildVectorAssignmentTarget(destination);
 		}
@@ -48,6 +48,11 @@ public final class WhenStatement extends Statement {
 		return thenBranch.isEffectivelyNop() && otherwiseBranch.isEffectivelyNop();
 	}
 
+	@Override
+	public int getTreeSize() {
+		return 1 + thenBranch.getTreeSize() + otherwiseBranch.getTreeSize();
+	}
+
 	// ----------------------------------------------------------------------------------------------------------------
 	// construction
 	// ----------------------------------------------------------------------------------------------------------------
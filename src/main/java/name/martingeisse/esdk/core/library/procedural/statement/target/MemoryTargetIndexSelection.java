@@ -59,7 +59,7 @@ public final class MemoryTargetIndexSelection implements VectorAssignmentTarget
 
 	@Override
 	public void setNextValue(Vector nextValue) {
-		int index = indexSignal.getValue().getAsUnsignedInt();
+		int index = indexSignal.getValueAsUnsignedInt();
 		memory.requestUpdate(index, nextValue);
 	}
 
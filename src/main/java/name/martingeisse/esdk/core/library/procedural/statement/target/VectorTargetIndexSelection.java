@@ -54,7 +54,7 @@ public final class VectorTargetIndexSelection implements BitAssignmentTarget {
 
 	@Override
 	public void setNextValue(boolean nextValue) {
-		int index = indexSignal.getValue().getAsUnsignedInt();
+		int index = indexSignal.getValueAsUnsignedInt();
 		Vector nextContainerValue = containerTarget.getNextValue();
 		Vector updatedValue;
 		if (index == 0) {
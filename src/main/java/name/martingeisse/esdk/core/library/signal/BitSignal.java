@@ -24,6 +24,13 @@ public interface BitSignal extends Signal {
 
 	boolean getValue();
 
+	/**
+	 * Returns the current value as 1 or 0, for simulation code that computes with bits as numbers.
+	 */
+	default int getValueAsInt() {
+		return getValue() ? 1 : 0;
+	}
+
 	// ----------------------------------------------------------------------------------------------------------------
 	// factory methods
 	// ----------------------------------------------------------------------------------------------------------------
@@ -41,6 +41,16 @@ public final class VectorConstant extends DesignItem implements VectorSignal, De
 		return value;
 	}
 
+	@Override
+	public long getValueAsLong() {
+		return value.getAsSignedLong();
+	}
+
+	@Override
+	public int getValueAsInt() {
+		return value.getAsSignedInt();
+	}
+
 	// ----------------------------------------------------------------------------------------------------------------
 	// Verilog generation
 	// ----------------------------------------------------------------------------------------------------------------
@@ -28,6 +28,36 @@ public interface VectorSignal extends Signal {
 
 	Vector getValue();
 
+	/**
+	 * Returns the bits of the current value as a long, like {@link Vector#getAsSignedLong()}. This signal must be at
+	 * most 64 bits wide. Signals that can provide their value without constructing a {@link Vector} override this
+	 * method to do so.
+	 */
+	default long getValueAsLong() {
+		return getValue().getAsSignedLong();
+	}
+
+	/**
+	 * Returns the bits of the current value as an int, like {@link Vector#getAsSignedInt()}. This signal must be at
+	 * most 32 bits wide. Signals that can provide their value without constructing a {@link Vector} override this
+	 * method to do so.
+	 */
+	default int getValueAsInt() {
+		return getValue().getAsSignedInt();
+	}
+
+	/**
+	 * Returns the current value as an int, like {@link Vector#getAsUnsignedInt()}. This signal must be at most 31 bits
+	 * wide, so the result is never negative; this is meant for indices, shift amounts and addresses. It uses
+	 * {@link #getValueAsInt()}, so it avoids constructing a {@link Vector} where that method does.
+	 */
+	default int getValueAsUnsignedInt() throws ArithmeticException {
+		if (getWidth() > 31) {
+			throw new ArithmeticException("cannot convert a value of width " + getWidth() + " to int");
+		}
+		return getValueAsInt();
+	}
+
 	// ----------------------------------------------------------------------------------------------------------------
 	// factory methods
 	// ----------------------------------------------------------------------------------------------------------------
@@ -52,4 +52,14 @@ public final class VectorConnector extends SignalConnector implements VectorSign
 		return connected.getValue();
 	}
 
+	@Override
+	public long getValueAsLong() {
+		return connected.getValueAsLong();
+	}
+
+	@Override
+	public int getValueAsInt() {
+		return connected.getValueAsInt();
+	}
+
 }
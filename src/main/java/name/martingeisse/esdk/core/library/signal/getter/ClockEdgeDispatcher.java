@@ -0,0 +1,22 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.library.clocked.ClockedItem;
+
+/**
+ * Base class for the code generated by {@link ClockEdgeDispatcherGenerator} for the clocked items of a single clock
+ * domain. Each method simulates one phase of a clock edge for all items, like calling the corresponding method of
+ * {@link ClockedItem} on each of them.
+ */
+public abstract class ClockEdgeDispatcher {
+
+    /**
+     * Calls {@link ClockedItem#computeNextState()} on all items.
+     */
+    public abstract void computeNextState();
+
+    /**
+     * Calls {@link ClockedItem#updateState()} on all items.
+     */
+    public abstract void updateState();
+
+}
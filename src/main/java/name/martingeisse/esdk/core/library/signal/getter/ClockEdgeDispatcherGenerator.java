@@ -0,0 +1,256 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.library.clocked.ClockedItem;
+import name.martingeisse.esdk.core.library.procedural.*;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Generates a {@link ClockEdgeDispatcher} for the clocked items of a clock domain. Calling computeNextState() and
+ * updateState() in a loop over all items makes these call sites megamorphic, so the JIT cannot inline any of the
+ * called methods. The generated code instead has a separate call site for each item, which the JIT sees as
+ * monomorphic. Where the class of an item is accessible from generated code, the call is made on that class so it
+ * can be statically bound.
+ *
+ * Items whose computeNextState() or updateState() method is known to be empty (by looking at its bytecode) are
+ * skipped in that phase. This only skips calls that have no effect, so items that do all their work in one phase
+ * behave exactly as when called through the {@link ClockedItem} interface. For example, the ClockedPlotter samples
+ * in computeNextState() and has an empty updateState(), so only its computeNextState() gets called. If the bytecode
+ * of a class cannot be read, its methods are assumed not to be empty. For clocked blocks, updateState() is unrolled
+ * into direct calls to update each register and memory.
+ *
+ * The calls are split into several methods of at most {@link #CALLS_PER_METHOD} calls each, so the JIT still inlines
+ * the called methods into the generated code instead of running out of its inlining budget.
+ */
+public final class ClockEdgeDispatcherGenerator {
+
+    private static final int CALLS_PER_METHOD = 100;
+
+    // the names of the methods of a class that take no arguments, return void and do nothing
+    private static final ClassValue<Set<String>> emptyMethodNames = new ClassValue<Set<String>>() {
+        @Override
+        protected Set<String> computeValue(Class<?> type) {
+            return findEmptyMethodNames(type);
+        }
+    };
+
+    /**
+     * Generates a dispatcher for the specified items, which must all belong to the specified design.
+     */
+    public static ClockEdgeDispatcher generate(Design design, List<ClockedItem> items) {
+        return new ClockEdgeDispatcherGenerator(design, items).generate();
+    }
+
+    private static String internal(Class<?> c) {
+        return c.getName().replace('.', '/');
+    }
+
+    private final Design design;
+    private final List<ClockedItem> items;
+    private final ClassNode classNode;
+    private final Map<Object, String> targetFields = new IdentityHashMap<>();
+    private final List<Object> targets = new ArrayList<>();
+
+    private ClockEdgeDispatcherGenerator(Design design, List<ClockedItem> items) {
+        this.design = design;
+        this.items = items;
+        this.classNode = new ClassNode();
+    }
+
+    private ClockEdgeDispatcher generate() {
+        List<Call> computeCalls = new ArrayList<>();
+        List<Call> updateCalls = new ArrayList<>();
+        for (ClockedItem item : items) {
+            if (!isEmpty(item.getClass(), "computeNextState")) {
+                computeCalls.add(new Call(item, "computeNextState"));
+            }
+            if (item instanceof ClockedBlock && isUnrollable((ClockedBlock) item)) {
+                ClockedBlock block = (ClockedBlock)item;
+                for (ProceduralRegister register : block.getAssignedProceduralRegisters()) {
+                    updateCalls.add(new Call(register, "updateValue"));
+                }
+                for (ProceduralMemory memory : block.getAssignedProceduralMemories()) {
+                    updateCalls.add(new Call(memory, "updateMatrix"));
+                }
+            } else if (!isEmpty(item.getClass(), "updateState")) {
+                updateCalls.add(new Call(item, "updateState"));
+            }
+        }
+        try {
+
+            classNode.version = 52;
+            classNode.name = GeneratedClassLoader.newClassName("GeneratedClockEdgeDispatcher_");
+            classNode.superName = internal(ClockEdgeDispatcher.class);
+            classNode.access = Opcodes.ACC_PUBLIC;
+
+            MethodNode constructorNode = new MethodNode();
+            constructorNode.name = "<init>";
+            constructorNode.desc = "()V";
+            constructorNode.access = Opcodes.ACC_PUBLIC;
+            constructorNode.visitCode();
+            constructorNode.visitVarInsn(Opcodes.ALOAD, 0);
+            constructorNode.visitMethodInsn(Opcodes.INVOKESPECIAL, internal(ClockEdgeDispatcher.class), "<init>",
+                    "()V", false);
+            constructorNode.visitInsn(Opcodes.RETURN);
+            classNode.methods.add(constructorNode);
+
+            generatePhase("computeNextState", computeCalls);
+            generatePhase("updateState", updateCalls);
+
+            GeneratedClassLoader classLoader = GeneratedClassLoader.forDesign(design);
+            ClockEdgeDispatcher instance = (ClockEdgeDispatcher)classLoader.defineClass(classNode).getConstructor()
+                    .newInstance();
+            Class<?> theClass = instance.getClass();
+            for (Object target : targets) {
+                theClass.getField(targetFields.get(target)).set(instance, target);
+            }
+            return instance;
+
+        } catch (Exception e) {
+            throw new RuntimeException("could not generate ClockEdgeDispatcher", e);
+        }
+    }
+
+    // only the built-in register types are known to have a public updateValue() method
+    private static boolean isUnrollable(ClockedBlock block) {
+        for (ProceduralRegister register : block.getAssignedProceduralRegisters()) {
+            if (!(register instanceof ProceduralBitRegister) && !(register instanceof ProceduralVectorRegister)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void generatePhase(String methodName, List<Call> calls) {
+        MethodNode methodNode = new MethodNode();
+        methodNode.name = methodName;
+        methodNode.desc = "()V";
+        methodNode.access = Opcodes.ACC_PUBLIC;
+        methodNode.visitCode();
+        if (calls.size() <= CALLS_PER_METHOD) {
+            renderCalls(methodNode, calls);
+        } else {
+            for (int start = 0; start < calls.size(); start += CALLS_PER_METHOD) {
+                MethodNode partNode = new MethodNode();
+                partNode.name = methodName + (start / CALLS_PER_METHOD);
+                partNode.desc = "()V";
+                partNode.access = Opcodes.ACC_PRIVATE;
+                partNode.visitCode();
+                renderCalls(partNode, calls.subList(start, Math.min(start + CALLS_PER_METHOD, calls.size())));
+                partNode.visitInsn(Opcodes.RETURN);
+                classNode.methods.add(partNode);
+                methodNode.visitVarInsn(Opcodes.ALOAD, 0);
+                methodNode.visitMethodInsn(Opcodes.INVOKESPECIAL, classNode.name, partNode.name, "()V", false);
+            }
+        }
+        methodNode.visitInsn(Opcodes.RETURN);
+        classNode.methods.add(methodNode);
+    }
+
+    private void renderCalls(MethodNode methodNode, List<Call> calls) {
+        for (Call call : calls) {
+            Class<?> targetClass = getAccessibleClass(call.target.getClass());
+            String descriptor = "L" + internal(targetClass) + ";";
+            String field = targetFields.get(call.target);
+            if (field == null) {
+                field = "target" + targets.size();
+                classNode.visitField(Opcodes.ACC_PUBLIC, field, descriptor, null, null);
+                targets.add(call.target);
+                targetFields.put(call.target, field);
+            }
+            methodNode.visitVarInsn(Opcodes.ALOAD, 0);
+            methodNode.visitFieldInsn(Opcodes.GETFIELD, classNode.name, field, descriptor);
+            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(targetClass), call.methodName, "()V", false);
+        }
+    }
+
+    // Returns the class itself or its nearest superclass that generated code can refer to, i.e. that is public and
+    // visible through the class loader for generated code. This always finds ClockedItem or the procedural classes.
+    private static Class<?> getAccessibleClass(Class<?> c) {
+        while (!isAccessible(c)) {
+            c = c.getSuperclass();
+        }
+        return c;
+    }
+
+    private static boolean isAccessible(Class<?> c) {
+        if (!Modifier.isPublic(c.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(c.getName(), false, GeneratedClassLoader.class.getClassLoader()) == c;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    // checks whether the implementation of the specified method (no arguments, returning void) does nothing
+    private static boolean isEmpty(Class<?> c, String methodName) {
+        for (; c != null; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(methodName);
+            } catch (NoSuchMethodException e) {
+                continue;
+            }
+            return emptyMethodNames.get(c).contains(methodName);
+        }
+        return false;
+    }
+
+    private static Set<String> findEmptyMethodNames(Class<?> c) {
+        ClassLoader classLoader = c.getClassLoader();
+        if (classLoader == null) {
+            return Collections.emptySet();
+        }
+        ClassNode classNode = new ClassNode();
+        try (InputStream inputStream = classLoader.getResourceAsStream(internal(c) + ".class")) {
+            if (inputStream == null) {
+                return Collections.emptySet();
+            }
+            new ClassReader(inputStream).accept(classNode, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        } catch (IOException | RuntimeException e) {
+            // for example, a class file version that is newer than ASM supports -- treat all methods as not empty
+            return Collections.emptySet();
+        }
+        Set<String> result = new HashSet<>();
+        for (MethodNode methodNode : classNode.methods) {
+            if (methodNode.desc.equals("()V") && (methodNode.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0 &&
+                    isEmpty(methodNode)) {
+                result.add(methodNode.name);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isEmpty(MethodNode methodNode) {
+        for (AbstractInsnNode instruction : methodNode.instructions) {
+            // labels and similar pseudo-instructions have a negative opcode
+            if (instruction.getOpcode() >= 0 && instruction.getOpcode() != Opcodes.RETURN) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Call {
+
+        private final Object target;
+        private final String methodName;
+
+        Call(Object target, String methodName) {
+            this.target = target;
+            this.methodName = methodName;
+        }
+
+    }
+
+}
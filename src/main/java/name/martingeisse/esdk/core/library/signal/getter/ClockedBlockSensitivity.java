@@ -0,0 +1,229 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.library.clocked.ChangeTracked;
+import name.martingeisse.esdk.core.library.memory.AsynchronousMemoryReadPort;
+import name.martingeisse.esdk.core.library.memory.LookupTable;
+import name.martingeisse.esdk.core.library.memory.SynchronousMemoryPort;
+import name.martingeisse.esdk.core.library.pin.InputPin;
+import name.martingeisse.esdk.core.library.pin.simulation.VectorInputPin;
+import name.martingeisse.esdk.core.library.procedural.*;
+import name.martingeisse.esdk.core.library.procedural.statement.*;
+import name.martingeisse.esdk.core.library.signal.BitConstant;
+import name.martingeisse.esdk.core.library.signal.Signal;
+import name.martingeisse.esdk.core.library.signal.VectorConstant;
+import name.martingeisse.esdk.core.library.signal.connector.SignalConnector;
+import name.martingeisse.esdk.core.tools.optimization.SignalOptimizer;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.SignalUsageConsumer;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExpressionNesting;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExpressionWriter;
+import name.martingeisse.esdk.core.util.Matrix;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The registers, memories and inputs that the statements of a {@link ClockedBlock} read, determined statically, plus
+ * the registers and memories it assigns to. As long as none of them changes, executing the statements again would
+ * have no effect, since they would assign the same values as in the last clock edge, which the registers and
+ * memories already have. So the block can skip its computeNextState() phase.
+ *
+ * Changes are detected through the change count of registers and inputs (see {@link ChangeTracked}) and the
+ * modification count of memories. This includes changes made by testbench code between clock edges.
+ *
+ * Not all signals can be tracked. If a block reads a signal whose changes are not counted, such as a signal computed
+ * by high-level model code, or contains statements other than the built-in ones, no sensitivity can be determined
+ * and the block must be executed on every clock edge.
+ */
+public final class ClockedBlockSensitivity {
+
+    private final ProceduralRegister[] registers;
+    private final Matrix[] matrices;
+    private final ChangeTracked[] inputs;
+    private long lastChangeSum = -1;
+
+    private ClockedBlockSensitivity(ProceduralRegister[] registers, Matrix[] matrices, ChangeTracked[] inputs) {
+        this.registers = registers;
+        this.matrices = matrices;
+        this.inputs = inputs;
+    }
+
+    /**
+     * Determines the sensitivity of the specified block, or returns null if it cannot be determined. The construction
+     * of the design must have been finalized.
+     */
+    public static ClockedBlockSensitivity analyze(ClockedBlock block) {
+        Analyzer analyzer = new Analyzer(block.getDesign().getSignalOptimizer());
+        if (!analyzer.analyzeStatement(block.getStatements())) {
+            return null;
+        }
+        analyzer.registers.addAll(block.getAssignedProceduralRegisters());
+        for (ProceduralMemory memory : block.getAssignedProceduralMemories()) {
+            analyzer.matrices.add(memory.getMatrix());
+        }
+        return new ClockedBlockSensitivity(analyzer.registers.toArray(new ProceduralRegister[0]),
+                analyzer.matrices.toArray(new Matrix[0]), analyzer.inputs.toArray(new ChangeTracked[0]));
+    }
+
+    /**
+     * Determines the sensitivity of a clocked item other than a clocked block that reads the specified signals, or
+     * returns null if it cannot be determined. The construction of the design must have been finalized.
+     */
+    public static ClockedBlockSensitivity analyze(Design design, List<? extends Signal> signals) {
+        Analyzer analyzer = new Analyzer(design.getSignalOptimizer());
+        for (Signal signal : signals) {
+            analyzer.analyzeSignal(signal);
+        }
+        if (!analyzer.tracked) {
+            return null;
+        }
+        return new ClockedBlockSensitivity(analyzer.registers.toArray(new ProceduralRegister[0]),
+                analyzer.matrices.toArray(new Matrix[0]), analyzer.inputs.toArray(new ChangeTracked[0]));
+    }
+
+    /**
+     * Checks whether the specified register is part of this sensitivity, i.e. whether it is read or assigned.
+     */
+    public boolean contains(ProceduralRegister register) {
+        for (ProceduralRegister element : registers) {
+            if (element == register) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if anything in the sensitivity has changed since the last call, or if this is the first call.
+     * Since change counts never decrease, their sum changes exactly if any of them does.
+     */
+    public boolean checkForChanges() {
+        long sum = 0;
+        for (ProceduralRegister register : registers) {
+            sum += register.getChangeCount();
+        }
+        for (Matrix matrix : matrices) {
+            sum += matrix.getModificationCount();
+        }
+        for (ChangeTracked input : inputs) {
+            sum += input.getChangeCount();
+        }
+        if (sum == lastChangeSum) {
+            return false;
+        }
+        lastChangeSum = sum;
+        return true;
+    }
+
+    private static final class Analyzer {
+
+        private final SignalOptimizer optimizer;
+        private final Set<Signal> visitedSignals = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<ProceduralRegister> registers = new LinkedHashSet<>();
+        private final Set<Matrix> matrices = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<ChangeTracked> inputs = new LinkedHashSet<>();
+        private boolean tracked = true;
+
+        Analyzer(SignalOptimizer optimizer) {
+            this.optimizer = optimizer;
+        }
+
+        boolean analyzeStatement(Statement statement) {
+            if (statement instanceof StatementSequence) {
+                for (Statement element : ((StatementSequence) statement).getStatements()) {
+                    if (!analyzeStatement(element)) {
+                        return false;
+                    }
+                }
+                return true;
+            } else if (statement instanceof NopStatement) {
+                return true;
+            } else if (statement instanceof Assignment) {
+                Assignment assignment = (Assignment)statement;
+                analyzeSignal(assignment.getSource());
+                List<Signal> targetSignals = new ArrayList<>();
+                assignment.getAssignmentTarget().analyzeSignalUsage(new SignalUsageConsumer() {
+
+                    @Override
+                    public void consumeSignalUsage(Signal signal, VerilogExpressionNesting nesting) {
+                        if (signal != null) {
+                            targetSignals.add(signal);
+                        }
+                    }
+
+                    @Override
+                    public VerilogExpressionWriter getFakeExpressionWriter() {
+                        throw new UnsupportedOperationException();
+                    }
+
+                });
+                for (Signal signal : targetSignals) {
+                    analyzeSignal(signal);
+                }
+                return tracked;
+            } else if (statement instanceof WhenStatement) {
+                WhenStatement whenStatement = (WhenStatement)statement;
+                analyzeSignal(whenStatement.getCondition());
+                return tracked && analyzeStatement(whenStatement.getThenBranch()) &&
+                        analyzeStatement(whenStatement.getOtherwiseBranch());
+            } else if (statement instanceof SwitchStatement) {
+                SwitchStatement switchStatement = (SwitchStatement)statement;
+                analyzeSignal(switchStatement.getSelector());
+                for (SwitchStatement.Case aCase : switchStatement.getCases()) {
+                    if (!analyzeStatement(aCase.getBranch())) {
+                        return false;
+                    }
+                }
+                return tracked && analyzeStatement(switchStatement.getDefaultBranch());
+            } else {
+                return false;
+            }
+        }
+
+        void analyzeSignal(Signal signal) {
+            if (!tracked || signal == null || !visitedSignals.add(signal)) {
+                return;
+            }
+            if (signal instanceof SignalConnector) {
+                analyzeSignal(((SignalConnector) signal).getConnected());
+                return;
+            }
+            Signal optimized = optimizer.getOptimized(signal);
+            if (optimized != signal) {
+                analyzeSignal(optimized);
+                return;
+            }
+            if (signal instanceof ProceduralRegister) {
+                registers.add((ProceduralRegister) signal);
+            } else if (signal instanceof ChangeTracked) {
+                inputs.add((ChangeTracked) signal);
+            } else if (signal instanceof InputPin) {
+                inputs.add(((InputPin) signal).getSettableBitSignal());
+            } else if (signal instanceof VectorInputPin) {
+                inputs.add(((VectorInputPin) signal).getSimulationSignal());
+            } else if (signal instanceof SynchronousMemoryPort.SynchronousReadDataSignal) {
+                inputs.add(((SynchronousMemoryPort.SynchronousReadDataSignal) signal).getPort());
+            } else if (signal instanceof BitConstant || signal instanceof VectorConstant) {
+                return;
+            } else if (signal instanceof ProceduralMemoryIndexSelection) {
+                matrices.add(((ProceduralMemoryIndexSelection) signal).getMemory().getMatrix());
+            } else if (signal instanceof ProceduralMemoryConstantIndexSelection) {
+                matrices.add(((ProceduralMemoryConstantIndexSelection) signal).getMemory().getMatrix());
+            } else if (signal instanceof AsynchronousMemoryReadPort.ReadDataSignal) {
+                matrices.add(((AsynchronousMemoryReadPort.ReadDataSignal) signal).getPort().getMemory().getMatrix());
+            } else if (signal instanceof SynchronousMemoryPort.AsynchronousReadDataSignal) {
+                matrices.add(((SynchronousMemoryPort.AsynchronousReadDataSignal) signal).getPort().getMemory().getMatrix());
+            } else if (!SignalOptimizer.isRemovableIfUnused(signal) && !(signal instanceof LookupTable)) {
+                tracked = false;
+                return;
+            }
+            SignalCache.forEachOperand(signal, this::analyzeSignal);
+        }
+
+    }
+
+}
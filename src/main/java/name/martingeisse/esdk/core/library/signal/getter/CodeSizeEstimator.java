@@ -0,0 +1,205 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.library.memory.AsynchronousMemoryReadPort;
+import name.martingeisse.esdk.core.library.memory.LookupTable;
+import name.martingeisse.esdk.core.library.memory.SynchronousMemoryPort;
+import name.martingeisse.esdk.core.library.procedural.ProceduralMemoryIndexSelection;
+import name.martingeisse.esdk.core.library.procedural.statement.*;
+import name.martingeisse.esdk.core.library.procedural.statement.target.MemoryTargetIndexSelection;
+import name.martingeisse.esdk.core.library.procedural.statement.target.VectorTargetIndexSelection;
+import name.martingeisse.esdk.core.library.signal.Signal;
+import name.martingeisse.esdk.core.library.signal.connector.SignalConnector;
+import name.martingeisse.esdk.core.library.signal.mux.ConditionalOperation;
+import name.martingeisse.esdk.core.library.signal.mux.SwitchSignal;
+import name.martingeisse.esdk.core.library.signal.operation.*;
+import name.martingeisse.esdk.core.library.signal.vector.*;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the size of the bytecode that {@link GetterGenerator} produces for a signal or statement, including all
+ * operands. Shared operands are counted once per use since they get rendered once per use. The estimate only needs
+ * to be good enough to decide when to move code into a separate method; it is not exact.
+ */
+final class CodeSizeEstimator {
+
+    // rough size of a node, not counting its operands
+    private static final int NODE_SIZE = 8;
+
+    // rough size of a single case of a switch, not counting its branch
+    private static final int CASE_SIZE = 12;
+
+    // larger estimates are clamped to avoid overflow in designs with much sharing
+    private static final int MAX_ESTIMATE = 1 << 24;
+
+    private final LevelizedEvaluator evaluator;
+    private final Map<Object, Integer> estimates = new IdentityHashMap<>();
+
+    /**
+     * Signals that have a slot in the evaluator, if any, are read from there, so they are estimated as a single node.
+     */
+    CodeSizeEstimator(LevelizedEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    int estimate(Signal signal) {
+        Integer estimate = estimates.get(signal);
+        if (estimate == null) {
+            estimate = Math.min(MAX_ESTIMATE, estimateUncached(signal));
+            estimates.put(signal, estimate);
+        }
+        return estimate;
+    }
+
+    private int estimateUncached(Signal signal) {
+        if (evaluator != null && evaluator.getSlot(signal) >= 0) {
+            return NODE_SIZE;
+        }
+        if (signal instanceof SignalConnector) {
+            return estimate(((SignalConnector) signal).getConnected());
+        }
+        if (signal instanceof BitNotOperation) {
+            return NODE_SIZE + estimate(((BitNotOperation) signal).getOperand());
+        }
+        if (signal instanceof BitOperation) {
+            BitOperation operation = (BitOperation)signal;
+            return NODE_SIZE + estimate(operation.getLeftOperand()) + estimate(operation.getRightOperand());
+        }
+        if (signal instanceof VectorNotOperation) {
+            return NODE_SIZE + estimate(((VectorNotOperation) signal).getOperand());
+        }
+        if (signal instanceof VectorNegateOperation) {
+            return NODE_SIZE + estimate(((VectorNegateOperation) signal).getOperand());
+        }
+        if (signal instanceof VectorOperation) {
+            VectorOperation operation = (VectorOperation)signal;
+            return NODE_SIZE + estimate(operation.getLeftOperand()) + estimate(operation.getRightOperand());
+        }
+        if (signal instanceof ShiftOperation) {
+            ShiftOperation operation = (ShiftOperation)signal;
+            return NODE_SIZE + estimate(operation.getLeftOperand()) + estimate(operation.getRightOperand());
+        }
+        if (signal instanceof VectorComparison) {
+            VectorComparison comparison = (VectorComparison)signal;
+            return NODE_SIZE + estimate(comparison.getLeftOperand()) + estimate(comparison.getRightOperand());
+        }
+        if (signal instanceof ConditionalOperation) {
+            ConditionalOperation conditional = (ConditionalOperation)signal;
+            return NODE_SIZE + estimate(conditional.getCondition()) + estimate(conditional.getOnTrue()) +
+                    estimate(conditional.getOnFalse());
+        }
+        if (signal instanceof Concatenation) {
+            int sum = NODE_SIZE;
+            for (Signal element : ((Concatenation) signal).getSignals()) {
+                sum = add(sum, NODE_SIZE + estimate(element));
+            }
+            return sum;
+        }
+        if (signal instanceof SwitchSignal<?>) {
+            SwitchSignal<?> switchSignal = (SwitchSignal<?>)signal;
+            int sum = NODE_SIZE + estimate(switchSignal.getSelector());
+            for (SwitchSignal.Case<?> aCase : switchSignal.getCases()) {
+                sum = add(sum, CASE_SIZE * aCase.getSelectorValues().size() + estimate(aCase.getBranch()));
+            }
+            if (switchSignal.getDefaultSignal() != null) {
+                sum = add(sum, estimate(switchSignal.getDefaultSignal()));
+            }
+            return sum;
+        }
+        if (signal instanceof ConstantIndexSelection) {
+            return NODE_SIZE + estimate(((ConstantIndexSelection) signal).getContainerSignal());
+        }
+        if (signal instanceof IndexSelection) {
+            IndexSelection selection = (IndexSelection)signal;
+            return NODE_SIZE + estimate(selection.getContainerSignal()) + estimate(selection.getIndexSignal());
+        }
+        if (signal instanceof RangeSelection) {
+            return NODE_SIZE + estimate(((RangeSelection) signal).getContainerSignal());
+        }
+        if (signal instanceof ProceduralMemoryIndexSelection) {
+            return NODE_SIZE + estimate(((ProceduralMemoryIndexSelection) signal).getIndexSignal());
+        }
+        if (signal instanceof BitRepetition) {
+            return NODE_SIZE + estimate(((BitRepetition) signal).getBitSignal());
+        }
+        if (signal instanceof VectorRepetition) {
+            // wide repetitions render the element once per repetition
+            VectorRepetition repetition = (VectorRepetition)signal;
+            int elementEstimate = NODE_SIZE + estimate(repetition.getVectorSignal());
+            return repetition.getWidth() <= 64 ? elementEstimate :
+                    (int)Math.min(MAX_ESTIMATE, (long)elementEstimate * repetition.getRepetitions());
+        }
+        if (signal instanceof OneBitVectorSignal) {
+            return NODE_SIZE + estimate(((OneBitVectorSignal) signal).getBitSignal());
+        }
+        if (signal instanceof AsynchronousMemoryReadPort.ReadDataSignal) {
+            return NODE_SIZE + estimate(((AsynchronousMemoryReadPort.ReadDataSignal) signal).getPort().getAddressSignal());
+        }
+        if (signal instanceof SynchronousMemoryPort.AsynchronousReadDataSignal) {
+            return NODE_SIZE + estimate(((SynchronousMemoryPort.AsynchronousReadDataSignal) signal).getPort().getAddressSignal());
+        }
+        if (signal instanceof LookupTable) {
+            return estimate(((LookupTable) signal).getPort().getReadDataSignal());
+        }
+
+        // constants, registers and signals that are obtained by calling getValue()
+        return NODE_SIZE;
+
+    }
+
+    int estimate(Statement statement) {
+        Integer estimate = estimates.get(statement);
+        if (estimate == null) {
+            estimate = Math.min(MAX_ESTIMATE, estimateUncached(statement));
+            estimates.put(statement, estimate);
+        }
+        return estimate;
+    }
+
+    private int estimateUncached(Statement statement) {
+        if (statement instanceof StatementSequence) {
+            return estimateSequence(((StatementSequence) statement).getStatements());
+        }
+        if (statement instanceof Assignment) {
+            Assignment assignment = (Assignment)statement;
+            int sum = NODE_SIZE + estimate(assignment.getSource());
+            Object target = assignment.getAssignmentTarget();
+            if (target instanceof VectorTargetIndexSelection) {
+                sum = add(sum, estimate(((VectorTargetIndexSelection) target).getIndexSignal()));
+            } else if (target instanceof MemoryTargetIndexSelection) {
+                sum = add(sum, estimate(((MemoryTargetIndexSelection) target).getIndexSignal()));
+            }
+            return sum;
+        }
+        if (statement instanceof WhenStatement) {
+            WhenStatement whenStatement = (WhenStatement)statement;
+            return NODE_SIZE + estimate(whenStatement.getCondition()) + estimate(whenStatement.getThenBranch()) +
+                    estimate(whenStatement.getOtherwiseBranch());
+        }
+        if (statement instanceof SwitchStatement) {
+            SwitchStatement switchStatement = (SwitchStatement)statement;
+            int sum = NODE_SIZE + estimate(switchStatement.getSelector()) +
+                    estimate(switchStatement.getDefaultBranch());
+            for (SwitchStatement.Case aCase : switchStatement.getCases()) {
+                sum = add(sum, CASE_SIZE * aCase.getSelectorValues().size() + estimate(aCase.getBranch()));
+            }
+            return sum;
+        }
+        return NODE_SIZE;
+    }
+
+    private int estimateSequence(List<Statement> statements) {
+        int sum = 0;
+        for (Statement statement : statements) {
+            sum = add(sum, estimate(statement));
+        }
+        return sum;
+    }
+
+    private static int add(int x, int y) {
+        return (int)Math.min(MAX_ESTIMATE, (long)x + y);
+    }
+
+}
@@ -0,0 +1,14 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.library.procedural.statement.Statement;
+
+/**
+ * A statement tree compiled into a single method. Executing it has the same effect as {@link Statement#execute()}
+ * on the root of the tree, but avoids walking the tree through virtual calls and evaluating each signal through a
+ * separate getter.
+ */
+public abstract class CompiledStatement {
+
+    public abstract void execute();
+
+}
@@ -1,5 +1,6 @@
 package name.martingeisse.esdk.core.library.signal.getter;
 
+import name.martingeisse.esdk.core.library.procedural.statement.Statement;
 import name.martingeisse.esdk.core.library.signal.BitSignal;
 import name.martingeisse.esdk.core.library.signal.VectorSignal;
 import name.martingeisse.esdk.core.library.signal.connector.BitConnector;
@@ -25,4 +26,12 @@ public class DefaultSignalGetterFactory {
         return GetterGenerator.generate(signal);
     }
 
+    /**
+     * Compiles a whole statement tree. Returns null if the statement cannot be compiled, in which case it must be
+     * executed by calling its execute() method.
+     */
+    public static CompiledStatement getCompiledStatement(Statement statement) {
+        return GetterGenerator.generate(statement);
+    }
+
 }
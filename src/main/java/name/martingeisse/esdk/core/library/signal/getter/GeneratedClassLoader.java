@@ -1,20 +1,189 @@
 package name.martingeisse.esdk.core.library.signal.getter;
 
+import name.martingeisse.esdk.core.Design;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.ClassNode;
 
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Defines the classes generated for a single {@link Design}. Each design gets its own loader, so the generated classes
+ * can be garbage-collected together with the loader once the design is no longer reachable. The loaders are kept in a
+ * weak map keyed by the design; nothing in a loader or its classes refers back to the design, so the map does not keep
+ * the design alive.
+ *
+ * Class names are unique across all loaders, so stack traces and profiler output remain unambiguous when several
+ * designs are simulated concurrently.
+ *
+ * The loader records the bytecode size of each generated method. Methods larger than {@link #HUGE_METHOD_SIZE} are
+ * never compiled by HotSpot's JIT and will run in the interpreter, so these sizes are worth checking when a
+ * simulation is slower than expected.
+ *
+ * The loader also records the signals for which the generated code falls back to calling getValue(), that is, where
+ * control leaves the generated code. Optionally, the generated code counts how often each such call happens at
+ * runtime.
+ */
 public final class GeneratedClassLoader extends ClassLoader {
 
-    public static final GeneratedClassLoader INSTANCE = new GeneratedClassLoader();
+    /**
+     * The bytecode size above which HotSpot does not compile methods (unless -XX:-DontCompileHugeMethods is used).
+     */
+    public static final int HUGE_METHOD_SIZE = 8000;
+
+    private static final Map<Design, GeneratedClassLoader> loaders = new WeakHashMap<>();
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    private final Map<String, Integer> methodSizes = new LinkedHashMap<>();
+    private final Map<String, Fallback> fallbacks = new LinkedHashMap<>();
+    private boolean fallbackCallCountingEnabled;
 
     private GeneratedClassLoader() {
+        super(GeneratedClassLoader.class.getClassLoader());
+    }
+
+    /**
+     * Returns the loader for the specified design, creating it if necessary.
+     */
+    public static GeneratedClassLoader forDesign(Design design) {
+        if (design == null) {
+            throw new IllegalArgumentException("design cannot be null");
+        }
+        synchronized (loaders) {
+            return loaders.computeIfAbsent(design, d -> new GeneratedClassLoader());
+        }
+    }
+
+    /**
+     * Returns a class name with the specified prefix that is unique across all generated classes.
+     */
+    public static String newClassName(String prefix) {
+        return prefix + classCounter.getAndIncrement();
     }
 
-    public Class<?> defineClass(ClassNode classNode) {
+    public synchronized Class<?> defineClass(ClassNode classNode) {
         ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
         classNode.accept(classWriter);
         byte[] data = classWriter.toByteArray();
+        recordMethodSizes(data);
         return defineClass(null, data, 0, data.length);
     }
 
+    // walks the class file structure to find the code length of each method
+    private void recordMethodSizes(byte[] data) {
+        ClassReader reader = new ClassReader(data);
+        char[] buffer = new char[reader.getMaxStringLength()];
+        int offset = reader.header + 6;
+        offset += 2 + 2 * reader.readUnsignedShort(offset);
+        int fieldCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < fieldCount; i++) {
+            offset = skipAttributes(reader, offset + 6);
+        }
+        int methodCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < methodCount; i++) {
+            String methodName = reader.readUTF8(offset + 2, buffer);
+            int attributeCount = reader.readUnsignedShort(offset + 6);
+            offset += 8;
+            for (int j = 0; j < attributeCount; j++) {
+                if (reader.readUTF8(offset, buffer).equals("Code") && !methodName.equals("<init>")) {
+                    methodSizes.put(reader.getClassName() + "." + methodName, reader.readInt(offset + 10));
+                }
+                offset += 6 + reader.readInt(offset + 2);
+            }
+        }
+    }
+
+    private static int skipAttributes(ClassReader reader, int offset) {
+        int attributeCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            offset += 6 + reader.readInt(offset + 2);
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the bytecode size of each method generated so far, keyed by class name and method name separated by a
+     * dot.
+     */
+    public synchronized Map<String, Integer> getMethodSizes() {
+        return new LinkedHashMap<>(methodSizes);
+    }
+
+    public synchronized boolean isFallbackCallCountingEnabled() {
+        return fallbackCallCountingEnabled;
+    }
+
+    /**
+     * Enables or disables counting the calls to getValue() made by code that gets generated afterwards. This makes
+     * the generated code slower, so it is disabled by default.
+     */
+    public synchronized void setFallbackCallCountingEnabled(boolean fallbackCallCountingEnabled) {
+        this.fallbackCallCountingEnabled = fallbackCallCountingEnabled;
+    }
+
+    /**
+     * Records that generated code calls getValue() on the described signal. Returns the counter to increment
+     * for each call, or null if calls are not counted.
+     */
+    synchronized AtomicLong recordFallback(String signalDescription) {
+        Fallback fallback = fallbacks.computeIfAbsent(signalDescription, d -> new Fallback());
+        fallback.siteCount++;
+        return fallbackCallCountingEnabled ? fallback.callCount : null;
+    }
+
+    /**
+     * Prints the signals for which the code generated so far calls getValue(), together with the number of
+     * places in the generated code that do so and, if enabled, the number of calls made so far.
+     */
+    public synchronized void printFallbackReport(PrintStream out) {
+        int totalSiteCount = 0;
+        long totalCallCount = 0;
+        for (Fallback fallback : fallbacks.values()) {
+            totalSiteCount += fallback.siteCount;
+            totalCallCount += fallback.callCount.get();
+        }
+        out.println("signals not handled by generated code: " + fallbacks.size() + ", places: " + totalSiteCount +
+                (fallbackCallCountingEnabled ? ", calls: " + totalCallCount : ""));
+        for (Map.Entry<String, Fallback> entry : fallbacks.entrySet()) {
+            Fallback fallback = entry.getValue();
+            out.println("    " + entry.getKey() + ": " + fallback.siteCount + " places" +
+                    (fallbackCallCountingEnabled ? ", " + fallback.callCount.get() + " calls" : ""));
+        }
+    }
+
+    /**
+     * Prints a summary of the sizes of the methods generated so far, listing the methods that are too large to be
+     * compiled by the JIT.
+     */
+    public synchronized void printMethodSizeReport(PrintStream out) {
+        int totalSize = 0, maxSize = 0, hugeCount = 0;
+        for (int size : methodSizes.values()) {
+            totalSize += size;
+            maxSize = Math.max(maxSize, size);
+            if (size > HUGE_METHOD_SIZE) {
+                hugeCount++;
+            }
+        }
+        out.println("generated methods: " + methodSizes.size() + ", total size: " + totalSize + " bytes, largest: " +
+                maxSize + " bytes, too large for the JIT: " + hugeCount);
+        for (Map.Entry<String, Integer> entry : methodSizes.entrySet()) {
+            if (entry.getValue() > HUGE_METHOD_SIZE) {
+                out.println("    " + entry.getKey() + ": " + entry.getValue() + " bytes");
+            }
+        }
+    }
+
+    private static final class Fallback {
+        int siteCount;
+        final AtomicLong callCount = new AtomicLong();
+    }
+
 }
@@ -1,61 +1,150 @@
 package name.martingeisse.esdk.core.library.signal.getter;
 
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.DesignItem;
+import name.martingeisse.esdk.core.library.memory.AsynchronousMemoryReadPort;
+import name.martingeisse.esdk.core.library.memory.LookupTable;
+import name.martingeisse.esdk.core.library.memory.Memory;
+import name.martingeisse.esdk.core.library.memory.SynchronousMemoryPort;
 import name.martingeisse.esdk.core.library.procedural.ProceduralBitRegister;
+import name.martingeisse.esdk.core.library.procedural.ProceduralMemoryConstantIndexSelection;
 import name.martingeisse.esdk.core.library.procedural.ProceduralMemoryIndexSelection;
 import name.martingeisse.esdk.core.library.procedural.ProceduralVectorRegister;
+import name.martingeisse.esdk.core.library.procedural.statement.*;
+import name.martingeisse.esdk.core.library.procedural.statement.target.BitAssignmentTarget;
+import name.martingeisse.esdk.core.library.procedural.statement.target.VectorAssignmentTarget;
+import name.martingeisse.esdk.core.library.signal.BitConstant;
 import name.martingeisse.esdk.core.library.signal.BitSignal;
 import name.martingeisse.esdk.core.library.signal.Signal;
+import name.martingeisse.esdk.core.library.signal.VectorConstant;
 import name.martingeisse.esdk.core.library.signal.VectorSignal;
 import name.martingeisse.esdk.core.library.signal.connector.SignalConnector;
 import name.martingeisse.esdk.core.library.signal.mux.ConditionalOperation;
 import name.martingeisse.esdk.core.library.signal.mux.SwitchSignal;
 import name.martingeisse.esdk.core.library.signal.operation.*;
-import name.martingeisse.esdk.core.library.signal.vector.Concatenation;
-import name.martingeisse.esdk.core.library.signal.vector.ConstantIndexSelection;
-import name.martingeisse.esdk.core.library.signal.vector.IndexSelection;
-import name.martingeisse.esdk.core.library.signal.vector.RangeSelection;
+import name.martingeisse.esdk.core.library.signal.vector.*;
+import name.martingeisse.esdk.core.tools.optimization.SignalOptimizer;
 import name.martingeisse.esdk.core.util.Matrix;
 import name.martingeisse.esdk.core.util.vector.Vector;
 import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodTooLargeException;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.MethodNode;
 
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * Each getter that is generated by this class is only used in one place since the code is highly specialized. So there
  * is no need to define useful names for its ultimate input signals or other data sources -- we just generate fields
  * with helper names, define and instantiate the class, then assign the data sources.
+ *
+ * Besides signal getters, this class also compiles whole statement trees, such as the body of a clocked block, into
+ * a single method. Conditions and switch selectors become branches, and assignments call the assignment target
+ * directly. Statements that are not known to this class are executed by calling their execute() method.
+ *
+ * Vector signals of up to 64 bits are computed as JVM longs wherever possible; see {@link LongSignalRenderer}. Wider
+ * vector signals are computed as {@link Vector} objects, calling the vector method for each operation, which
+ * allocates an intermediate vector per operation. There is no backend that keeps them in word arrays.
+ * Signals that are used in more than one place are computed only once per clock edge; see {@link SignalCache}.
+ *
+ * If the design uses a {@link LevelizedEvaluator}, compiled statements read the combinational signals it computes
+ * from its slots. This is not done for signal getters since these may be called at any time, while the slots are
+ * only valid during a clock edge.
+ *
+ * Large signal and statement trees are split into several methods: Whenever a subtree would make the current method
+ * exceed a size budget (according to a {@link CodeSizeEstimator}), it is rendered into a separate method that gets
+ * called instead. This keeps generated methods below the JVM's method size limit, and ideally below the size up to
+ * which HotSpot compiles methods at all (see {@link GeneratedClassLoader#HUGE_METHOD_SIZE}).
  */
 class GetterGenerator {
 
+    // methods are split to stay below this estimated size, leaving a safety margin to HUGE_METHOD_SIZE
+    private static final int METHOD_SIZE_BUDGET = GeneratedClassLoader.HUGE_METHOD_SIZE / 2;
+
+    // smaller subtrees are never moved to a separate method since the call would cost more than it saves
+    private static final int MIN_OUTLINED_SIZE = 100;
+
     private static final String GET_BIT_SIGNATURE = "()Z";
     private static final String GET_VECTOR_SIGNATURE = "()L" + internal(Vector.class) + ";";
 
-    private static int CLASS_COUNTER = 0;
-
     static BitSignalGetter generate(BitSignal signal) {
-        return (BitSignalGetter)generateInternal(BitSignalGetter.class,
-                GET_BIT_SIGNATURE, signal, Opcodes.IRETURN);
+        return (BitSignalGetter)generateInternal(BitSignalGetter.class, "GeneratedSignalGetter_", "getValue",
+                GET_BIT_SIGNATURE, signal.getDesignItem().getDesign(), null, generator -> {
+                    generator.renderSignal(signal);
+                    generator.methodNode.visitInsn(Opcodes.IRETURN);
+                });
     }
 
     static VectorSignalGetter generate(VectorSignal signal) {
-        return (VectorSignalGetter)generateInternal(VectorSignalGetter.class,
-                GET_VECTOR_SIGNATURE, signal, Opcodes.ARETURN);
+        return (VectorSignalGetter)generateInternal(VectorSignalGetter.class, "GeneratedSignalGetter_", "getValue",
+                GET_VECTOR_SIGNATURE, signal.getDesignItem().getDesign(), null, generator -> {
+                    generator.renderSignal(signal);
+                    generator.methodNode.visitInsn(Opcodes.ARETURN);
+                    if (LongSignalRenderer.isSupported(signal)) {
+                        generator.renderAdditionalMethod("getValueAsLong", "()J", () -> {
+                            generator.longRenderer.render(signal);
+                            generator.methodNode.visitInsn(Opcodes.LRETURN);
+                        });
+                        if (signal.getWidth() <= 32) {
+                            generator.renderAdditionalMethod("getValueAsInt", "()I", () -> {
+                                generator.longRenderer.render(signal);
+                                generator.methodNode.visitInsn(Opcodes.L2I);
+                                generator.methodNode.visitInsn(Opcodes.IRETURN);
+                            });
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Returns null if the generated code would exceed the JVM's method size limit.
+     */
+    static CompiledStatement generate(Statement statement) {
+        try {
+            return (CompiledStatement)generateInternal(CompiledStatement.class, "GeneratedStatement_", "execute",
+                    "()V", statement.getDesign(), statement.getDesign().getLevelizedEvaluator(), generator -> {
+                        generator.renderStatement(statement);
+                        generator.methodNode.visitInsn(Opcodes.RETURN);
+                    });
+        } catch (MethodTooLargeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Generates the code that computes all nodes of a levelized evaluator, in the specified order.
+     */
+    static CompiledStatement generate(LevelizedEvaluator evaluator, List<Signal> nodes) {
+        return (CompiledStatement)generateInternal(CompiledStatement.class, "GeneratedLevelizedEvaluation_",
+                "execute", "()V", evaluator.getDesign(), evaluator, generator -> {
+                    generator.renderNodeEvaluations(nodes);
+                    generator.methodNode.visitInsn(Opcodes.RETURN);
+                });
     }
 
     private static String internal(Class<?> c) {
         return c.getName().replace('.', '/');
     }
 
-    private static Object generateInternal(Class<?> superClass, String descriptor, Signal signal, int returnOpcode) {
+    private static Object generateInternal(Class<?> superClass, String classNamePrefix, String methodName,
+                                           String descriptor, Design design, LevelizedEvaluator evaluator,
+                                           Consumer<GetterGenerator> bodyRenderer) {
         try {
 
             ClassNode classNode = new ClassNode();
             classNode.version = 52;
-            classNode.name = "GeneratedSignalGetter_" + CLASS_COUNTER;
+            classNode.name = GeneratedClassLoader.newClassName(classNamePrefix);
             classNode.superName = internal(superClass);
             classNode.access = Opcodes.ACC_PUBLIC;
 
@@ -70,33 +159,57 @@ class GetterGenerator {
             classNode.methods.add(constructorNode);
 
             MethodNode methodNode = new MethodNode();
-            methodNode.name = "getValue";
+            methodNode.name = methodName;
             methodNode.desc = descriptor;
             methodNode.access = Opcodes.ACC_PUBLIC;
 
-            GetterGenerator generator = new GetterGenerator(classNode, methodNode);
+            GetterGenerator generator = new GetterGenerator(classNode, methodNode, design.getSignalCache(), evaluator);
             methodNode.visitCode();
-            generator.renderSignal(signal);
-            methodNode.visitInsn(returnOpcode);
+            bodyRenderer.accept(generator);
             classNode.methods.add(methodNode);
 
-            CLASS_COUNTER++;
-            Object instance = GeneratedClassLoader.INSTANCE.defineClass(classNode).getConstructor().newInstance();
+            GeneratedClassLoader classLoader = GeneratedClassLoader.forDesign(design);
+            Object instance = classLoader.defineClass(classNode).getConstructor().newInstance();
             generator.initializeFields(instance);
             return instance;
 
+        } catch (MethodTooLargeException e) {
+            throw e;
         } catch (Exception e) {
-            throw new RuntimeException("could not generate signal getter", e);
+            throw new RuntimeException("could not generate " + superClass.getSimpleName(), e);
         }
     }
 
     private final ClassNode classNode;
-    private final MethodNode methodNode;
+    private MethodNode methodNode;
     private final List<Object> references = new ArrayList<>();
-
-    GetterGenerator(ClassNode classNode, MethodNode methodNode) {
+    private final Map<Object, Integer> referenceIndices = new IdentityHashMap<>();
+    private final SignalCache cache;
+    private final LongSignalRenderer longRenderer;
+    private final SignalOptimizer optimizer;
+    private final GeneratedClassLoader classLoader;
+    private final LevelizedEvaluator evaluator;
+    private final CodeSizeEstimator sizeEstimator;
+    private final Map<String, Map<Object, String>> outlinedMethodNames = new HashMap<>();
+    private int outlinedMethodCount = 0;
+    private boolean renderingNodeEvaluations = false;
+
+    /**
+     * The evaluator may be null.
+     */
+    GetterGenerator(ClassNode classNode, MethodNode methodNode, SignalCache cache, LevelizedEvaluator evaluator) {
         this.classNode = classNode;
         this.methodNode = methodNode;
+        this.cache = cache;
+        this.longRenderer = new LongSignalRenderer(this, methodNode);
+        this.optimizer = cache.getDesign().getSignalOptimizer();
+        this.classLoader = GeneratedClassLoader.forDesign(cache.getDesign());
+        this.evaluator = evaluator;
+        this.sizeEstimator = new CodeSizeEstimator(evaluator);
+    }
+
+    SignalOptimizer getOptimizer() {
+        return optimizer;
     }
 
     void renderSignal(Signal signal) {
@@ -107,6 +220,64 @@ class GetterGenerator {
             return;
         }
 
+        // render the simplified signal instead, if any
+        Signal optimized = optimizer.getOptimized(signal);
+        if (optimized != signal) {
+            renderSignal(optimized);
+            return;
+        }
+
+        // handle signals computed by the levelized evaluator
+        if (renderEvaluatorSlot(signal)) {
+            return;
+        }
+
+        // handle large subtrees
+        if (renderOutlinedIfTooLarge(signal, signal instanceof BitSignal ? "Z" : "L" + internal(Vector.class) + ";",
+                () -> renderSignal(signal))) {
+            return;
+        }
+
+        // handle shared signals
+        SignalCacheSlot slot = cache.getSlot(signal);
+        if (slot != null) {
+            if (signal instanceof BitSignal) {
+                renderCached(slot, "Bit", "Z", () -> renderUncachedSignal(signal));
+            } else if (LongSignalRenderer.isSupported((VectorSignal) signal)) {
+                // the long renderer takes care of the cache
+                longRenderer.renderBoxed((VectorSignal) signal);
+            } else {
+                renderCached(slot, "Vector", "L" + internal(Vector.class) + ";", () -> renderUncachedSignal(signal));
+            }
+            return;
+        }
+
+        renderUncachedSignal(signal);
+    }
+
+    /**
+     * Renders the signal without looking it up in the cache. This must only be called by code that takes care of the
+     * cache itself.
+     */
+    void renderUncachedSignal(Signal signal) {
+
+        // vectors of up to 64 bits are computed as a long to avoid intermediate vectors, then converted to a vector
+        if (signal instanceof VectorSignal && LongSignalRenderer.shouldComputeAsLong((VectorSignal) signal)) {
+            longRenderer.renderBoxed((VectorSignal) signal);
+            return;
+        }
+
+
+        // handle constants
+        if (signal instanceof BitConstant) {
+            methodNode.visitInsn(((BitConstant) signal).getValue() ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+            return;
+        }
+        if (signal instanceof VectorConstant) {
+            renderReference(((VectorConstant) signal).getValue());
+            return;
+        }
+
         // handle procedural registers (avoiding the interface method call)
         if (signal instanceof ProceduralBitRegister) {
             renderReference(signal);
@@ -160,6 +331,18 @@ class GetterGenerator {
         }
 
         // handle vector operations
+        if (signal instanceof VectorNotOperation) {
+            renderSignal(((VectorNotOperation) signal).getOperand());
+            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Vector.class), "not",
+                    "()L" + internal(Vector.class) + ";", false);
+            return;
+        }
+        if (signal instanceof VectorNegateOperation) {
+            renderSignal(((VectorNegateOperation) signal).getOperand());
+            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Vector.class), "negate",
+                    "()L" + internal(Vector.class) + ";", false);
+            return;
+        }
         if (signal instanceof VectorOperation) {
             VectorOperation operation = (VectorOperation)signal;
             renderSignal(operation.getLeftOperand());
@@ -202,7 +385,7 @@ class GetterGenerator {
         if (signal instanceof ShiftOperation) {
             ShiftOperation shift = (ShiftOperation)signal;
             renderSignal(shift.getLeftOperand());
-            renderSignal(shift.getRightOperand());
+            longRenderer.renderAsInt(shift.getRightOperand());
             String methodName;
             switch (shift.getDirection()) {
                 case LEFT:
@@ -214,8 +397,6 @@ class GetterGenerator {
                 default:
                     throw new RuntimeException("unknown ShiftOperation.Direction: " + shift.getDirection());
             }
-            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Vector.class), "getAsUnsignedInt",
-                    "()I", false);
             methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Vector.class), methodName,
                     "(I)L" + internal(Vector.class) + ";", false);
             return;
@@ -224,6 +405,10 @@ class GetterGenerator {
         // handle vector comparison
         if (signal instanceof VectorComparison) {
             VectorComparison comparison = (VectorComparison)signal;
+            if (LongSignalRenderer.isSupported(comparison.getLeftOperand())) {
+                longRenderer.renderComparison(comparison);
+                return;
+            }
             renderSignal(comparison.getLeftOperand());
             renderSignal(comparison.getRightOperand());
             VectorComparison.Operator operator = comparison.getOperator();
@@ -282,62 +467,50 @@ class GetterGenerator {
             return;
         }
 
+        // handle repetition (narrow repetitions and OneBitVectorSignal are computed as a long, see above)
+        if (signal instanceof BitRepetition) {
+            BitRepetition repetition = (BitRepetition)signal;
+            push(repetition.getRepetitions());
+            renderSignal(repetition.getBitSignal());
+            methodNode.visitMethodInsn(Opcodes.INVOKESTATIC, internal(Vector.class), "repeat",
+                    "(IZ)L" + internal(Vector.class) + ";", false);
+            return;
+        }
+        if (signal instanceof VectorRepetition) {
+            VectorRepetition repetition = (VectorRepetition)signal;
+            renderReference(Vector.of(0, 0));
+            for (int i = 0; i < repetition.getRepetitions(); i++) {
+                renderSignal(repetition.getVectorSignal());
+                methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Vector.class), "concat",
+                        "(L" + internal(Vector.class) + ";)L" + internal(Vector.class) + ";", false);
+            }
+            return;
+        }
+
         // handle switch/case signals
         if (signal instanceof SwitchSignal<?>) {
             SwitchSignal<?> switchSignal = (SwitchSignal<?>)signal;
-
-            // labels
-            Label[] caseMatchedLabels = new Label[switchSignal.getCases().size()];
-            for (int i = 0; i < caseMatchedLabels.length; i++) {
-                caseMatchedLabels[i] = new Label();
-            }
-            Label finishLabel = new Label();
-
-            // branching
-            {
-                renderSignal(switchSignal.getSelector());
-                int caseIndex = 0;
-                for (SwitchSignal.Case<?> aCase : switchSignal.getCases()) {
-                    for (Vector selectorValue : aCase.getSelectorValues()) {
-                        methodNode.visitInsn(Opcodes.DUP);
-                        renderReference(selectorValue);
-                        methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Vector.class), "equals",
-                                "(Ljava/lang/Object;)Z", false);
-                        methodNode.visitJumpInsn(Opcodes.IFNE, caseMatchedLabels[caseIndex]);
-                    }
-                    caseIndex++;
-                }
-                methodNode.visitInsn(Opcodes.POP);
-                if (switchSignal.getDefaultSignal() == null) {
-                    methodNode.visitTypeInsn(Opcodes.NEW, internal(RuntimeException.class));
-                    methodNode.visitInsn(Opcodes.DUP);
-                    methodNode.visitMethodInsn(Opcodes.INVOKESPECIAL, internal(RuntimeException.class), "<init>",
-                            "()V", false);
-                    methodNode.visitInsn(Opcodes.ATHROW);
-                } else {
-                    renderSignal(switchSignal.getDefaultSignal());
-                    methodNode.visitJumpInsn(Opcodes.GOTO, finishLabel);
-                }
-            }
-
-            // results
-            {
-                int caseIndex = 0;
-                for (SwitchSignal.Case<?> aCase : switchSignal.getCases()) {
-                    methodNode.visitLabel(caseMatchedLabels[caseIndex]);
-                    methodNode.visitInsn(Opcodes.POP);
-                    renderSignal(aCase.getBranch());
-                    methodNode.visitJumpInsn(Opcodes.GOTO, finishLabel);
-                    caseIndex++;
-                }
+            List<? extends SwitchSignal.Case<?>> cases = switchSignal.getCases();
+            Runnable defaultRenderer;
+            if (switchSignal.getDefaultSignal() != null) {
+                defaultRenderer = () -> renderSignal(switchSignal.getDefaultSignal());
+            } else if (renderingNodeEvaluations) {
+                defaultRenderer = () -> renderZero(signal);
+            } else {
+                defaultRenderer = null;
             }
-            methodNode.visitLabel(finishLabel);
+            renderSwitch(switchSignal.getSelector(), getCaseSelectorValues(switchSignal),
+                    caseIndex -> renderSignal(cases.get(caseIndex).getBranch()), defaultRenderer);
             return;
         }
 
         // selections (bit from vector, vector from vector, vector from matrix)
         if (signal instanceof ConstantIndexSelection) {
             ConstantIndexSelection selection = (ConstantIndexSelection)signal;
+            if (LongSignalRenderer.isSupported(selection.getContainerSignal())) {
+                longRenderer.renderSelection(selection);
+                return;
+            }
             renderSignal(selection.getContainerSignal());
             push(selection.getIndex());
             methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Vector.class), "select", "(I)Z", false);
@@ -345,10 +518,12 @@ class GetterGenerator {
         }
         if (signal instanceof IndexSelection) {
             IndexSelection selection = (IndexSelection)signal;
+            if (LongSignalRenderer.isSupported(selection.getContainerSignal())) {
+                longRenderer.renderSelection(selection);
+                return;
+            }
             renderSignal(selection.getContainerSignal());
-            renderSignal(selection.getIndexSignal());
-            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Vector.class), "getAsUnsignedInt",
-                    "()I", false);
+            longRenderer.renderAsInt(selection.getIndexSignal());
             methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Vector.class), "select", "(I)Z", false);
             return;
         }
@@ -364,15 +539,45 @@ class GetterGenerator {
         if (signal instanceof ProceduralMemoryIndexSelection) {
             ProceduralMemoryIndexSelection selection = (ProceduralMemoryIndexSelection)signal;
             renderReference(selection.getMemory().getMatrix());
-            renderSignal(selection.getIndexSignal());
-            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Vector.class), "getAsUnsignedInt",
-                    "()I", false);
+            longRenderer.renderAsInt(selection.getIndexSignal());
+            renderGetRow();
+            return;
+        }
+
+        if (signal instanceof ProceduralMemoryConstantIndexSelection) {
+            ProceduralMemoryConstantIndexSelection selection = (ProceduralMemoryConstantIndexSelection)signal;
+            renderReference(selection.getMemory().getMatrix());
+            push(selection.getIndex());
             methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Matrix.class), "getRow",
                     "(I)L" + internal(Vector.class) + ";", false);
             return;
         }
 
+        // handle memory ports
+        if (signal instanceof AsynchronousMemoryReadPort.ReadDataSignal) {
+            AsynchronousMemoryReadPort port = ((AsynchronousMemoryReadPort.ReadDataSignal) signal).getPort();
+            renderMemoryRead(port.getMemory(), port.getAddressSignal());
+            return;
+        }
+        if (signal instanceof SynchronousMemoryPort.AsynchronousReadDataSignal) {
+            SynchronousMemoryPort port = ((SynchronousMemoryPort.AsynchronousReadDataSignal) signal).getPort();
+            renderMemoryRead(port.getMemory(), port.getAddressSignal());
+            return;
+        }
+        if (signal instanceof SynchronousMemoryPort.SynchronousReadDataSignal) {
+            // this is state of the port, so there is nothing to compute
+            renderReference(signal);
+            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(SynchronousMemoryPort.SynchronousReadDataSignal.class),
+                    "getValue", GET_VECTOR_SIGNATURE, false);
+            return;
+        }
+        if (signal instanceof LookupTable) {
+            renderSignal(((LookupTable) signal).getPort().getReadDataSignal());
+            return;
+        }
+
         // fallback: call .getValue()
+        renderFallbackCounter(signal);
         renderReference(signal);
         if (signal instanceof BitSignal) {
             methodNode.visitMethodInsn(Opcodes.INVOKEINTERFACE, internal(BitSignal.class),
@@ -384,13 +589,494 @@ class GetterGenerator {
 
     }
 
+    private void renderZero(Signal signal) {
+        if (signal instanceof BitSignal) {
+            methodNode.visitInsn(Opcodes.ICONST_0);
+        } else {
+            renderReference(Vector.of(((VectorSignal) signal).getWidth(), 0));
+        }
+    }
+
+    private void renderMemoryRead(Memory memory, VectorSignal addressSignal) {
+        renderReference(memory.getMatrix());
+        longRenderer.renderAsInt(addressSignal);
+        renderGetRow();
+    }
+
+    // Reads a row of the matrix; expects the row index on top of the stack and the matrix below it. When computing
+    // the nodes of a levelized evaluator, the read may be for an unused port with an out-of-range address, so it
+    // yields zero instead of failing.
+    private void renderGetRow() {
+        if (renderingNodeEvaluations) {
+            methodNode.visitMethodInsn(Opcodes.INVOKESTATIC, internal(LevelizedEvaluator.class), "getRowOrZero",
+                    "(L" + internal(Matrix.class) + ";I)L" + internal(Vector.class) + ";", false);
+        } else {
+            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Matrix.class), "getRow",
+                    "(I)L" + internal(Vector.class) + ";", false);
+        }
+    }
+
+    // records a signal that is handled by calling getValue() and, if enabled, renders code to count the calls
+    private void renderFallbackCounter(Signal signal) {
+        String description = signal.getClass().getName();
+        if (signal instanceof DesignItem && ((DesignItem) signal).getName() != null) {
+            description += " " + ((DesignItem) signal).getName();
+        }
+        description += " @" + Integer.toHexString(System.identityHashCode(signal));
+        AtomicLong counter = classLoader.recordFallback(description);
+        if (counter != null) {
+            renderReference(counter);
+            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(AtomicLong.class), "incrementAndGet",
+                    "()J", false);
+            methodNode.visitInsn(Opcodes.POP2);
+        }
+    }
+
+    void renderStatement(Statement statement) {
+
+        if (renderOutlinedIfTooLarge(statement, "V", () -> renderStatement(statement))) {
+            return;
+        }
+
+        if (statement instanceof StatementSequence) {
+            for (Statement element : ((StatementSequence) statement).getStatements()) {
+                renderStatement(element);
+            }
+            return;
+        }
+
+        if (statement instanceof NopStatement) {
+            return;
+        }
+
+        if (statement instanceof BitAssignment) {
+            BitAssignment assignment = (BitAssignment)statement;
+            BitAssignmentTarget target = (BitAssignmentTarget)assignment.getAssignmentTarget();
+            renderReference(target);
+            renderSignal(assignment.getSource());
+            renderTargetCall(target, BitAssignmentTarget.class, "setNextValue", "(Z)V");
+            return;
+        }
+
+        if (statement instanceof VectorAssignment) {
+            VectorAssignment assignment = (VectorAssignment)statement;
+            VectorAssignmentTarget target = (VectorAssignmentTarget)assignment.getAssignmentTarget();
+            renderReference(target);
+            renderSignal(assignment.getSource());
+            renderTargetCall(target, VectorAssignmentTarget.class, "setNextValue",
+                    "(L" + internal(Vector.class) + ";)V");
+            return;
+        }
+
+        if (statement instanceof WhenStatement) {
+            WhenStatement whenStatement = (WhenStatement)statement;
+            BitSignal condition = optimizer.getOptimized(whenStatement.getCondition());
+            if (condition instanceof BitConstant) {
+                renderStatement(((BitConstant) condition).getValue() ? whenStatement.getThenBranch() :
+                        whenStatement.getOtherwiseBranch());
+                return;
+            }
+            renderSignal(condition);
+            renderBitSwitch(() -> renderStatement(whenStatement.getOtherwiseBranch()),
+                    () -> renderStatement(whenStatement.getThenBranch()));
+            return;
+        }
+
+        if (statement instanceof SwitchStatement) {
+            SwitchStatement switchStatement = (SwitchStatement)statement;
+            List<SwitchStatement.Case> cases = switchStatement.getCases();
+            List<List<Vector>> caseSelectorValues = new ArrayList<>();
+            for (SwitchStatement.Case aCase : cases) {
+                caseSelectorValues.add(aCase.getSelectorValues());
+            }
+            renderSwitch(switchStatement.getSelector(), caseSelectorValues,
+                    caseIndex -> renderStatement(cases.get(caseIndex).getBranch()),
+                    () -> renderStatement(switchStatement.getDefaultBranch()));
+            return;
+        }
+
+        // fallback: call .execute()
+        renderReference(statement);
+        methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Statement.class), "execute", "()V", false);
+
+    }
+
+    private static List<List<Vector>> getCaseSelectorValues(SwitchSignal<?> switchSignal) {
+        List<List<Vector>> result = new ArrayList<>();
+        for (SwitchSignal.Case<?> aCase : switchSignal.getCases()) {
+            result.add(aCase.getSelectorValues());
+        }
+        return result;
+    }
+
+    /**
+     * Renders a branch to one of the cases, selected by comparing the selector with the selector values of each case.
+     * The case renderer gets called with the index of the case to render. If the default renderer is null, an
+     * exception is thrown at runtime if no case matches.
+     *
+     * Selectors of up to 31 bits are converted to an int and dispatched with a tableswitch or lookupswitch
+     * instruction. Wider selectors of up to 64 bits are compared as longs, and even wider ones as vectors.
+     */
+    void renderSwitch(VectorSignal selector, List<List<Vector>> caseSelectorValues, IntConsumer caseRenderer,
+                      Runnable defaultRenderer) {
+        if (selector.getWidth() <= 31) {
+            renderIntSwitch(selector, caseSelectorValues, caseRenderer, defaultRenderer);
+            return;
+        }
+        boolean asLong = LongSignalRenderer.isSupported(selector);
+        int popOpcode = asLong ? Opcodes.POP2 : Opcodes.POP;
+
+        // labels
+        Label[] caseMatchedLabels = new Label[caseSelectorValues.size()];
+        for (int i = 0; i < caseMatchedLabels.length; i++) {
+            caseMatchedLabels[i] = new Label();
+        }
+        Label finishLabel = new Label();
+
+        // branching
+        if (asLong) {
+            longRenderer.render(selector);
+        } else {
+            renderSignal(selector);
+        }
+        for (int caseIndex = 0; caseIndex < caseMatchedLabels.length; caseIndex++) {
+            for (Vector selectorValue : caseSelectorValues.get(caseIndex)) {
+                if (asLong) {
+                    methodNode.visitInsn(Opcodes.DUP2);
+                    longRenderer.pushLong(selectorValue.getAsSignedLong());
+                    methodNode.visitInsn(Opcodes.LCMP);
+                    methodNode.visitJumpInsn(Opcodes.IFEQ, caseMatchedLabels[caseIndex]);
+                } else {
+                    methodNode.visitInsn(Opcodes.DUP);
+                    renderReference(selectorValue);
+                    methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(Vector.class), "equals",
+                            "(Ljava/lang/Object;)Z", false);
+                    methodNode.visitJumpInsn(Opcodes.IFNE, caseMatchedLabels[caseIndex]);
+                }
+            }
+        }
+        methodNode.visitInsn(popOpcode);
+        if (defaultRenderer == null) {
+            methodNode.visitTypeInsn(Opcodes.NEW, internal(RuntimeException.class));
+            methodNode.visitInsn(Opcodes.DUP);
+            methodNode.visitMethodInsn(Opcodes.INVOKESPECIAL, internal(RuntimeException.class), "<init>",
+                    "()V", false);
+            methodNode.visitInsn(Opcodes.ATHROW);
+        } else {
+            defaultRenderer.run();
+            methodNode.visitJumpInsn(Opcodes.GOTO, finishLabel);
+        }
+
+        // cases
+        for (int caseIndex = 0; caseIndex < caseMatchedLabels.length; caseIndex++) {
+            methodNode.visitLabel(caseMatchedLabels[caseIndex]);
+            methodNode.visitInsn(popOpcode);
+            caseRenderer.accept(caseIndex);
+            methodNode.visitJumpInsn(Opcodes.GOTO, finishLabel);
+        }
+        methodNode.visitLabel(finishLabel);
+    }
+
+    private void renderIntSwitch(VectorSignal selector, List<List<Vector>> caseSelectorValues,
+                                 IntConsumer caseRenderer, Runnable defaultRenderer) {
+
+        // labels
+        Label[] caseLabels = new Label[caseSelectorValues.size()];
+        for (int i = 0; i < caseLabels.length; i++) {
+            caseLabels[i] = new Label();
+        }
+        Label defaultLabel = new Label();
+        Label finishLabel = new Label();
+
+        // map selector values to cases; if a value appears in multiple cases, the first one wins
+        TreeMap<Integer, Label> keyLabels = new TreeMap<>();
+        for (int caseIndex = 0; caseIndex < caseLabels.length; caseIndex++) {
+            for (Vector selectorValue : caseSelectorValues.get(caseIndex)) {
+                keyLabels.putIfAbsent(selectorValue.getAsUnsignedInt(), caseLabels[caseIndex]);
+            }
+        }
+
+        // branching (same cost heuristic as javac to choose between tableswitch and lookupswitch)
+        longRenderer.renderAsInt(selector);
+        if (keyLabels.isEmpty()) {
+            methodNode.visitInsn(Opcodes.POP);
+            methodNode.visitJumpInsn(Opcodes.GOTO, defaultLabel);
+        } else {
+            int low = keyLabels.firstKey();
+            int high = keyLabels.lastKey();
+            long tableSpaceCost = 4 + ((long) high - low + 1);
+            long tableTimeCost = 3;
+            long lookupSpaceCost = 3 + 2 * (long) keyLabels.size();
+            long lookupTimeCost = keyLabels.size();
+            if (tableSpaceCost + 3 * tableTimeCost <= lookupSpaceCost + 3 * lookupTimeCost) {
+                Label[] tableLabels = new Label[high - low + 1];
+                for (int i = 0; i < tableLabels.length; i++) {
+                    tableLabels[i] = keyLabels.getOrDefault(low + i, defaultLabel);
+                }
+                methodNode.visitTableSwitchInsn(low, high, defaultLabel, tableLabels);
+            } else {
+                int[] keys = new int[keyLabels.size()];
+                Label[] labels = new Label[keyLabels.size()];
+                int i = 0;
+                for (Map.Entry<Integer, Label> entry : keyLabels.entrySet()) {
+                    keys[i] = entry.getKey();
+                    labels[i] = entry.getValue();
+                    i++;
+                }
+                methodNode.visitLookupSwitchInsn(defaultLabel, keys, labels);
+            }
+        }
+
+        // default
+        methodNode.visitLabel(defaultLabel);
+        if (defaultRenderer == null) {
+            methodNode.visitTypeInsn(Opcodes.NEW, internal(RuntimeException.class));
+            methodNode.visitInsn(Opcodes.DUP);
+            methodNode.visitMethodInsn(Opcodes.INVOKESPECIAL, internal(RuntimeException.class), "<init>",
+                    "()V", false);
+            methodNode.visitInsn(Opcodes.ATHROW);
+        } else {
+            defaultRenderer.run();
+            methodNode.visitJumpInsn(Opcodes.GOTO, finishLabel);
+        }
+
+        // cases
+        for (int caseIndex = 0; caseIndex < caseLabels.length; caseIndex++) {
+            methodNode.visitLabel(caseLabels[caseIndex]);
+            caseRenderer.accept(caseIndex);
+            methodNode.visitJumpInsn(Opcodes.GOTO, finishLabel);
+        }
+        methodNode.visitLabel(finishLabel);
+
+    }
+
+    // Calls a method of an assignment target whose reference is on the stack (below the arguments). The call is
+    // made on the concrete class if possible, so it can be statically bound (all built-in targets are final).
+    private void renderTargetCall(Object target, Class<?> targetInterface, String methodName, String descriptor) {
+        if (Modifier.isPublic(target.getClass().getModifiers())) {
+            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(target.getClass()), methodName, descriptor, false);
+        } else {
+            methodNode.visitMethodInsn(Opcodes.INVOKEINTERFACE, internal(targetInterface), methodName, descriptor, true);
+        }
+    }
+
     void renderReference(Object reference) {
-        String name = "reference" + references.size();
-        String descriptor = "L" + internal(reference.getClass()) + ";";
-        classNode.visitField(Opcodes.ACC_PUBLIC, name, descriptor, null, null);
+        Integer index = referenceIndices.get(reference);
+        if (index == null) {
+            index = references.size();
+            classNode.visitField(Opcodes.ACC_PUBLIC, "reference" + index, "L" + internal(reference.getClass()) + ";",
+                    null, null);
+            references.add(reference);
+            referenceIndices.put(reference, index);
+        }
+        methodNode.visitVarInsn(Opcodes.ALOAD, 0);
+        methodNode.visitFieldInsn(Opcodes.GETFIELD, classNode.name, "reference" + index,
+                "L" + internal(reference.getClass()) + ";");
+    }
+
+    /**
+     * If the estimated code size for the specified signal or statement would make the current method exceed the
+     * size budget, this method renders it into a separate method using the body renderer, renders a call to that
+     * method, and returns true. Otherwise it does nothing and returns false. The first node rendered into a method is
+     * never moved, so the body renderer may safely call back into this method for the same node.
+     *
+     * The separate method is reused if the same node gets rendered again with the same return type.
+     */
+    boolean renderOutlinedIfTooLarge(Object node, String returnDescriptor, Runnable bodyRenderer) {
+        int currentSize = methodNode.instructions.size() * 3; // rough average instruction size
+        if (currentSize == 0) {
+            return false;
+        }
+        int estimate = (node instanceof Signal) ? sizeEstimator.estimate((Signal) node) :
+                sizeEstimator.estimate((Statement) node);
+        if (estimate < MIN_OUTLINED_SIZE || currentSize + estimate <= METHOD_SIZE_BUDGET) {
+            return false;
+        }
+        Map<Object, String> methodNames = outlinedMethodNames.computeIfAbsent(returnDescriptor,
+                d -> new IdentityHashMap<>());
+        String methodName = methodNames.get(node);
+        if (methodName == null) {
+            methodName = "outlined" + outlinedMethodCount;
+            outlinedMethodCount++;
+            methodNames.put(node, methodName);
+            MethodNode outlinedMethodNode = new MethodNode();
+            outlinedMethodNode.name = methodName;
+            outlinedMethodNode.desc = "()" + returnDescriptor;
+            outlinedMethodNode.access = Opcodes.ACC_PRIVATE;
+            outlinedMethodNode.visitCode();
+            MethodNode previousMethodNode = methodNode;
+            setMethodNode(outlinedMethodNode);
+            try {
+                bodyRenderer.run();
+            } finally {
+                setMethodNode(previousMethodNode);
+            }
+            outlinedMethodNode.visitInsn(Type.getType(returnDescriptor).getOpcode(Opcodes.IRETURN));
+            classNode.methods.add(outlinedMethodNode);
+        }
         methodNode.visitVarInsn(Opcodes.ALOAD, 0);
-        methodNode.visitFieldInsn(Opcodes.GETFIELD, classNode.name, name, descriptor);
-        references.add(reference);
+        methodNode.visitMethodInsn(Opcodes.INVOKESPECIAL, classNode.name, methodName, "()" + returnDescriptor, false);
+        return true;
+    }
+
+    /**
+     * Renders another public method of the generated class, besides the one that is being generated. The body must
+     * include the return instruction. Outlined subtrees are shared between the methods.
+     */
+    private void renderAdditionalMethod(String name, String descriptor, Runnable bodyRenderer) {
+        MethodNode additionalMethodNode = new MethodNode();
+        additionalMethodNode.name = name;
+        additionalMethodNode.desc = descriptor;
+        additionalMethodNode.access = Opcodes.ACC_PUBLIC;
+        additionalMethodNode.visitCode();
+        MethodNode previousMethodNode = methodNode;
+        setMethodNode(additionalMethodNode);
+        try {
+            bodyRenderer.run();
+        } finally {
+            setMethodNode(previousMethodNode);
+        }
+        classNode.methods.add(additionalMethodNode);
+    }
+
+    private void setMethodNode(MethodNode methodNode) {
+        this.methodNode = methodNode;
+        longRenderer.setMethodNode(methodNode);
+    }
+
+    /**
+     * Renders code that takes the value from the specified cache slot if valid, or otherwise computes it using the
+     * specified renderer and stores it in the slot. The kind selects the getter / store methods of the slot and must
+     * match the type descriptor.
+     */
+    void renderCached(SignalCacheSlot slot, String kind, String descriptor, Runnable uncachedRenderer) {
+        Label missLabel = new Label();
+        Label finishLabel = new Label();
+        renderReference(slot);
+        methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(SignalCacheSlot.class), "isValid", "()Z", false);
+        methodNode.visitJumpInsn(Opcodes.IFEQ, missLabel);
+        renderReference(slot);
+        methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(SignalCacheSlot.class), "get" + kind + "Value",
+                "()" + descriptor, false);
+        methodNode.visitJumpInsn(Opcodes.GOTO, finishLabel);
+        methodNode.visitLabel(missLabel);
+        uncachedRenderer.run();
+        renderReference(slot);
+        if (descriptor.equals("J")) {
+            methodNode.visitInsn(Opcodes.DUP_X2);
+            methodNode.visitInsn(Opcodes.POP);
+        } else {
+            methodNode.visitInsn(Opcodes.SWAP);
+        }
+        methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internal(SignalCacheSlot.class), "store" + kind + "Value",
+                "(" + descriptor + ")" + descriptor, false);
+        methodNode.visitLabel(finishLabel);
+    }
+
+    SignalCacheSlot getCacheSlot(Signal signal) {
+        return cache.getSlot(signal);
+    }
+
+    boolean isRenderingNodeEvaluations() {
+        return renderingNodeEvaluations;
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // levelized evaluation
+    // ----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * If the signal has a slot in the levelized evaluator, renders code that reads it from there (as a boolean or
+     * vector, or as a long if asLong is true) and returns true. Otherwise it does nothing and returns false.
+     */
+    boolean renderEvaluatorSlot(Signal signal, boolean asLong) {
+        int slot = (evaluator == null ? -1 : evaluator.getSlot(signal));
+        if (slot < 0) {
+            return false;
+        }
+        if (signal instanceof VectorSignal && !LongSignalRenderer.isSupported((VectorSignal) signal)) {
+            renderEvaluatorArray("vectorValues", "[L" + internal(Vector.class) + ";");
+            push(slot);
+            methodNode.visitInsn(Opcodes.AALOAD);
+            return true;
+        }
+        if (signal instanceof VectorSignal && !asLong) {
+            push(((VectorSignal) signal).getWidth());
+        }
+        renderEvaluatorArray("longValues", "[J");
+        push(slot);
+        methodNode.visitInsn(Opcodes.LALOAD);
+        if (signal instanceof BitSignal) {
+            methodNode.visitInsn(Opcodes.L2I);
+        } else if (!asLong) {
+            longRenderer.box();
+        }
+        return true;
+    }
+
+    private boolean renderEvaluatorSlot(Signal signal) {
+        return renderEvaluatorSlot(signal, false);
+    }
+
+    private void renderEvaluatorArray(String fieldName, String descriptor) {
+        renderReference(evaluator);
+        methodNode.visitFieldInsn(Opcodes.GETFIELD, internal(LevelizedEvaluator.class), fieldName, descriptor);
+    }
+
+    // Renders the computation of each node into its slot. The operands of each node are read from their slots, so
+    // the code for a node is small. The nodes are distributed among several methods to stay within the size budget.
+    private void renderNodeEvaluations(List<Signal> nodes) {
+        MethodNode mainMethodNode = methodNode;
+        MethodNode partMethodNode = null;
+        int partCount = 0;
+        renderingNodeEvaluations = true;
+        try {
+            for (Signal node : nodes) {
+                if (partMethodNode == null || partMethodNode.instructions.size() * 3 > METHOD_SIZE_BUDGET) {
+                    if (partMethodNode != null) {
+                        partMethodNode.visitInsn(Opcodes.RETURN);
+                    }
+                    partMethodNode = new MethodNode();
+                    partMethodNode.name = "evaluate" + partCount;
+                    partMethodNode.desc = "()V";
+                    partMethodNode.access = Opcodes.ACC_PRIVATE;
+                    partMethodNode.visitCode();
+                    classNode.methods.add(partMethodNode);
+                    partCount++;
+                    mainMethodNode.visitVarInsn(Opcodes.ALOAD, 0);
+                    mainMethodNode.visitMethodInsn(Opcodes.INVOKESPECIAL, classNode.name, partMethodNode.name, "()V",
+                            false);
+                    setMethodNode(partMethodNode);
+                }
+                renderNodeEvaluation(node);
+            }
+            if (partMethodNode != null) {
+                partMethodNode.visitInsn(Opcodes.RETURN);
+            }
+        } finally {
+            renderingNodeEvaluations = false;
+            setMethodNode(mainMethodNode);
+        }
+    }
+
+    private void renderNodeEvaluation(Signal node) {
+        int slot = evaluator.getSlot(node);
+        if (node instanceof VectorSignal && !LongSignalRenderer.isSupported((VectorSignal) node)) {
+            renderEvaluatorArray("vectorValues", "[L" + internal(Vector.class) + ";");
+            push(slot);
+            renderUncachedSignal(node);
+            methodNode.visitInsn(Opcodes.AASTORE);
+        } else {
+            renderEvaluatorArray("longValues", "[J");
+            push(slot);
+            if (node instanceof BitSignal) {
+                renderUncachedSignal(node);
+                methodNode.visitInsn(Opcodes.I2L);
+            } else {
+                longRenderer.renderUncached((VectorSignal) node);
+            }
+            methodNode.visitInsn(Opcodes.LASTORE);
+        }
     }
 
     // computes the logical NOT of the top-of-stack
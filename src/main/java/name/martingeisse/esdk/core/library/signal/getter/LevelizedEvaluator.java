@@ -0,0 +1,272 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.DesignItem;
+import name.martingeisse.esdk.core.library.memory.AsynchronousMemoryReadPort;
+import name.martingeisse.esdk.core.library.memory.SynchronousMemoryPort;
+import name.martingeisse.esdk.core.library.procedural.ProceduralMemoryIndexSelection;
+import name.martingeisse.esdk.core.library.signal.BitConstant;
+import name.martingeisse.esdk.core.library.signal.Signal;
+import name.martingeisse.esdk.core.library.signal.VectorConstant;
+import name.martingeisse.esdk.core.library.signal.VectorSignal;
+import name.martingeisse.esdk.core.library.signal.connector.SignalConnector;
+import name.martingeisse.esdk.core.tools.optimization.SignalOptimizer;
+import name.martingeisse.esdk.core.util.AbsoluteNames;
+import name.martingeisse.esdk.core.util.Matrix;
+import name.martingeisse.esdk.core.util.vector.Vector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Alternative to computing combinational signals on demand: All combinational signals of a design are sorted into
+ * levels, such that each signal only depends on signals of lower levels, state (registers, memories) and inputs
+ * (pins, settable signals, constants). At the start of each clock edge, all signals are computed level by level and
+ * their values are stored in a flat array of slots. The statements of clocked blocks then read their operands from
+ * those slots instead of computing them. This is enabled by {@link Design#setLevelizedSimulationEnabled(boolean)}.
+ *
+ * Bits and vectors of up to 64 bits are stored in {@link #longValues}; wider vectors are stored in
+ * {@link #vectorValues}. Only the built-in combinational signals (operations, multiplexers, selections, memory reads)
+ * get a slot. Connectors and signals that got simplified by the {@link SignalOptimizer} are replaced by the signal they
+ * stand for. Other signals are read through their getValue() method whenever a signal computed from them gets
+ * computed.
+ *
+ * Since every combinational signal gets computed, not just those actually used, a switch signal without a default
+ * branch yields zero instead of failing if no case matches, and a memory read yields zero instead of failing if its
+ * address is out of range. Shift amounts and bit indices cannot be out of range, since the width of the shift amount
+ * or index is checked when the signal is constructed.
+ *
+ * Combinational loops cannot be levelized and are reported as an {@link IllegalStateException} that lists the
+ * absolute names of the signals in the loop.
+ */
+public final class LevelizedEvaluator {
+
+    private final Design design;
+    private final SignalOptimizer optimizer;
+    private final Map<Signal, Integer> levels = new IdentityHashMap<>();
+    private final Map<Signal, Integer> slots = new IdentityHashMap<>();
+    private final List<Signal> nodes = new ArrayList<>();
+    private int levelCount = 0;
+    private CompiledStatement evaluation;
+
+    /**
+     * The values of bits (0 or 1) and vectors of up to 64 bits. Read by generated code.
+     */
+    public long[] longValues;
+
+    /**
+     * The values of vectors that are wider than 64 bits. Read by generated code.
+     */
+    public Vector[] vectorValues;
+
+    private LevelizedEvaluator(Design design) {
+        this.design = design;
+        this.optimizer = design.getSignalOptimizer();
+    }
+
+    /**
+     * Levelizes the combinational signals of the specified design and generates the code to compute them. The
+     * construction of the design must have been finalized. Generated code for the statements of the design uses the
+     * slots of this evaluator once the design returns it from {@link Design#getLevelizedEvaluator()}.
+     */
+    public static LevelizedEvaluator create(Design design) {
+        if (design == null) {
+            throw new IllegalArgumentException("design cannot be null");
+        }
+        LevelizedEvaluator evaluator = new LevelizedEvaluator(design);
+        evaluator.levelize();
+        evaluator.evaluation = GetterGenerator.generate(evaluator, evaluator.nodes);
+        return evaluator;
+    }
+
+    Design getDesign() {
+        return design;
+    }
+
+    /**
+     * Returns the number of signals that get computed by this evaluator.
+     */
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the number of levels. Signals of the first level are computed from state and inputs only.
+     */
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    /**
+     * Computes all signals, level by level.
+     */
+    public void evaluate() {
+        evaluation.execute();
+    }
+
+    /**
+     * Returns the slot index of the specified signal, or -1 if the signal does not have a slot. The index refers to
+     * {@link #longValues} or {@link #vectorValues}, depending on the type and width of the signal.
+     */
+    int getSlot(Signal signal) {
+        Integer slot = slots.get(signal);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Reads a row of the matrix for a memory read node, or returns zero if the row index is out of range. Called by
+     * generated code.
+     */
+    public static Vector getRowOrZero(Matrix matrix, int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= matrix.getRowCount()) {
+            return Vector.of(matrix.getColumnCount(), 0);
+        }
+        return matrix.getRow(rowIndex);
+    }
+
+    /**
+     * Reads a row of the matrix as a long for a memory read node, or returns zero if the row index is out of range.
+     * Called by generated code.
+     */
+    public static long getRowAsLongOrZero(Matrix matrix, int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= matrix.getRowCount()) {
+            return 0;
+        }
+        return matrix.getRowAsLong(rowIndex);
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // levelization
+    // ----------------------------------------------------------------------------------------------------------------
+
+    // Signals that get a slot. Others are either sources whose value is read when needed, or aliases that stand for
+    // another signal (connectors, simplified signals, lookup tables).
+    private boolean isNode(Signal signal) {
+        if (signal instanceof SignalConnector || optimizer.getOptimized(signal) != signal) {
+            return false;
+        }
+        if (signal instanceof BitConstant || signal instanceof VectorConstant) {
+            return false;
+        }
+        return SignalOptimizer.isRemovableIfUnused(signal) || signal instanceof ProceduralMemoryIndexSelection ||
+                signal instanceof AsynchronousMemoryReadPort.ReadDataSignal ||
+                signal instanceof SynchronousMemoryPort.AsynchronousReadDataSignal;
+    }
+
+    // the signals that the specified signal is computed from or stands for
+    private List<Signal> getInputs(Signal signal) {
+        if (signal instanceof SignalConnector) {
+            Signal connected = ((SignalConnector) signal).getConnected();
+            return connected == null ? Collections.emptyList() : Collections.singletonList(connected);
+        }
+        Signal optimized = optimizer.getOptimized(signal);
+        if (optimized != signal) {
+            return Collections.singletonList(optimized);
+        }
+        List<Signal> inputs = new ArrayList<>();
+        SignalCache.forEachOperand(signal, inputs::add);
+        return inputs;
+    }
+
+    // Determines the level of each signal with an iterative depth-first search, since signal chains can be too deep
+    // for recursion. Sources have level 0, aliases have the level of the signal they stand for, and nodes have one
+    // more than the highest level among their inputs.
+    private void levelize() {
+        Set<Signal> visiting = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Frame> stack = new ArrayList<>();
+        for (DesignItem item : design.getItems()) {
+            if (!(item instanceof Signal) || levels.containsKey(item)) {
+                continue;
+            }
+            stack.add(new Frame((Signal) item, getInputs((Signal) item)));
+            visiting.add((Signal) item);
+            while (!stack.isEmpty()) {
+                Frame frame = stack.get(stack.size() - 1);
+                if (frame.nextInput < frame.inputs.size()) {
+                    Signal input = frame.inputs.get(frame.nextInput);
+                    frame.nextInput++;
+                    Integer inputLevel = levels.get(input);
+                    if (inputLevel != null) {
+                        frame.level = Math.max(frame.level, inputLevel);
+                    } else if (visiting.contains(input)) {
+                        throw new IllegalStateException("combinational loop: " + describeLoop(stack, input));
+                    } else {
+                        stack.add(new Frame(input, getInputs(input)));
+                        visiting.add(input);
+                    }
+                    continue;
+                }
+                int level = frame.level;
+                if (isNode(frame.signal)) {
+                    level++;
+                    nodes.add(frame.signal);
+                }
+                levels.put(frame.signal, level);
+                levelCount = Math.max(levelCount, level);
+                visiting.remove(frame.signal);
+                stack.remove(stack.size() - 1);
+                if (!stack.isEmpty()) {
+                    Frame parent = stack.get(stack.size() - 1);
+                    parent.level = Math.max(parent.level, level);
+                }
+            }
+        }
+
+        // sort the nodes by level (keeping the order within each level) and assign slots
+        nodes.sort((a, b) -> Integer.compare(levels.get(a), levels.get(b)));
+        int longSlotCount = 0;
+        int vectorSlotCount = 0;
+        for (Signal node : nodes) {
+            if (node instanceof VectorSignal && !LongSignalRenderer.isSupported((VectorSignal) node)) {
+                slots.put(node, vectorSlotCount);
+                vectorSlotCount++;
+            } else {
+                slots.put(node, longSlotCount);
+                longSlotCount++;
+            }
+        }
+        longValues = new long[longSlotCount];
+        vectorValues = new Vector[vectorSlotCount];
+    }
+
+    // lists the names of the signals in the loop that ends at the top of the stack and continues with the input
+    private String describeLoop(List<Frame> stack, Signal input) {
+        AbsoluteNames names = new AbsoluteNames(design);
+        StringBuilder builder = new StringBuilder();
+        boolean inLoop = false;
+        for (Frame frame : stack) {
+            if (frame.signal == input) {
+                inLoop = true;
+            }
+            if (inLoop) {
+                builder.append(getName(names, frame.signal)).append(" -> ");
+            }
+        }
+        builder.append(getName(names, input));
+        return builder.toString();
+    }
+
+    private static String getName(AbsoluteNames names, Signal signal) {
+        DesignItem item = signal.getDesignItem();
+        return item == null ? signal.toString() : names.getAbsoluteName(item);
+    }
+
+    private static final class Frame {
+
+        private final Signal signal;
+        private final List<Signal> inputs;
+        private int nextInput = 0;
+        private int level = 0;
+
+        Frame(Signal signal, List<Signal> inputs) {
+            this.signal = signal;
+            this.inputs = inputs;
+        }
+
+    }
+
+}
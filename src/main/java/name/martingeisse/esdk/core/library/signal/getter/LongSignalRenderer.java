@@ -0,0 +1,517 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.library.memory.AsynchronousMemoryReadPort;
+import name.martingeisse.esdk.core.library.memory.LookupTable;
+import name.martingeisse.esdk.core.library.memory.SynchronousMemoryPort;
+import name.martingeisse.esdk.core.library.procedural.ProceduralMemoryConstantIndexSelection;
+import name.martingeisse.esdk.core.library.procedural.ProceduralMemoryIndexSelection;
+import name.martingeisse.esdk.core.library.procedural.ProceduralVectorRegister;
+import name.martingeisse.esdk.core.library.signal.BitSignal;
+import name.martingeisse.esdk.core.library.signal.Signal;
+import name.martingeisse.esdk.core.library.signal.VectorConstant;
+import name.martingeisse.esdk.core.library.signal.VectorSignal;
+import name.martingeisse.esdk.core.library.signal.connector.SignalConnector;
+import name.martingeisse.esdk.core.library.signal.mux.ConditionalVectorOperation;
+import name.martingeisse.esdk.core.library.signal.mux.SwitchSignal;
+import name.martingeisse.esdk.core.library.signal.mux.VectorSwitchSignal;
+import name.martingeisse.esdk.core.library.signal.operation.*;
+import name.martingeisse.esdk.core.library.signal.vector.*;
+import name.martingeisse.esdk.core.util.Matrix;
+import name.martingeisse.esdk.core.util.vector.Vector;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Second code generation backend, used by {@link GetterGenerator} for vector signals of at most 64 bits. Such a
+ * signal is kept in a JVM long while it is being computed, with all bits above its width being zero. Masks are
+ * applied inline after operations that may overflow. Wider signals are computed as objects by the
+ * {@link GetterGenerator}; a range selection from such a signal extracts its bits with
+ * {@link Vector#selectAsLong(int, int)}, without creating a narrow vector first.
+ *
+ * Values are only converted to {@link Vector} objects at the boundary, i.e. where the generated code needs an object,
+ * such as when returning from a getter or assigning to a register. Conversely, signals that already exist as objects
+ * (fallback signals) are converted to a long by calling {@link Vector#getAsSignedLong()}. Registers are read through
+ * their getValueAsLong() method, and memory rows through {@link Matrix#getRowAsLong(int)}.
+ *
+ * Switch signals are rendered through {@link GetterGenerator#renderSwitch}, which compares long selectors with
+ * long constants.
+ */
+final class LongSignalRenderer {
+
+    private static final String VECTOR = "name/martingeisse/esdk/core/util/vector/Vector";
+    private static final String MATRIX = "name/martingeisse/esdk/core/util/Matrix";
+    private static final String LEVELIZED_EVALUATOR =
+            "name/martingeisse/esdk/core/library/signal/getter/LevelizedEvaluator";
+    private static final String PROCEDURAL_VECTOR_REGISTER =
+            "name/martingeisse/esdk/core/library/procedural/ProceduralVectorRegister";
+
+    private final GetterGenerator generator;
+    private MethodNode methodNode;
+
+    LongSignalRenderer(GetterGenerator generator, MethodNode methodNode) {
+        this.generator = generator;
+        this.methodNode = methodNode;
+    }
+
+    // called by the generator when it starts or stops rendering into a separate method
+    void setMethodNode(MethodNode methodNode) {
+        this.methodNode = methodNode;
+    }
+
+    static boolean isSupported(VectorSignal signal) {
+        return signal.getWidth() <= 64;
+    }
+
+    /**
+     * Checks whether computing the signal as an object would allocate intermediate vectors, so it should rather be
+     * computed as a long and converted to an object afterwards. This is not the case for signals that merely select
+     * an existing object, such as registers or multiplexers.
+     */
+    static boolean shouldComputeAsLong(VectorSignal signal) {
+        if (!isSupported(signal)) {
+            return false;
+        }
+        return signal instanceof VectorOperation || signal instanceof ShiftOperation ||
+                signal instanceof Concatenation || signal instanceof RangeSelection ||
+                signal instanceof VectorNotOperation || signal instanceof VectorNegateOperation ||
+                signal instanceof BitRepetition || signal instanceof VectorRepetition ||
+                signal instanceof OneBitVectorSignal;
+    }
+
+    /**
+     * Pushes the value of the specified signal as a long.
+     */
+    void render(VectorSignal signal) {
+        if (!isSupported(signal)) {
+            throw new IllegalArgumentException("signal too wide for long-based code generation: " + signal);
+        }
+
+        // handle connectors
+        if (signal instanceof SignalConnector) {
+            render((VectorSignal)((SignalConnector) signal).getConnected());
+            return;
+        }
+
+        // render the simplified signal instead, if any
+        VectorSignal optimized = generator.getOptimizer().getOptimized(signal);
+        if (optimized != signal) {
+            render(optimized);
+            return;
+        }
+
+        // handle signals computed by the levelized evaluator
+        if (generator.renderEvaluatorSlot(signal, true)) {
+            return;
+        }
+
+        // handle large subtrees
+        if (generator.renderOutlinedIfTooLarge(signal, "J", () -> render(signal))) {
+            return;
+        }
+
+        // handle shared signals
+        SignalCacheSlot slot = generator.getCacheSlot(signal);
+        if (slot != null) {
+            generator.renderCached(slot, "Long", "J", () -> renderUncached(signal));
+            return;
+        }
+
+        renderUncached(signal);
+    }
+
+    /**
+     * Renders the signal without looking it up in the cache or the slots of the levelized evaluator. This must only
+     * be called by code that takes care of these itself.
+     */
+    void renderUncached(VectorSignal signal) {
+
+        // handle constants
+        if (signal instanceof VectorConstant) {
+            pushLong(((VectorConstant) signal).getValue().getAsSignedLong());
+            return;
+        }
+
+        // handle vector operations
+        if (signal instanceof VectorNotOperation) {
+            render(((VectorNotOperation) signal).getOperand());
+            pushLong(-1);
+            methodNode.visitInsn(Opcodes.LXOR);
+            renderMask(signal.getWidth());
+            return;
+        }
+        if (signal instanceof VectorNegateOperation) {
+            render(((VectorNegateOperation) signal).getOperand());
+            methodNode.visitInsn(Opcodes.LNEG);
+            renderMask(signal.getWidth());
+            return;
+        }
+        if (signal instanceof VectorOperation) {
+            VectorOperation operation = (VectorOperation)signal;
+            render(operation.getLeftOperand());
+            render(operation.getRightOperand());
+            switch (operation.getOperator()) {
+
+                case ADD:
+                    methodNode.visitInsn(Opcodes.LADD);
+                    renderMask(signal.getWidth());
+                    break;
+
+                case SUBTRACT:
+                    methodNode.visitInsn(Opcodes.LSUB);
+                    renderMask(signal.getWidth());
+                    break;
+
+                case MULTIPLY:
+                    methodNode.visitInsn(Opcodes.LMUL);
+                    renderMask(signal.getWidth());
+                    break;
+
+                case AND:
+                    methodNode.visitInsn(Opcodes.LAND);
+                    break;
+
+                case OR:
+                    methodNode.visitInsn(Opcodes.LOR);
+                    break;
+
+                case XOR:
+                    methodNode.visitInsn(Opcodes.LXOR);
+                    break;
+
+                default:
+                    throw new RuntimeException("unknown VectorOperation.Operator: " + operation.getOperator());
+
+            }
+            return;
+        }
+
+        // handle shift operations (the shift amount is always less than the width; ShiftOperation checks this)
+        if (signal instanceof ShiftOperation) {
+            ShiftOperation shift = (ShiftOperation)signal;
+            render(shift.getLeftOperand());
+            renderAsInt(shift.getRightOperand());
+            switch (shift.getDirection()) {
+
+                case LEFT:
+                    methodNode.visitInsn(Opcodes.LSHL);
+                    renderMask(signal.getWidth());
+                    break;
+
+                case RIGHT:
+                    methodNode.visitInsn(Opcodes.LUSHR);
+                    break;
+
+                default:
+                    throw new RuntimeException("unknown ShiftOperation.Direction: " + shift.getDirection());
+
+            }
+            return;
+        }
+
+        // handle concatenation
+        if (signal instanceof Concatenation) {
+            boolean first = true;
+            for (Signal elementSignal : ((Concatenation) signal).getSignals()) {
+                int elementWidth;
+                if (elementSignal instanceof BitSignal) {
+                    generator.renderSignal(elementSignal);
+                    methodNode.visitInsn(Opcodes.I2L);
+                    elementWidth = 1;
+                } else if (elementSignal instanceof VectorSignal) {
+                    render((VectorSignal)elementSignal);
+                    elementWidth = ((VectorSignal) elementSignal).getWidth();
+                } else {
+                    throw new RuntimeException("invalid signal: " + elementSignal);
+                }
+                if (first) {
+                    first = false;
+                } else if (elementWidth == 0) {
+                    methodNode.visitInsn(Opcodes.LOR);
+                } else {
+                    // shift the accumulated value (below the element) to make room for the element
+                    methodNode.visitInsn(Opcodes.DUP2_X2);
+                    methodNode.visitInsn(Opcodes.POP2);
+                    generator.push(elementWidth);
+                    methodNode.visitInsn(Opcodes.LSHL);
+                    methodNode.visitInsn(Opcodes.LOR);
+                }
+            }
+            if (first) {
+                methodNode.visitInsn(Opcodes.LCONST_0);
+            }
+            return;
+        }
+
+        // handle repetition and conversion: a bit is repeated by negating 0 or 1, a vector by multiplying it with
+        // a constant that has a 1 at the start of each copy (the copies don't overlap, so no carries occur)
+        if (signal instanceof BitRepetition) {
+            generator.renderSignal(((BitRepetition) signal).getBitSignal());
+            methodNode.visitInsn(Opcodes.I2L);
+            methodNode.visitInsn(Opcodes.LNEG);
+            renderMask(signal.getWidth());
+            return;
+        }
+        if (signal instanceof VectorRepetition) {
+            VectorRepetition repetition = (VectorRepetition)signal;
+            int elementWidth = repetition.getVectorSignal().getWidth();
+            if (signal.getWidth() == 0) {
+                methodNode.visitInsn(Opcodes.LCONST_0);
+                return;
+            }
+            render(repetition.getVectorSignal());
+            if (repetition.getRepetitions() > 1) {
+                long multiplier = 0;
+                for (int i = 0; i < repetition.getRepetitions(); i++) {
+                    multiplier |= 1L << (i * elementWidth);
+                }
+                pushLong(multiplier);
+                methodNode.visitInsn(Opcodes.LMUL);
+            }
+            return;
+        }
+        if (signal instanceof OneBitVectorSignal) {
+            generator.renderSignal(((OneBitVectorSignal) signal).getBitSignal());
+            methodNode.visitInsn(Opcodes.I2L);
+            return;
+        }
+
+        // handle conditional operations
+        if (signal instanceof ConditionalVectorOperation) {
+            ConditionalVectorOperation conditional = (ConditionalVectorOperation)signal;
+            generator.renderSignal(conditional.getCondition());
+            generator.renderBitSwitch(() -> render(conditional.getOnFalse()), () -> render(conditional.getOnTrue()));
+            return;
+        }
+
+        // handle switch/case signals
+        if (signal instanceof VectorSwitchSignal) {
+            VectorSwitchSignal switchSignal = (VectorSwitchSignal)signal;
+            Runnable defaultRenderer;
+            if (switchSignal.getDefaultSignal() != null) {
+                defaultRenderer = () -> render(switchSignal.getDefaultSignal());
+            } else if (generator.isRenderingNodeEvaluations()) {
+                defaultRenderer = () -> methodNode.visitInsn(Opcodes.LCONST_0);
+            } else {
+                defaultRenderer = null;
+            }
+            generator.renderSwitch(switchSignal.getSelector(), getCaseSelectorValues(switchSignal),
+                    caseIndex -> render(switchSignal.getCases().get(caseIndex).getBranch()), defaultRenderer);
+            return;
+        }
+
+        // handle range selection
+        if (signal instanceof RangeSelection) {
+            RangeSelection selection = (RangeSelection)signal;
+            if (!isSupported(selection.getContainerSignal())) {
+                // select the bits from the wide vector directly, without creating a narrow one first
+                generator.renderSignal(selection.getContainerSignal());
+                generator.push(selection.getFrom());
+                generator.push(selection.getTo());
+                methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, VECTOR, "selectAsLong", "(II)J", false);
+                return;
+            }
+            render(selection.getContainerSignal());
+            if (selection.getTo() > 0) {
+                generator.push(selection.getTo());
+                methodNode.visitInsn(Opcodes.LUSHR);
+            }
+            if (selection.getFrom() < selection.getContainerSignal().getWidth() - 1) {
+                renderMask(signal.getWidth());
+            }
+            return;
+        }
+
+        // handle memory reads (reading the row as a long)
+        if (signal instanceof ProceduralMemoryIndexSelection) {
+            ProceduralMemoryIndexSelection selection = (ProceduralMemoryIndexSelection)signal;
+            generator.renderReference(selection.getMemory().getMatrix());
+            renderAsInt(selection.getIndexSignal());
+            renderGetRowAsLong();
+            return;
+        }
+        if (signal instanceof ProceduralMemoryConstantIndexSelection) {
+            ProceduralMemoryConstantIndexSelection selection = (ProceduralMemoryConstantIndexSelection)signal;
+            generator.renderReference(selection.getMemory().getMatrix());
+            generator.push(selection.getIndex());
+            renderGetRowAsLong();
+            return;
+        }
+        if (signal instanceof AsynchronousMemoryReadPort.ReadDataSignal) {
+            AsynchronousMemoryReadPort port = ((AsynchronousMemoryReadPort.ReadDataSignal) signal).getPort();
+            generator.renderReference(port.getMemory().getMatrix());
+            renderAsInt(port.getAddressSignal());
+            renderGetRowAsLong();
+            return;
+        }
+        if (signal instanceof SynchronousMemoryPort.AsynchronousReadDataSignal) {
+            SynchronousMemoryPort port = ((SynchronousMemoryPort.AsynchronousReadDataSignal) signal).getPort();
+            generator.renderReference(port.getMemory().getMatrix());
+            renderAsInt(port.getAddressSignal());
+            renderGetRowAsLong();
+            return;
+        }
+        if (signal instanceof LookupTable) {
+            render(((LookupTable) signal).getPort().getReadDataSignal());
+            return;
+        }
+
+        // handle procedural registers (avoiding the interface method call)
+        if (signal instanceof ProceduralVectorRegister) {
+            generator.renderReference(signal);
+            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PROCEDURAL_VECTOR_REGISTER, "getValueAsLong", "()J", false);
+            return;
+        }
+
+        // fallback: obtain the value as an object; the cache has been taken care of already
+        generator.renderUncachedSignal(signal);
+        unbox();
+
+    }
+
+    private static List<List<Vector>> getCaseSelectorValues(VectorSwitchSignal switchSignal) {
+        List<List<Vector>> result = new ArrayList<>();
+        for (SwitchSignal.Case<VectorSignal> aCase : switchSignal.getCases()) {
+            result.add(aCase.getSelectorValues());
+        }
+        return result;
+    }
+
+    /**
+     * Pushes the value of the specified signal as an int. The signal must be at most 31 bits wide; otherwise, this
+     * method behaves like {@link Vector#getAsUnsignedInt()} and fails at runtime.
+     */
+    void renderAsInt(VectorSignal signal) {
+        if (signal.getWidth() > 31) {
+            generator.renderSignal(signal);
+            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, VECTOR, "getAsUnsignedInt", "()I", false);
+        } else {
+            render(signal);
+            methodNode.visitInsn(Opcodes.L2I);
+        }
+    }
+
+    /**
+     * Renders a comparison whose operands are supported by this class, pushing a boolean.
+     */
+    void renderComparison(VectorComparison comparison) {
+        render(comparison.getLeftOperand());
+        render(comparison.getRightOperand());
+        if (comparison.getLeftOperand().getWidth() < 64) {
+            // both values are non-negative, so signed comparison gives the right result
+            methodNode.visitInsn(Opcodes.LCMP);
+        } else {
+            methodNode.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Long", "compareUnsigned", "(JJ)I", false);
+        }
+        switch (comparison.getOperator()) {
+
+            case EQUAL:
+                generator.renderBitSwitchToBoolean(Opcodes.IFEQ);
+                break;
+
+            case NOT_EQUAL:
+                generator.renderBitSwitchToBoolean(Opcodes.IFNE);
+                break;
+
+            case LESS_THAN:
+                generator.renderBitSwitchToBoolean(Opcodes.IFLT);
+                break;
+
+            case LESS_THAN_OR_EQUAL:
+                generator.renderBitSwitchToBoolean(Opcodes.IFLE);
+                break;
+
+            case GREATER_THAN:
+                generator.renderBitSwitchToBoolean(Opcodes.IFGT);
+                break;
+
+            case GREATER_THAN_OR_EQUAL:
+                generator.renderBitSwitchToBoolean(Opcodes.IFGE);
+                break;
+
+            default:
+                throw new RuntimeException("unknown VectorComparison.Operator: " + comparison.getOperator());
+
+        }
+    }
+
+    /**
+     * Renders a constant-index bit selection whose container is supported by this class, pushing a boolean.
+     */
+    void renderSelection(ConstantIndexSelection selection) {
+        render(selection.getContainerSignal());
+        if (selection.getIndex() > 0) {
+            generator.push(selection.getIndex());
+            methodNode.visitInsn(Opcodes.LUSHR);
+        }
+        renderLowestBit();
+    }
+
+    /**
+     * Renders a bit selection whose container is supported by this class, pushing a boolean. The index is always
+     * in range; IndexSelection checks this.
+     */
+    void renderSelection(IndexSelection selection) {
+        render(selection.getContainerSignal());
+        renderAsInt(selection.getIndexSignal());
+        methodNode.visitInsn(Opcodes.LUSHR);
+        renderLowestBit();
+    }
+
+    /**
+     * Renders the signal as a long, then converts it to a {@link Vector}.
+     */
+    void renderBoxed(VectorSignal signal) {
+        generator.push(signal.getWidth());
+        render(signal);
+        box();
+    }
+
+    // Reads a row of the matrix as a long; expects the row index on top of the stack and the matrix below it. When
+    // computing the nodes of a levelized evaluator, out-of-range rows yield zero instead of failing.
+    private void renderGetRowAsLong() {
+        if (generator.isRenderingNodeEvaluations()) {
+            methodNode.visitMethodInsn(Opcodes.INVOKESTATIC, LEVELIZED_EVALUATOR, "getRowAsLongOrZero",
+                    "(L" + MATRIX + ";I)J", false);
+        } else {
+            methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, MATRIX, "getRowAsLong", "(I)J", false);
+        }
+    }
+
+    // converts the long on top of the stack to a vector; expects the width below it
+    void box() {
+        methodNode.visitMethodInsn(Opcodes.INVOKESTATIC, VECTOR, "of", "(IJ)L" + VECTOR + ";", false);
+    }
+
+    // converts the vector on top of the stack to a long
+    void unbox() {
+        methodNode.visitMethodInsn(Opcodes.INVOKEVIRTUAL, VECTOR, "getAsSignedLong", "()J", false);
+    }
+
+    void pushLong(long value) {
+        if (value == 0) {
+            methodNode.visitInsn(Opcodes.LCONST_0);
+        } else if (value == 1) {
+            methodNode.visitInsn(Opcodes.LCONST_1);
+        } else {
+            methodNode.visitLdcInsn(value);
+        }
+    }
+
+    // clears all bits of the long on top of the stack above the specified width
+    private void renderMask(int width) {
+        if (width < 64) {
+            pushLong((1L << width) - 1);
+            methodNode.visitInsn(Opcodes.LAND);
+        }
+    }
+
+    private void renderLowestBit() {
+        methodNode.visitInsn(Opcodes.L2I);
+        methodNode.visitInsn(Opcodes.ICONST_1);
+        methodNode.visitInsn(Opcodes.IAND);
+    }
+
+}
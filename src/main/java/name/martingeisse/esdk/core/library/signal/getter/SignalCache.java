@@ -0,0 +1,223 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.DesignItem;
+import name.martingeisse.esdk.core.library.clocked.Clock;
+import name.martingeisse.esdk.core.library.memory.AsynchronousMemoryReadPort;
+import name.martingeisse.esdk.core.library.memory.LookupTable;
+import name.martingeisse.esdk.core.library.memory.SynchronousMemoryPort;
+import name.martingeisse.esdk.core.library.procedural.ProceduralMemoryIndexSelection;
+import name.martingeisse.esdk.core.library.procedural.statement.Assignment;
+import name.martingeisse.esdk.core.library.procedural.statement.SwitchStatement;
+import name.martingeisse.esdk.core.library.procedural.statement.WhenStatement;
+import name.martingeisse.esdk.core.library.signal.Signal;
+import name.martingeisse.esdk.core.library.signal.connector.SignalConnector;
+import name.martingeisse.esdk.core.library.signal.mux.ConditionalOperation;
+import name.martingeisse.esdk.core.library.signal.mux.SwitchSignal;
+import name.martingeisse.esdk.core.library.signal.operation.*;
+import name.martingeisse.esdk.core.library.signal.vector.*;
+import name.martingeisse.esdk.core.tools.optimization.SignalOptimizer;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Per-design cache for combinational signals that are used in more than one place. Without it, each generated getter
+ * or statement recomputes the whole expression cone it uses, so shared subexpressions get computed many times per
+ * clock edge. With it, the generated code stores the value of a shared signal in a {@link SignalCacheSlot} when it
+ * first computes it, and uses the stored value for the rest of the clock edge.
+ *
+ * A stored value is valid as long as the epoch it was stored in is current. The epoch starts when a {@link Clock}
+ * begins its computeNextState() phase and ends when that phase is over, since no state visible to signals can change
+ * within that phase. Outside of an epoch, for example when testbench code reads a signal, nothing gets cached.
+ *
+ * Shared signals are found by counting, for each signal, how often it gets used when computing the signals used by
+ * the statements of the design. This is done on the simplified signals (see {@link SignalOptimizer}), so signals
+ * that are only used by logic that got simplified away don't count as shared. Only signals whose computation is more
+ * expensive than a cache lookup are considered. Caching is disabled completely if the computeNextState() phase can
+ * run on multiple threads, i.e. with partitioned simulation or a clock with parallel simulation, because the slots
+ * are not thread-safe.
+ */
+public final class SignalCache {
+
+    private final Design design;
+    private Map<Signal, Integer> useCounts;
+    private final Map<Signal, SignalCacheSlot> slots = new IdentityHashMap<>();
+    private boolean enabled;
+    private long lastEpoch = 0;
+
+    /**
+     * The current epoch, or 0 if outside of an epoch. Read by generated code through {@link SignalCacheSlot}.
+     */
+    long epoch = 0;
+
+    /**
+     * Each design creates its own cache; use {@link Design#getSignalCache()} to obtain it.
+     */
+    public SignalCache(Design design) {
+        if (design == null) {
+            throw new IllegalArgumentException("design cannot be null");
+        }
+        this.design = design;
+    }
+
+    Design getDesign() {
+        return design;
+    }
+
+    /**
+     * Returns true if shared signals are actually cached, which is determined by the first call to
+     * {@link #getSlot(Signal)}, that is, when generating code. This must only be called after that code has been
+     * generated.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts a new epoch, invalidating all cached values.
+     */
+    public void beginEpoch() {
+        lastEpoch++;
+        epoch = lastEpoch;
+    }
+
+    /**
+     * Ends the current epoch. Until the next epoch starts, no values are cached.
+     */
+    public void endEpoch() {
+        epoch = 0;
+    }
+
+    /**
+     * Returns the slot to cache the value of the specified signal in, or null if that signal should not be cached.
+     */
+    SignalCacheSlot getSlot(Signal signal) {
+        if (useCounts == null) {
+            analyze();
+        }
+        if (!enabled || !isExpensive(signal)) {
+            return null;
+        }
+        Integer useCount = useCounts.get(signal);
+        if (useCount == null || useCount < 2) {
+            return null;
+        }
+        return slots.computeIfAbsent(signal, s -> new SignalCacheSlot(this));
+    }
+
+    private void analyze() {
+        useCounts = new IdentityHashMap<>();
+        enabled = !design.isPartitionedSimulationEnabled();
+        for (DesignItem item : design.getItems()) {
+            if (item instanceof Clock && ((Clock) item).isParallelSimulationEnabled()) {
+                enabled = false;
+            }
+        }
+        if (!enabled) {
+            return;
+        }
+        for (DesignItem item : design.getItems()) {
+            if (item instanceof Assignment) {
+                countUse(((Assignment) item).getSource());
+            } else if (item instanceof WhenStatement) {
+                countUse(((WhenStatement) item).getCondition());
+            } else if (item instanceof SwitchStatement) {
+                countUse(((SwitchStatement) item).getSelector());
+            }
+        }
+    }
+
+    private void countUse(Signal signal) {
+        while (signal instanceof SignalConnector) {
+            signal = ((SignalConnector) signal).getConnected();
+        }
+        signal = design.getSignalOptimizer().getOptimized(signal);
+        int useCount = useCounts.merge(signal, 1, Integer::sum);
+
+        // the operands of a cached signal are only computed once
+        if (useCount > 1 && isExpensive(signal)) {
+            return;
+        }
+
+        forEachOperand(signal, this::countUse);
+    }
+
+    /**
+     * Calls the consumer for each operand of the specified signal, i.e. each signal it is computed from. Signals
+     * that are not computed from other signals, such as registers and constants, have no operands. A lookup table
+     * has the read data signal of its port as its only operand.
+     */
+    static void forEachOperand(Signal signal, Consumer<Signal> consumer) {
+        if (signal instanceof BitNotOperation) {
+            consumer.accept(((BitNotOperation) signal).getOperand());
+        } else if (signal instanceof BitOperation) {
+            consumer.accept(((BitOperation) signal).getLeftOperand());
+            consumer.accept(((BitOperation) signal).getRightOperand());
+        } else if (signal instanceof VectorNotOperation) {
+            consumer.accept(((VectorNotOperation) signal).getOperand());
+        } else if (signal instanceof VectorNegateOperation) {
+            consumer.accept(((VectorNegateOperation) signal).getOperand());
+        } else if (signal instanceof VectorOperation) {
+            consumer.accept(((VectorOperation) signal).getLeftOperand());
+            consumer.accept(((VectorOperation) signal).getRightOperand());
+        } else if (signal instanceof ShiftOperation) {
+            consumer.accept(((ShiftOperation) signal).getLeftOperand());
+            consumer.accept(((ShiftOperation) signal).getRightOperand());
+        } else if (signal instanceof VectorComparison) {
+            consumer.accept(((VectorComparison) signal).getLeftOperand());
+            consumer.accept(((VectorComparison) signal).getRightOperand());
+        } else if (signal instanceof ConditionalOperation) {
+            consumer.accept(((ConditionalOperation) signal).getCondition());
+            consumer.accept(((ConditionalOperation) signal).getOnTrue());
+            consumer.accept(((ConditionalOperation) signal).getOnFalse());
+        } else if (signal instanceof SwitchSignal<?>) {
+            SwitchSignal<?> switchSignal = (SwitchSignal<?>)signal;
+            consumer.accept(switchSignal.getSelector());
+            for (SwitchSignal.Case<?> aCase : switchSignal.getCases()) {
+                consumer.accept(aCase.getBranch());
+            }
+            if (switchSignal.getDefaultSignal() != null) {
+                consumer.accept(switchSignal.getDefaultSignal());
+            }
+        } else if (signal instanceof Concatenation) {
+            for (Signal element : ((Concatenation) signal).getSignals()) {
+                consumer.accept(element);
+            }
+        } else if (signal instanceof ConstantIndexSelection) {
+            consumer.accept(((ConstantIndexSelection) signal).getContainerSignal());
+        } else if (signal instanceof IndexSelection) {
+            consumer.accept(((IndexSelection) signal).getContainerSignal());
+            consumer.accept(((IndexSelection) signal).getIndexSignal());
+        } else if (signal instanceof RangeSelection) {
+            consumer.accept(((RangeSelection) signal).getContainerSignal());
+        } else if (signal instanceof BitRepetition) {
+            consumer.accept(((BitRepetition) signal).getBitSignal());
+        } else if (signal instanceof VectorRepetition) {
+            consumer.accept(((VectorRepetition) signal).getVectorSignal());
+        } else if (signal instanceof OneBitVectorSignal) {
+            consumer.accept(((OneBitVectorSignal) signal).getBitSignal());
+        } else if (signal instanceof ProceduralMemoryIndexSelection) {
+            consumer.accept(((ProceduralMemoryIndexSelection) signal).getIndexSignal());
+        } else if (signal instanceof AsynchronousMemoryReadPort.ReadDataSignal) {
+            consumer.accept(((AsynchronousMemoryReadPort.ReadDataSignal) signal).getPort().getAddressSignal());
+        } else if (signal instanceof SynchronousMemoryPort.AsynchronousReadDataSignal) {
+            consumer.accept(((SynchronousMemoryPort.AsynchronousReadDataSignal) signal).getPort().getAddressSignal());
+        } else if (signal instanceof LookupTable) {
+            consumer.accept(((LookupTable) signal).getPort().getReadDataSignal());
+        }
+    }
+
+    // Signals that are cheap to compute, such as registers, constants or constant selections, are not worth caching.
+    private static boolean isExpensive(Signal signal) {
+        return signal instanceof BitOperation || signal instanceof VectorOperation ||
+                signal instanceof ShiftOperation || signal instanceof VectorComparison ||
+                signal instanceof ConditionalOperation || signal instanceof SwitchSignal<?> ||
+                signal instanceof Concatenation || signal instanceof IndexSelection ||
+                signal instanceof ProceduralMemoryIndexSelection ||
+                signal instanceof AsynchronousMemoryReadPort.ReadDataSignal ||
+                signal instanceof SynchronousMemoryPort.AsynchronousReadDataSignal;
+    }
+
+}
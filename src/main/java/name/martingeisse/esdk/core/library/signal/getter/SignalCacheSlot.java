@@ -0,0 +1,56 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.util.vector.Vector;
+
+/**
+ * Stores the value of a single shared signal for the current epoch of a {@link SignalCache}. Bits and vectors of up
+ * to 64 bits are stored as a long; wider vectors are stored as a {@link Vector}. This class is only meant to be used
+ * by generated code.
+ */
+public final class SignalCacheSlot {
+
+    private final SignalCache cache;
+    private long epoch = 0;
+    private long longValue;
+    private Vector vectorValue;
+
+    SignalCacheSlot(SignalCache cache) {
+        this.cache = cache;
+    }
+
+    public boolean isValid() {
+        long currentEpoch = cache.epoch;
+        return currentEpoch != 0 && currentEpoch == epoch;
+    }
+
+    public long getLongValue() {
+        return longValue;
+    }
+
+    public boolean getBitValue() {
+        return longValue != 0;
+    }
+
+    public Vector getVectorValue() {
+        return vectorValue;
+    }
+
+    public long storeLongValue(long value) {
+        longValue = value;
+        epoch = cache.epoch;
+        return value;
+    }
+
+    public boolean storeBitValue(boolean value) {
+        longValue = value ? 1 : 0;
+        epoch = cache.epoch;
+        return value;
+    }
+
+    public Vector storeVectorValue(Vector value) {
+        vectorValue = value;
+        epoch = cache.epoch;
+        return value;
+    }
+
+}
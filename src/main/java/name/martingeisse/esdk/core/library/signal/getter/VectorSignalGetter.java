@@ -12,4 +12,20 @@ public abstract class VectorSignalGetter {
 
     public abstract Vector getValue();
 
+    /**
+     * Like {@link VectorSignal#getValueAsLong()}. Generated getters for signals of at most 64 bits compute the value
+     * as a long without constructing a {@link Vector}.
+     */
+    public long getValueAsLong() {
+        return getValue().getAsSignedLong();
+    }
+
+    /**
+     * Like {@link VectorSignal#getValueAsInt()}. Generated getters for signals of at most 32 bits compute the value
+     * as an int without constructing a {@link Vector}.
+     */
+    public int getValueAsInt() {
+        return getValue().getAsSignedInt();
+    }
+
 }
@@ -12,6 +12,7 @@ import name.martingeisse.esdk.core.tools.synthesis.verilog.VerilogWriter;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.contribution.VerilogContribution;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExpressionNesting;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExpressionWriter;
+import name.martingeisse.esdk.core.util.SwitchJumpTable;
 import name.martingeisse.esdk.core.util.vector.Vector;
 
 import java.util.ArrayList;
@@ -25,6 +26,7 @@ public abstract class SwitchSignal<BRANCH extends Signal> extends DesignItem imp
 	private final VectorSignal selector;
 	private final List<Case<BRANCH>> cases;
 	private BRANCH defaultSignal;
+	private SwitchJumpTable jumpTable;
 
 	public SwitchSignal(VectorSignal selector) {
 		this.selector = selector;
@@ -71,16 +73,38 @@ public abstract class SwitchSignal<BRANCH extends Signal> extends DesignItem imp
 		}
 		validateOnAdd(branch);
 		cases.add(new Case<>(selectorValues, branch));
+		jumpTable = null;
 	}
 
 	protected abstract void validateOnAdd(BRANCH branch);
 
+	// ----------------------------------------------------------------------------------------------------------------
+	// simulation
+	// ----------------------------------------------------------------------------------------------------------------
+
+	@Override
+	protected void initializeSimulation() {
+		super.initializeSimulation();
+		List<List<Vector>> caseSelectorValues = new ArrayList<>();
+		for (Case<BRANCH> aCase : cases) {
+			caseSelectorValues.add(aCase.getSelectorValues());
+		}
+		jumpTable = SwitchJumpTable.build(selector.getWidth(), caseSelectorValues);
+	}
+
 	protected final BRANCH getCurrentlySelectedBranch() {
 		Vector actualSelectorValue = selector.getValue();
-		for (Case<BRANCH> aCase : cases) {
-			for (Vector caseSelectorValue : aCase.getSelectorValues()) {
-				if (actualSelectorValue.equals(caseSelectorValue)) {
-					return aCase.getBranch();
+		if (jumpTable != null) {
+			int caseIndex = jumpTable.getCaseIndex(actualSelectorValue);
+			if (caseIndex >= 0) {
+				return cases.get(caseIndex).getBranch();
+			}
+		} else {
+			for (Case<BRANCH> aCase : cases) {
+				for (Vector caseSelectorValue : aCase.getSelectorValues()) {
+					if (actualSelectorValue.equals(caseSelectorValue)) {
+						return aCase.getBranch();
+					}
 				}
 			}
 		}
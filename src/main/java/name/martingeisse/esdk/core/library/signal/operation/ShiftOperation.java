@@ -88,10 +88,10 @@ public final class ShiftOperation extends DesignItem implements VectorSignal, De
 		switch (direction) {
 
 			case LEFT:
-				return leftOperand.getValue().shiftLeft(rightOperand.getValue().getAsUnsignedInt());
+				return leftOperand.getValue().shiftLeft(rightOperand.getValueAsUnsignedInt());
 
 			case RIGHT:
-				return leftOperand.getValue().shiftRight(rightOperand.getValue().getAsUnsignedInt());
+				return leftOperand.getValue().shiftRight(rightOperand.getValueAsUnsignedInt());
 
 			default:
 				throw new UnsupportedOperationException();
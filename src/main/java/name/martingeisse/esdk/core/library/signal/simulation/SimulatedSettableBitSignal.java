@@ -19,7 +19,10 @@ public final class SimulatedSettableBitSignal extends SimulatedSettableSignal im
 	}
 
 	public void setValue(boolean value) {
-		this.value = value;
+		if (value != this.value) {
+			this.value = value;
+			countChange();
+		}
 	}
 
 }
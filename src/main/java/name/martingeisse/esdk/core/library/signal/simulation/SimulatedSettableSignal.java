@@ -2,6 +2,7 @@ package name.martingeisse.esdk.core.library.signal.simulation;
 
 import name.martingeisse.esdk.core.DesignItem;
 import name.martingeisse.esdk.core.DesignItemOwned;
+import name.martingeisse.esdk.core.library.clocked.ChangeTracked;
 import name.martingeisse.esdk.core.library.procedural.ProceduralRegister;
 import name.martingeisse.esdk.core.library.procedural.statement.Statement;
 import name.martingeisse.esdk.core.library.signal.Signal;
@@ -23,7 +24,25 @@ import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExp
  * Using this signal in a way that is not relevant to synthesis, such as a simulation replacement signal of instance
  * ports, is allowed.
  */
-public abstract class SimulatedSettableSignal extends DesignItem implements Signal, DesignItemOwned {
+public abstract class SimulatedSettableSignal extends DesignItem implements Signal, DesignItemOwned, ChangeTracked {
+
+	private long changeCount;
+
+	// ----------------------------------------------------------------------------------------------------------------
+	// simulation
+	// ----------------------------------------------------------------------------------------------------------------
+
+	@Override
+	public final long getChangeCount() {
+		return changeCount;
+	}
+
+	/**
+	 * Must be called by subclasses whenever the value changes.
+	 */
+	final void countChange() {
+		changeCount++;
+	}
 
 	// ----------------------------------------------------------------------------------------------------------------
 	// Verilog generation
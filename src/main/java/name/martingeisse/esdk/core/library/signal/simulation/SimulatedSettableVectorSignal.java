@@ -30,10 +30,23 @@ public final class SimulatedSettableVectorSignal extends SimulatedSettableSignal
 		return value;
 	}
 
+	@Override
+	public long getValueAsLong() {
+		return value.getAsSignedLong();
+	}
+
+	@Override
+	public int getValueAsInt() {
+		return value.getAsSignedInt();
+	}
+
 	public void setValue(Vector value) {
 		if (value.getWidth() != width) {
 			throw new IllegalArgumentException("got vector value of wrong width " + value.getWidth() + ", expected " + width);
 		}
+		if (!value.equals(this.value)) {
+			countChange();
+		}
 		this.value = value;
 	}
 
@@ -48,7 +48,7 @@ public final class IndexSelection extends DesignItem implements BitSignal, Desig
 
 	@Override
 	public boolean getValue() {
-		return containerSignal.getValue().select(indexSignal.getValue().getAsUnsignedInt());
+		return containerSignal.getValue().select(indexSignal.getValueAsUnsignedInt());
 	}
 
 	// ----------------------------------------------------------------------------------------------------------------
@@ -58,15 +58,16 @@ public final class IndexSelection extends DesignItem implements BitSignal, Desig
 	@Override
 	public VerilogContribution getVerilogContribution() {
 		// The container of a selection is special in that it even cannot be a constant, only a signal. So we treat
-		// constants specially. Anything that is not explicitly a constant (e.g. complex signals that only have
-		// constant inputs and could be constant-folded) will not be recognized by the instanceof, but they will be
-		// moved out because they don't match SIGNALS_AND_CONSTANTS.
-		if (containerSignal instanceof VectorConstant) {
+		// constants specially, including signals that got simplified to a constant. Anything that is not a constant
+		// will not be recognized by the instanceof, but will be moved out because it doesn't match
+		// SIGNALS_AND_CONSTANTS.
+		VectorSignal optimizedContainerSignal = getDesign().getSignalOptimizer().getOptimized(containerSignal);
+		if (optimizedContainerSignal instanceof VectorConstant) {
 			return new VerilogContribution() {
 
 				@Override
 				public void prepareSynthesis(SynthesisPreparationContext context) {
-					context.declareSignal(containerSignal, VerilogSignalDeclarationKeyword.WIRE, true);
+					context.declareSignal(optimizedContainerSignal, VerilogSignalDeclarationKeyword.WIRE, true);
 				}
 
 				@Override
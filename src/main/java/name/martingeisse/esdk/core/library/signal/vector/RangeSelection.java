@@ -63,6 +63,24 @@ public class RangeSelection extends DesignItem implements VectorSignal, DesignIt
 		return containerSignal.getValue().select(from, to);
 	}
 
+	@Override
+	public long getValueAsLong() {
+		if (containerSignal.getWidth() > 64) {
+			return containerSignal.getValue().selectAsLong(from, to);
+		}
+		long shifted = containerSignal.getValueAsLong() >>> to;
+		int width = from - to + 1;
+		return (width == 64) ? shifted : (shifted & ((1L << width) - 1));
+	}
+
+	@Override
+	public int getValueAsInt() {
+		if (from - to + 1 > 32) {
+			throw new IllegalStateException("cannot return the bits of a vector of width " + getWidth() + " as int");
+		}
+		return (int) getValueAsLong();
+	}
+
 	// ----------------------------------------------------------------------------------------------------------------
 	// Verilog generation
 	// ----------------------------------------------------------------------------------------------------------------
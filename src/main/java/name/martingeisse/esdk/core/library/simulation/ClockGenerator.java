@@ -7,12 +7,19 @@ import name.martingeisse.esdk.core.library.clocked.Clock;
  */
 public final class ClockGenerator extends IntervalItem {
 
+    private final Clock clock;
+
     public ClockGenerator(Clock clock, long period) {
-        super(period, clock::simulateClockEdge);
+        this(clock, period, 0);
     }
 
     public ClockGenerator(Clock clock, long period, long initialOffset) {
         super(period, initialOffset, clock::simulateClockEdge);
+        this.clock = clock;
+    }
+
+    public Clock getClock() {
+        return clock;
     }
 
 }
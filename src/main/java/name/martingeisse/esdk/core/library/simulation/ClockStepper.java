@@ -12,6 +12,8 @@ public class ClockStepper extends SimulationDesignItem {
 
 	private final Clock clock;
 	private final int clockPeriod;
+	private final Runnable stepCallback = this::stepCallback;
+	private int remainingCycles;
 
 	public ClockStepper(int clockPeriod) {
 		this(new Clock(new BitConstant(false)), clockPeriod);
@@ -40,14 +42,22 @@ public class ClockStepper extends SimulationDesignItem {
 	}
 
 	private void stepInternal(int cycles) {
-		if (cycles < 1) {
+		remainingCycles = cycles;
+		scheduleNextStep();
+	}
+
+	private void scheduleNextStep() {
+		if (remainingCycles < 1) {
 			getDesign().stopSimulation();
 		} else {
-			fire(() -> {
-				clock.simulateClockEdge();
-				stepInternal(cycles - 1);
-			}, clockPeriod);
+			fire(stepCallback, clockPeriod);
 		}
 	}
 
+	private void stepCallback() {
+		clock.simulateClockEdge();
+		remainingCycles--;
+		scheduleNextStep();
+	}
+
 }
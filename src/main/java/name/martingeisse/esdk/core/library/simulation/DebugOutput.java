@@ -27,7 +27,7 @@ public class DebugOutput extends ClockedItem {
 
 	@Override
 	public void computeNextState() {
-		data = dataSignal.getValue().getAsSignedInt();
+		data = dataSignal.getValueAsInt();
 		enable = enableSignal.getValue();
 	}
 
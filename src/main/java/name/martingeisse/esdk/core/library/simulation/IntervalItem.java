@@ -14,6 +14,15 @@ public class IntervalItem extends SimulationDesignItem {
     }
 
     public IntervalItem(long period, long initialOffset, Runnable action) {
+        if (period < 1) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        if (initialOffset < 0) {
+            throw new IllegalArgumentException("initialOffset cannot be negative");
+        }
+        if (action == null) {
+            throw new IllegalArgumentException("action cannot be null");
+        }
         this.period = period;
         this.initialOffset = initialOffset;
         this.action = action;
@@ -33,12 +42,7 @@ public class IntervalItem extends SimulationDesignItem {
 
     @Override
     protected void initializeSimulation() {
-        fire(this::callback, initialOffset);
-    }
-
-    private void callback() {
-        action.run();
-        fire(this::callback, period);
+        fireEvery(action, period, initialOffset);
     }
 
 }
@@ -17,7 +17,7 @@ public class SimulationCruiseControl extends SimulationDesignItem {
 	@Override
 	protected void initializeSimulation() {
 		lastTime = System.currentTimeMillis();
-		fire(this::callback, 0);
+		fireEvery(this::callback, simulationPeriodTicks, 0);
 	}
 
 	private void callback() {
@@ -32,7 +32,6 @@ public class SimulationCruiseControl extends SimulationDesignItem {
 			}
 		}
 		lastTime = now;
-		fire(this::callback, simulationPeriodTicks);
 	}
 
 }
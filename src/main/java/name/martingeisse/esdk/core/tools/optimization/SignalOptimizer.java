@@ -0,0 +1,505 @@
+package name.martingeisse.esdk.core.tools.optimization;
+
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.DesignItem;
+import name.martingeisse.esdk.core.ImplicitGlobalDesign;
+import name.martingeisse.esdk.core.library.signal.BitConstant;
+import name.martingeisse.esdk.core.library.signal.BitSignal;
+import name.martingeisse.esdk.core.library.signal.Signal;
+import name.martingeisse.esdk.core.library.signal.VectorConstant;
+import name.martingeisse.esdk.core.library.signal.VectorSignal;
+import name.martingeisse.esdk.core.library.signal.connector.SignalConnector;
+import name.martingeisse.esdk.core.library.signal.mux.ConditionalOperation;
+import name.martingeisse.esdk.core.library.signal.mux.SwitchSignal;
+import name.martingeisse.esdk.core.library.signal.operation.*;
+import name.martingeisse.esdk.core.library.signal.vector.*;
+import name.martingeisse.esdk.core.util.vector.Vector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Simplifies the combinational signals of a design. This folds operations whose operands are constant and
+ * simplifies algebraic identities such as (x & true) or (x + 0). The original signals are left unchanged; instead,
+ * each signal is mapped to an equivalent, simplified signal, which is either the signal itself, one of its (simplified)
+ * operands, or a new constant. Consumers of the signal graph, such as generated simulation code and the Verilog
+ * generator, use the simplified signal in place of the original one. No new operations are ever created, so an
+ * operation whose operands got simplified is still used, but its operands get replaced in turn when rendering it.
+ *
+ * Logic that no register, pin or memory port observes is never simulated since simulation only computes what is
+ * needed. For Verilog generation, see {@link #isRemovableIfUnused(Signal)}.
+ *
+ * The optimizer is run by {@link Design#finalizeConstruction()} if enabled; see
+ * {@link Design#setSignalOptimizationEnabled(boolean)}. Signals that are created after that are not simplified.
+ */
+public final class SignalOptimizer {
+
+	private final Design design;
+	private final Map<Signal, Signal> optimizedSignals = new IdentityHashMap<>();
+	private final Map<Vector, VectorConstant> vectorConstants = new HashMap<>();
+	private BitConstant falseConstant;
+	private BitConstant trueConstant;
+	private int simplifiedSignalCount;
+
+	public SignalOptimizer(Design design) {
+		if (design == null) {
+			throw new IllegalArgumentException("design cannot be null");
+		}
+		this.design = design;
+	}
+
+	/**
+	 * Simplifies all signals of the design. New constants get added to the design.
+	 */
+	public void optimize() {
+		// collect the signals first since this adds new constants to the design
+		List<Signal> signals = new ArrayList<>();
+		for (DesignItem item : design.getItems()) {
+			if (item instanceof Signal) {
+				signals.add((Signal) item);
+			}
+		}
+		Design previousImplicitDesign = ImplicitGlobalDesign.get();
+		ImplicitGlobalDesign.set(design);
+		try {
+			for (Signal signal : signals) {
+				optimize(signal);
+			}
+		} finally {
+			if (previousImplicitDesign == null) {
+				ImplicitGlobalDesign.clear();
+			} else {
+				ImplicitGlobalDesign.set(previousImplicitDesign);
+			}
+		}
+	}
+
+	/**
+	 * Returns the simplified signal to use in place of the specified signal. Connectors are replaced by the
+	 * (simplified) signal they are connected to.
+	 */
+	public Signal getOptimized(Signal signal) {
+		Signal optimized = optimizedSignals.get(signal);
+		return (optimized == null ? signal : optimized);
+	}
+
+	public BitSignal getOptimized(BitSignal signal) {
+		return (BitSignal) getOptimized((Signal) signal);
+	}
+
+	public VectorSignal getOptimized(VectorSignal signal) {
+		return (VectorSignal) getOptimized((Signal) signal);
+	}
+
+	/**
+	 * Returns the number of signals that got replaced by a simpler signal, not counting connectors.
+	 */
+	public int getSimplifiedSignalCount() {
+		return simplifiedSignalCount;
+	}
+
+	/**
+	 * Returns true if the specified signal is a built-in combinational signal whose value depends only on its
+	 * operands. Such a signal can be left out of the generated Verilog code if nothing uses it, even if it would
+	 * normally contribute code of its own.
+	 */
+	public static boolean isRemovableIfUnused(Signal signal) {
+		return signal instanceof BitConstant || signal instanceof VectorConstant ||
+			signal instanceof BitNotOperation || signal instanceof BitOperation ||
+			signal instanceof VectorNotOperation || signal instanceof VectorNegateOperation ||
+			signal instanceof VectorOperation || signal instanceof ShiftOperation ||
+			signal instanceof VectorComparison || signal instanceof ConditionalOperation ||
+			signal instanceof SwitchSignal<?> || signal instanceof Concatenation ||
+			signal instanceof ConstantIndexSelection || signal instanceof IndexSelection ||
+			signal instanceof RangeSelection || signal instanceof BitRepetition ||
+			signal instanceof VectorRepetition || signal instanceof OneBitVectorSignal;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+	// simplification
+	// ----------------------------------------------------------------------------------------------------------------
+
+	private Signal optimize(Signal signal) {
+		Signal optimized = optimizedSignals.get(signal);
+		if (optimized == null) {
+			// a placeholder keeps combinational loops from recursing endlessly
+			optimizedSignals.put(signal, signal);
+			optimized = optimizeUncached(signal);
+			optimizedSignals.put(signal, optimized);
+			if (optimized != signal && !(signal instanceof SignalConnector)) {
+				simplifiedSignalCount++;
+			}
+		}
+		return optimized;
+	}
+
+	private BitSignal optimize(BitSignal signal) {
+		return (BitSignal) optimize((Signal) signal);
+	}
+
+	private VectorSignal optimize(VectorSignal signal) {
+		return (VectorSignal) optimize((Signal) signal);
+	}
+
+	private Signal optimizeUncached(Signal signal) {
+		if (signal instanceof SignalConnector) {
+			Signal connected = ((SignalConnector) signal).getConnected();
+			return (connected == null ? signal : optimize(connected));
+		}
+		if (signal instanceof BitNotOperation) {
+			return optimizeBitNot((BitNotOperation) signal);
+		}
+		if (signal instanceof BitOperation) {
+			return optimizeBitOperation((BitOperation) signal);
+		}
+		if (signal instanceof VectorNotOperation) {
+			VectorSignal operand = optimize(((VectorNotOperation) signal).getOperand());
+			if (operand instanceof VectorConstant) {
+				return vectorConstant(((VectorConstant) operand).getValue().not());
+			}
+			if (operand instanceof VectorNotOperation) {
+				return optimize(((VectorNotOperation) operand).getOperand());
+			}
+			return signal;
+		}
+		if (signal instanceof VectorNegateOperation) {
+			VectorSignal operand = optimize(((VectorNegateOperation) signal).getOperand());
+			if (operand instanceof VectorConstant) {
+				return vectorConstant(((VectorConstant) operand).getValue().negate());
+			}
+			return signal;
+		}
+		if (signal instanceof VectorOperation) {
+			return optimizeVectorOperation((VectorOperation) signal);
+		}
+		if (signal instanceof ShiftOperation) {
+			return optimizeShiftOperation((ShiftOperation) signal);
+		}
+		if (signal instanceof VectorComparison) {
+			return optimizeComparison((VectorComparison) signal);
+		}
+		if (signal instanceof ConditionalOperation) {
+			ConditionalOperation conditional = (ConditionalOperation) signal;
+			BitSignal condition = optimize(conditional.getCondition());
+			if (condition instanceof BitConstant) {
+				return optimize(((BitConstant) condition).getValue() ? conditional.getOnTrue() : conditional.getOnFalse());
+			}
+			Signal onTrue = optimize(conditional.getOnTrue());
+			return (onTrue == optimize(conditional.getOnFalse()) ? onTrue : signal);
+		}
+		if (signal instanceof SwitchSignal<?>) {
+			return optimizeSwitch((SwitchSignal<?>) signal);
+		}
+		if (signal instanceof Concatenation) {
+			Vector value = Vector.of(0, 0);
+			for (Signal element : ((Concatenation) signal).getSignals()) {
+				Signal optimizedElement = optimize(element);
+				if (optimizedElement instanceof BitConstant) {
+					value = value.concat(((BitConstant) optimizedElement).getValue());
+				} else if (optimizedElement instanceof VectorConstant) {
+					value = value.concat(((VectorConstant) optimizedElement).getValue());
+				} else {
+					return signal;
+				}
+			}
+			return vectorConstant(value);
+		}
+		if (signal instanceof ConstantIndexSelection) {
+			ConstantIndexSelection selection = (ConstantIndexSelection) signal;
+			VectorSignal container = optimize(selection.getContainerSignal());
+			if (container instanceof VectorConstant) {
+				return bitConstant(((VectorConstant) container).getValue().select(selection.getIndex()));
+			}
+			return signal;
+		}
+		if (signal instanceof IndexSelection) {
+			IndexSelection selection = (IndexSelection) signal;
+			VectorSignal container = optimize(selection.getContainerSignal());
+			VectorSignal index = optimize(selection.getIndexSignal());
+			if (container instanceof VectorConstant && index instanceof VectorConstant) {
+				int indexValue = getSmallValue(((VectorConstant) index).getValue(), container.getWidth());
+				if (indexValue >= 0) {
+					return bitConstant(((VectorConstant) container).getValue().select(indexValue));
+				}
+			}
+			return signal;
+		}
+		if (signal instanceof RangeSelection) {
+			RangeSelection selection = (RangeSelection) signal;
+			VectorSignal container = optimize(selection.getContainerSignal());
+			if (container instanceof VectorConstant) {
+				return vectorConstant(((VectorConstant) container).getValue().select(selection.getFrom(), selection.getTo()));
+			}
+			if (selection.getTo() == 0 && selection.getFrom() == container.getWidth() - 1) {
+				return container;
+			}
+			return signal;
+		}
+		if (signal instanceof BitRepetition) {
+			BitRepetition repetition = (BitRepetition) signal;
+			BitSignal bit = optimize(repetition.getBitSignal());
+			if (bit instanceof BitConstant) {
+				return vectorConstant(Vector.repeat(repetition.getRepetitions(), ((BitConstant) bit).getValue()));
+			}
+			return signal;
+		}
+		if (signal instanceof VectorRepetition) {
+			VectorRepetition repetition = (VectorRepetition) signal;
+			VectorSignal element = optimize(repetition.getVectorSignal());
+			if (element instanceof VectorConstant) {
+				Vector elementValue = ((VectorConstant) element).getValue();
+				Vector value = Vector.of(0, 0);
+				for (int i = 0; i < repetition.getRepetitions(); i++) {
+					value = value.concat(elementValue);
+				}
+				return vectorConstant(value);
+			}
+			return (repetition.getRepetitions() == 1 ? element : signal);
+		}
+		if (signal instanceof OneBitVectorSignal) {
+			BitSignal bit = optimize(((OneBitVectorSignal) signal).getBitSignal());
+			if (bit instanceof BitConstant) {
+				return vectorConstant(Vector.of(1, ((BitConstant) bit).getValue() ? 1 : 0));
+			}
+			return signal;
+		}
+		return signal;
+	}
+
+	private Signal optimizeBitNot(BitNotOperation operation) {
+		BitSignal operand = optimize(operation.getOperand());
+		if (operand instanceof BitConstant) {
+			return bitConstant(!((BitConstant) operand).getValue());
+		}
+		if (operand instanceof BitNotOperation) {
+			return optimize(((BitNotOperation) operand).getOperand());
+		}
+		return operation;
+	}
+
+	private Signal optimizeBitOperation(BitOperation operation) {
+		BitSignal left = optimize(operation.getLeftOperand());
+		BitSignal right = optimize(operation.getRightOperand());
+		if (left instanceof BitConstant && right instanceof BitConstant) {
+			return bitConstant(operation.getOperator().evaluate(((BitConstant) left).getValue(),
+				((BitConstant) right).getValue()));
+		}
+
+		// move a constant operand to the right to simplify the cases below
+		if (left instanceof BitConstant) {
+			BitSignal temp = left;
+			left = right;
+			right = temp;
+		}
+		Boolean constant = (right instanceof BitConstant) ? ((BitConstant) right).getValue() : null;
+		switch (operation.getOperator()) {
+
+			case AND:
+				if (constant != null) {
+					return constant ? left : right;
+				}
+				return (left == right ? left : operation);
+
+			case OR:
+				if (constant != null) {
+					return constant ? right : left;
+				}
+				return (left == right ? left : operation);
+
+			case XOR:
+				if (constant != null && !constant) {
+					return left;
+				}
+				return (left == right ? bitConstant(false) : operation);
+
+			case XNOR:
+				if (constant != null && constant) {
+					return left;
+				}
+				return (left == right ? bitConstant(true) : operation);
+
+			default:
+				return operation;
+
+		}
+	}
+
+	private Signal optimizeVectorOperation(VectorOperation operation) {
+		VectorSignal left = optimize(operation.getLeftOperand());
+		VectorSignal right = optimize(operation.getRightOperand());
+		if (left instanceof VectorConstant && right instanceof VectorConstant) {
+			return vectorConstant(operation.getOperator().evaluate(((VectorConstant) left).getValue(),
+				((VectorConstant) right).getValue()));
+		}
+		int width = operation.getWidth();
+		switch (operation.getOperator()) {
+
+			case ADD:
+				if (isZero(left)) {
+					return right;
+				}
+				return (isZero(right) ? left : operation);
+
+			case SUBTRACT:
+				return (isZero(right) ? left : operation);
+
+			case MULTIPLY:
+				if (isZero(left) || isZero(right)) {
+					return vectorConstant(Vector.of(width, 0));
+				}
+				if (isOne(left)) {
+					return right;
+				}
+				return (isOne(right) ? left : operation);
+
+			case AND:
+				if (isZero(left) || isAllOnes(right)) {
+					return left;
+				}
+				if (isZero(right) || isAllOnes(left)) {
+					return right;
+				}
+				return (left == right ? left : operation);
+
+			case OR:
+				if (isAllOnes(left) || isZero(right)) {
+					return left;
+				}
+				if (isAllOnes(right) || isZero(left)) {
+					return right;
+				}
+				return (left == right ? left : operation);
+
+			case XOR:
+				if (isZero(left)) {
+					return right;
+				}
+				if (isZero(right)) {
+					return left;
+				}
+				return (left == right ? vectorConstant(Vector.of(width, 0)) : operation);
+
+			default:
+				return operation;
+
+		}
+	}
+
+	private Signal optimizeShiftOperation(ShiftOperation operation) {
+		VectorSignal left = optimize(operation.getLeftOperand());
+		VectorSignal right = optimize(operation.getRightOperand());
+		if (isZero(left) || isZero(right)) {
+			return left;
+		}
+		if (left instanceof VectorConstant && right instanceof VectorConstant) {
+			// shifting by the width or more fails in simulation, so that is left alone
+			Vector leftValue = ((VectorConstant) left).getValue();
+			int amount = getSmallValue(((VectorConstant) right).getValue(), leftValue.getWidth());
+			if (amount >= 0) {
+				switch (operation.getDirection()) {
+
+					case LEFT:
+						return vectorConstant(leftValue.shiftLeft(amount));
+
+					case RIGHT:
+						return vectorConstant(leftValue.shiftRight(amount));
+
+				}
+			}
+		}
+		return operation;
+	}
+
+	private Signal optimizeComparison(VectorComparison comparison) {
+		VectorSignal left = optimize(comparison.getLeftOperand());
+		VectorSignal right = optimize(comparison.getRightOperand());
+		if (left instanceof VectorConstant && right instanceof VectorConstant) {
+			return bitConstant(comparison.getOperator().evaluate(((VectorConstant) left).getValue(),
+				((VectorConstant) right).getValue()));
+		}
+		if (left == right) {
+			switch (comparison.getOperator()) {
+
+				case EQUAL:
+				case LESS_THAN_OR_EQUAL:
+				case GREATER_THAN_OR_EQUAL:
+					return bitConstant(true);
+
+				case NOT_EQUAL:
+				case LESS_THAN:
+				case GREATER_THAN:
+					return bitConstant(false);
+
+			}
+		}
+		return comparison;
+	}
+
+	private Signal optimizeSwitch(SwitchSignal<?> switchSignal) {
+		VectorSignal selector = optimize(switchSignal.getSelector());
+		if (!(selector instanceof VectorConstant)) {
+			return switchSignal;
+		}
+		Vector selectorValue = ((VectorConstant) selector).getValue();
+		for (SwitchSignal.Case<?> aCase : switchSignal.getCases()) {
+			for (Vector caseSelectorValue : aCase.getSelectorValues()) {
+				if (selectorValue.equals(caseSelectorValue)) {
+					return optimize(aCase.getBranch());
+				}
+			}
+		}
+		return (switchSignal.getDefaultSignal() == null ? switchSignal : optimize(switchSignal.getDefaultSignal()));
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+	// helpers
+	// ----------------------------------------------------------------------------------------------------------------
+
+	private BitConstant bitConstant(boolean value) {
+		if (value) {
+			if (trueConstant == null) {
+				trueConstant = new BitConstant(true);
+			}
+			return trueConstant;
+		} else {
+			if (falseConstant == null) {
+				falseConstant = new BitConstant(false);
+			}
+			return falseConstant;
+		}
+	}
+
+	private VectorConstant vectorConstant(Vector value) {
+		return vectorConstants.computeIfAbsent(value, VectorConstant::new);
+	}
+
+	/**
+	 * Returns the value as an int if it is less than the limit, or -1 if not.
+	 */
+	private static int getSmallValue(Vector value, int limit) {
+		if (value.getWidth() > 31) {
+			return -1;
+		}
+		int intValue = value.getAsUnsignedInt();
+		return (intValue < limit ? intValue : -1);
+	}
+
+	private static boolean isZero(VectorSignal signal) {
+		return signal instanceof VectorConstant &&
+			((VectorConstant) signal).getValue().equals(Vector.of(signal.getWidth(), 0));
+	}
+
+	private static boolean isOne(VectorSignal signal) {
+		return signal instanceof VectorConstant &&
+			((VectorConstant) signal).getValue().equals(Vector.of(signal.getWidth(), 1));
+	}
+
+	private static boolean isAllOnes(VectorSignal signal) {
+		return signal instanceof VectorConstant &&
+			((VectorConstant) signal).getValue().equals(Vector.repeat(signal.getWidth(), true));
+	}
+
+}
@@ -0,0 +1,68 @@
+package name.martingeisse.esdk.core.tools.simulation;
+
+/**
+ * The outcome of a single run from a {@link BatchSimulationRunner}.
+ */
+public final class BatchSimulationResult<R> {
+
+	private final int index;
+	private final R value;
+	private final Throwable exception;
+	private final long elaborationNanos;
+	private final long simulationNanos;
+
+	BatchSimulationResult(int index, R value, Throwable exception, long elaborationNanos, long simulationNanos) {
+		this.index = index;
+		this.value = value;
+		this.exception = exception;
+		this.elaborationNanos = elaborationNanos;
+		this.simulationNanos = simulationNanos;
+	}
+
+	/**
+	 * Returns the index of the design factory in the list passed to the runner.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns the value produced by the evaluator, or null if the run failed.
+	 */
+	public R getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns the exception thrown while building, simulating or evaluating the design, or null if the run succeeded.
+	 */
+	public Throwable getException() {
+		return exception;
+	}
+
+	public boolean isSuccessful() {
+		return exception == null;
+	}
+
+	/**
+	 * Returns the time needed to build the design and prepare its simulation, in nanoseconds.
+	 */
+	public long getElaborationNanos() {
+		return elaborationNanos;
+	}
+
+	/**
+	 * Returns the time spent in the simulation itself, in nanoseconds. This is 0 if the run failed before the
+	 * simulation started.
+	 */
+	public long getSimulationNanos() {
+		return simulationNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "BatchSimulationResult[" + index + ": " + (exception == null ? "ok" : exception.toString()) +
+			", elaboration " + (elaborationNanos / 1000000) + "ms, simulation " + (simulationNanos / 1000000) + "ms]";
+	}
+
+}
@@ -0,0 +1,119 @@
+package name.martingeisse.esdk.core.tools.simulation;
+
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.ImplicitGlobalDesign;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Builds and simulates many independent designs concurrently on a pool of worker threads.
+ *
+ * Each run calls its design factory on a worker thread, so the new design becomes the implicit global design of that
+ * thread while its items are created (see {@link ImplicitGlobalDesign}). The runner then prepares and runs the
+ * simulation, and finally applies an evaluator to the design to extract whatever the caller is interested in. Only
+ * the evaluator's result is kept, so the design itself -- and the code generated for it -- can be garbage-collected
+ * as soon as the run is finished. The implicit global design is cleared afterwards, since pool threads are reused.
+ *
+ * Exceptions from the factory, the simulation or the evaluator are caught and reported in the result of the run
+ * that caused them; they don't affect other runs.
+ */
+public final class BatchSimulationRunner {
+
+	private final int threadCount;
+
+	/**
+	 * Creates a runner that uses one worker thread per available processor.
+	 */
+	public BatchSimulationRunner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public BatchSimulationRunner(int threadCount) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("threadCount must be positive");
+		}
+		this.threadCount = threadCount;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Runs all designs and returns their results in the order of the factories. The results of successful runs
+	 * contain the design itself, so it is kept alive; use {@link #run(List, Function)} to keep only the relevant parts.
+	 */
+	public <D extends Design> List<BatchSimulationResult<D>> run(List<? extends Supplier<? extends D>> designFactories) {
+		return run(designFactories, design -> design);
+	}
+
+	/**
+	 * Runs all designs, applies the evaluator to each simulated design, and returns the results in the order of the
+	 * factories.
+	 */
+	public <D extends Design, R> List<BatchSimulationResult<R>> run(List<? extends Supplier<? extends D>> designFactories,
+																	Function<? super D, ? extends R> evaluator) {
+		ExecutorService executorService = Executors.newFixedThreadPool(threadCount, runnable -> {
+			Thread thread = new Thread(runnable, "batch-simulation");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<BatchSimulationResult<R>>> futures = new ArrayList<>();
+			for (int i = 0; i < designFactories.size(); i++) {
+				int index = i;
+				Supplier<? extends D> factory = designFactories.get(i);
+				futures.add(executorService.submit(() -> runSingle(index, factory, evaluator)));
+			}
+			List<BatchSimulationResult<R>> results = new ArrayList<>();
+			for (Future<BatchSimulationResult<R>> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted while waiting for batch simulation", e);
+		} catch (ExecutionException e) {
+			// runSingle() catches everything, so this should not happen
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	private static <D extends Design, R> BatchSimulationResult<R> runSingle(int index, Supplier<? extends D> factory,
+																			Function<? super D, ? extends R> evaluator) {
+		long elaborationStart = System.nanoTime();
+		long simulationStart = 0;
+		long simulationEnd = 0;
+		try {
+			ImplicitGlobalDesign.clear();
+			D design = factory.get();
+			if (design == null) {
+				throw new IllegalStateException("design factory returned null");
+			}
+			ImplicitGlobalDesign.set(design);
+			design.prepareSimulation();
+			simulationStart = System.nanoTime();
+			design.continueSimulation();
+			simulationEnd = System.nanoTime();
+			R value = evaluator.apply(design);
+			return new BatchSimulationResult<>(index, value, null, simulationStart - elaborationStart, simulationEnd - simulationStart);
+		} catch (Throwable t) {
+			long now = System.nanoTime();
+			long elaborationNanos = (simulationStart == 0 ? now : simulationStart) - elaborationStart;
+			long simulationNanos = (simulationStart == 0 ? 0 : (simulationEnd == 0 ? now : simulationEnd) - simulationStart);
+			return new BatchSimulationResult<>(index, null, t, elaborationNanos, simulationNanos);
+		} finally {
+			ImplicitGlobalDesign.clear();
+		}
+	}
+
+}
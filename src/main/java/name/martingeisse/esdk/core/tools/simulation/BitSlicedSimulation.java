@@ -0,0 +1,686 @@
+package name.martingeisse.esdk.core.tools.simulation;
+
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.DesignItem;
+import name.martingeisse.esdk.core.library.clocked.Clock;
+import name.martingeisse.esdk.core.library.clocked.ClockedItem;
+import name.martingeisse.esdk.core.library.procedural.ClockedBlock;
+import name.martingeisse.esdk.core.library.procedural.ProceduralBitRegister;
+import name.martingeisse.esdk.core.library.procedural.ProceduralRegister;
+import name.martingeisse.esdk.core.library.procedural.ProceduralVectorRegister;
+import name.martingeisse.esdk.core.library.procedural.statement.*;
+import name.martingeisse.esdk.core.library.procedural.statement.target.AssignmentTarget;
+import name.martingeisse.esdk.core.library.procedural.statement.target.VectorTargetConstantIndexSelection;
+import name.martingeisse.esdk.core.library.procedural.statement.target.VectorTargetIndexSelection;
+import name.martingeisse.esdk.core.library.procedural.statement.target.VectorTargetRangeSelection;
+import name.martingeisse.esdk.core.library.signal.*;
+import name.martingeisse.esdk.core.library.signal.connector.SignalConnector;
+import name.martingeisse.esdk.core.library.signal.mux.ConditionalOperation;
+import name.martingeisse.esdk.core.library.signal.mux.SwitchSignal;
+import name.martingeisse.esdk.core.library.signal.operation.*;
+import name.martingeisse.esdk.core.library.signal.simulation.SimulatedSettableBitSignal;
+import name.martingeisse.esdk.core.library.signal.simulation.SimulatedSettableVectorSignal;
+import name.martingeisse.esdk.core.library.signal.vector.*;
+import name.martingeisse.esdk.core.tools.optimization.SignalOptimizer;
+import name.martingeisse.esdk.core.util.vector.Vector;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Simulates 64 independent instances of the clocked blocks of a clock domain at once, for example to run a design
+ * against many independent stimuli. Each signal is represented in bit-sliced form, i.e. as one long per bit that
+ * contains that bit for all 64 instances ("lanes"), so bit operations on a single long advance all instances at once.
+ * See {@link BitSlices}.
+ *
+ * Only designs made of procedural registers, constants, bit and vector operations, comparisons, shifts, multiplexers
+ * and selections are supported; memories and clocked items other than clocked blocks are not. Inputs are
+ * {@link SimulatedSettableBitSignal}s and {@link SimulatedSettableVectorSignal}s, which get their value per lane
+ * through this object instead of the signal object. Registers can also be set per lane. Initially, all lanes have the
+ * current values of the input signals and registers.
+ *
+ * This simulation is independent of the normal simulation of the design: It neither reads nor changes the values of
+ * the signal and register objects after construction. In lanes where a switch signal without default matches no
+ * case, its value is zero instead of an error.
+ */
+public final class BitSlicedSimulation {
+
+	public static final int LANE_COUNT = 64;
+
+	private final Design design;
+	private final SignalOptimizer optimizer;
+	private final Map<Signal, Node> nodes = new IdentityHashMap<>();
+	private final List<StateNode> assignedRegisters = new ArrayList<>();
+	private final List<SlicedStatement> blocks = new ArrayList<>();
+	private int epoch;
+
+	/**
+	 * Prepares simulation of all clocked items of the specified clock domain, finalizing the construction of the
+	 * design if necessary. Throws an {@link IllegalArgumentException} if the domain contains unsupported items or
+	 * signals.
+	 */
+	public BitSlicedSimulation(Clock clock) {
+		this.design = clock.getDesign();
+		design.finalizeConstruction();
+		this.optimizer = design.getSignalOptimizer();
+		for (DesignItem item : design.getItems()) {
+			if (item instanceof ClockedItem && ((ClockedItem) item).getClock() == clock) {
+				if (!(item instanceof ClockedBlock)) {
+					throw new IllegalArgumentException("bit-sliced simulation does not support clocked item: " + item);
+				}
+				ClockedBlock block = (ClockedBlock)item;
+				if (!block.getAssignedProceduralMemories().isEmpty()) {
+					throw new IllegalArgumentException("bit-sliced simulation does not support memories: " + block);
+				}
+				for (ProceduralRegister register : block.getAssignedProceduralRegisters()) {
+					assignedRegisters.add(getStateNode(register));
+				}
+				blocks.add(compileStatement(block.getStatements()));
+			}
+		}
+	}
+
+	public Design getDesign() {
+		return design;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+	// simulation
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Simulates a clock edge in all lanes.
+	 */
+	public void simulateClockEdge() {
+		for (SlicedStatement block : blocks) {
+			block.execute(-1L);
+		}
+		for (StateNode register : assignedRegisters) {
+			System.arraycopy(register.next, 0, register.value, 0, register.value.length);
+		}
+		epoch++;
+	}
+
+	/**
+	 * Sets the value of a bit input signal in all lanes; bit i of the argument is the value for lane i.
+	 */
+	public void setInputLanes(SimulatedSettableBitSignal signal, long lanes) {
+		getStateNode(signal).value[0] = lanes;
+		epoch++;
+	}
+
+	public void setInput(SimulatedSettableBitSignal signal, int lane, boolean value) {
+		setLane(signal, lane, Vector.of(1, value ? 1 : 0));
+	}
+
+	public void setInput(SimulatedSettableVectorSignal signal, int lane, Vector value) {
+		checkWidth(signal, value);
+		setLane(signal, lane, value);
+	}
+
+	public void setRegister(ProceduralBitRegister register, int lane, boolean value) {
+		setLane(register, lane, Vector.of(1, value ? 1 : 0));
+	}
+
+	public void setRegister(ProceduralVectorRegister register, int lane, Vector value) {
+		checkWidth(register, value);
+		setLane(register, lane, value);
+	}
+
+	private void setLane(Signal signal, int lane, Vector value) {
+		checkLane(lane);
+		StateNode node = getStateNode(signal);
+		BitSlices.setLane(node.value, lane, value);
+		System.arraycopy(node.value, 0, node.next, 0, node.value.length);
+		epoch++;
+	}
+
+	/**
+	 * Returns the value of a bit signal in all lanes; bit i of the result is the value for lane i.
+	 */
+	public long getLanes(BitSignal signal) {
+		return getNode(signal).get()[0];
+	}
+
+	public boolean getValue(BitSignal signal, int lane) {
+		checkLane(lane);
+		return ((getLanes(signal) >>> lane) & 1) != 0;
+	}
+
+	public Vector getValue(VectorSignal signal, int lane) {
+		checkLane(lane);
+		return BitSlices.getLane(getNode(signal).get(), lane);
+	}
+
+	private static void checkLane(int lane) {
+		if (lane < 0 || lane >= LANE_COUNT) {
+			throw new IllegalArgumentException("invalid lane: " + lane);
+		}
+	}
+
+	private static void checkWidth(VectorSignal signal, Vector value) {
+		if (value.getWidth() != signal.getWidth()) {
+			throw new IllegalArgumentException("got vector value of wrong width " + value.getWidth() + ", expected " +
+				signal.getWidth());
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+	// signals
+	// ----------------------------------------------------------------------------------------------------------------
+
+	private StateNode getStateNode(Signal signal) {
+		Node node = getNode(signal);
+		if (!(node instanceof StateNode)) {
+			throw new IllegalArgumentException("not an input or register: " + signal);
+		}
+		return (StateNode)node;
+	}
+
+	private Node getNode(Signal signal) {
+		if (signal.getDesign() != design) {
+			throw new IllegalArgumentException("signal belongs to a different design: " + signal);
+		}
+		Node node = nodes.get(signal);
+		if (node == null) {
+			node = createNode(signal);
+			nodes.put(signal, node);
+		}
+		return node;
+	}
+
+	private static int getWidth(Signal signal) {
+		return (signal instanceof VectorSignal) ? ((VectorSignal) signal).getWidth() : 1;
+	}
+
+	private Node createNode(Signal signal) {
+
+		// connectors and simplified signals share the node of the signal they stand for
+		if (signal instanceof SignalConnector) {
+			return getNode(((SignalConnector) signal).getConnected());
+		}
+		Signal optimized = optimizer.getOptimized(signal);
+		if (optimized != signal) {
+			return getNode(optimized);
+		}
+
+		// constants, inputs and registers
+		int width = getWidth(signal);
+		if (signal instanceof BitConstant) {
+			StateNode node = new StateNode(1);
+			node.value[0] = ((BitConstant) signal).getValue() ? -1L : 0;
+			return node;
+		}
+		if (signal instanceof VectorConstant) {
+			StateNode node = new StateNode(width);
+			BitSlices.broadcast(((VectorConstant) signal).getValue(), node.value);
+			return node;
+		}
+		if (signal instanceof SimulatedSettableBitSignal || signal instanceof ProceduralBitRegister) {
+			StateNode node = new StateNode(1);
+			node.value[0] = node.next[0] = ((BitSignal) signal).getValue() ? -1L : 0;
+			return node;
+		}
+		if (signal instanceof SimulatedSettableVectorSignal || signal instanceof ProceduralVectorRegister) {
+			StateNode node = new StateNode(width);
+			BitSlices.broadcast(((VectorSignal) signal).getValue(), node.value);
+			System.arraycopy(node.value, 0, node.next, 0, width);
+			return node;
+		}
+
+		// bit operations
+		if (signal instanceof BitNotOperation) {
+			Node operand = getNode(((BitNotOperation) signal).getOperand());
+			return new Node(1) {
+				@Override
+				void compute() {
+					value[0] = ~operand.get()[0];
+				}
+			};
+		}
+		if (signal instanceof BitOperation) {
+			BitOperation operation = (BitOperation)signal;
+			Node left = getNode(operation.getLeftOperand());
+			Node right = getNode(operation.getRightOperand());
+			BitOperation.Operator operator = operation.getOperator();
+			return new Node(1) {
+				@Override
+				void compute() {
+					long x = left.get()[0];
+					long y = right.get()[0];
+					switch (operator) {
+						case AND:
+							value[0] = x & y;
+							break;
+						case OR:
+							value[0] = x | y;
+							break;
+						case XOR:
+							value[0] = x ^ y;
+							break;
+						case XNOR:
+							value[0] = ~(x ^ y);
+							break;
+						default:
+							throw new RuntimeException("unknown BitOperation.Operator: " + operator);
+					}
+				}
+			};
+		}
+
+		// vector operations
+		if (signal instanceof VectorNotOperation) {
+			Node operand = getNode(((VectorNotOperation) signal).getOperand());
+			return new Node(width) {
+				@Override
+				void compute() {
+					long[] x = operand.get();
+					for (int i = 0; i < value.length; i++) {
+						value[i] = ~x[i];
+					}
+				}
+			};
+		}
+		if (signal instanceof VectorNegateOperation) {
+			Node operand = getNode(((VectorNegateOperation) signal).getOperand());
+			long[] zero = new long[width];
+			return new Node(width) {
+				@Override
+				void compute() {
+					BitSlices.subtract(zero, operand.get(), value);
+				}
+			};
+		}
+		if (signal instanceof VectorOperation) {
+			VectorOperation operation = (VectorOperation)signal;
+			Node left = getNode(operation.getLeftOperand());
+			Node right = getNode(operation.getRightOperand());
+			VectorOperation.Operator operator = operation.getOperator();
+			return new Node(width) {
+				@Override
+				void compute() {
+					long[] x = left.get();
+					long[] y = right.get();
+					switch (operator) {
+						case ADD:
+							BitSlices.add(x, y, 0, value);
+							break;
+						case SUBTRACT:
+							BitSlices.subtract(x, y, value);
+							break;
+						case MULTIPLY:
+							BitSlices.multiply(x, y, value);
+							break;
+						case AND:
+							for (int i = 0; i < value.length; i++) {
+								value[i] = x[i] & y[i];
+							}
+							break;
+						case OR:
+							for (int i = 0; i < value.length; i++) {
+								value[i] = x[i] | y[i];
+							}
+							break;
+						case XOR:
+							for (int i = 0; i < value.length; i++) {
+								value[i] = x[i] ^ y[i];
+							}
+							break;
+						default:
+							throw new RuntimeException("unknown VectorOperation.Operator: " + operator);
+					}
+				}
+			};
+		}
+		if (signal instanceof ShiftOperation) {
+			ShiftOperation shift = (ShiftOperation)signal;
+			Node left = getNode(shift.getLeftOperand());
+			Node right = getNode(shift.getRightOperand());
+			boolean shiftLeft = (shift.getDirection() == ShiftOperation.Direction.LEFT);
+			return new Node(width) {
+				@Override
+				void compute() {
+					BitSlices.shift(left.get(), right.get(), shiftLeft, value);
+				}
+			};
+		}
+		if (signal instanceof VectorComparison) {
+			VectorComparison comparison = (VectorComparison)signal;
+			Node left = getNode(comparison.getLeftOperand());
+			Node right = getNode(comparison.getRightOperand());
+			VectorComparison.Operator operator = comparison.getOperator();
+			return new Node(1) {
+				@Override
+				void compute() {
+					long[] x = left.get();
+					long[] y = right.get();
+					switch (operator) {
+						case EQUAL:
+							value[0] = BitSlices.equal(x, y);
+							break;
+						case NOT_EQUAL:
+							value[0] = ~BitSlices.equal(x, y);
+							break;
+						case LESS_THAN:
+							value[0] = BitSlices.lessThan(x, y);
+							break;
+						case LESS_THAN_OR_EQUAL:
+							value[0] = ~BitSlices.lessThan(y, x);
+							break;
+						case GREATER_THAN:
+							value[0] = BitSlices.lessThan(y, x);
+							break;
+						case GREATER_THAN_OR_EQUAL:
+							value[0] = ~BitSlices.lessThan(x, y);
+							break;
+						default:
+							throw new RuntimeException("unknown VectorComparison.Operator: " + operator);
+					}
+				}
+			};
+		}
+
+		// multiplexers
+		if (signal instanceof ConditionalOperation) {
+			ConditionalOperation conditional = (ConditionalOperation)signal;
+			Node condition = getNode(conditional.getCondition());
+			Node onTrue = getNode(conditional.getOnTrue());
+			Node onFalse = getNode(conditional.getOnFalse());
+			return new Node(width) {
+				@Override
+				void compute() {
+					BitSlices.mux(condition.get()[0], onTrue.get(), onFalse.get(), value);
+				}
+			};
+		}
+		if (signal instanceof SwitchSignal<?>) {
+			SwitchSignal<?> switchSignal = (SwitchSignal<?>)signal;
+			Node selector = getNode(switchSignal.getSelector());
+			List<List<Vector>> caseSelectorValues = new ArrayList<>();
+			List<Node> caseBranches = new ArrayList<>();
+			for (SwitchSignal.Case<?> aCase : switchSignal.getCases()) {
+				caseSelectorValues.add(aCase.getSelectorValues());
+				caseBranches.add(getNode(aCase.getBranch()));
+			}
+			Node defaultBranch = (switchSignal.getDefaultSignal() == null) ? null :
+				getNode(switchSignal.getDefaultSignal());
+			return new Node(width) {
+				@Override
+				void compute() {
+					long[] actualSelector = selector.get();
+					if (defaultBranch == null) {
+						for (int i = 0; i < value.length; i++) {
+							value[i] = 0;
+						}
+					} else {
+						System.arraycopy(defaultBranch.get(), 0, value, 0, value.length);
+					}
+					// if a selector value appears in more than one case, the first one wins
+					long remaining = -1L;
+					for (int caseIndex = 0; caseIndex < caseBranches.size() && remaining != 0; caseIndex++) {
+						long match = 0;
+						for (Vector selectorValue : caseSelectorValues.get(caseIndex)) {
+							match |= BitSlices.equal(actualSelector, selectorValue);
+						}
+						match &= remaining;
+						if (match != 0) {
+							BitSlices.mux(match, caseBranches.get(caseIndex).get(), value, value);
+							remaining &= ~match;
+						}
+					}
+				}
+			};
+		}
+
+		// composition and selection
+		if (signal instanceof Concatenation) {
+			// the first element is the most significant one
+			List<Signal> elementSignals = ((Concatenation) signal).getSignals();
+			Node[] elements = new Node[elementSignals.size()];
+			for (int i = 0; i < elements.length; i++) {
+				elements[i] = getNode(elementSignals.get(i));
+			}
+			return new Node(width) {
+				@Override
+				void compute() {
+					int position = 0;
+					for (int i = elements.length - 1; i >= 0; i--) {
+						long[] element = elements[i].get();
+						System.arraycopy(element, 0, value, position, element.length);
+						position += element.length;
+					}
+				}
+			};
+		}
+		if (signal instanceof ConstantIndexSelection) {
+			ConstantIndexSelection selection = (ConstantIndexSelection)signal;
+			Node container = getNode(selection.getContainerSignal());
+			int index = selection.getIndex();
+			return new Node(1) {
+				@Override
+				void compute() {
+					value[0] = container.get()[index];
+				}
+			};
+		}
+		if (signal instanceof IndexSelection) {
+			IndexSelection selection = (IndexSelection)signal;
+			Node container = getNode(selection.getContainerSignal());
+			Node index = getNode(selection.getIndexSignal());
+			return new Node(1) {
+				@Override
+				void compute() {
+					long[] containerValue = container.get();
+					long[] indexValue = index.get();
+					long result = 0;
+					for (int i = 0; i < containerValue.length; i++) {
+						result |= containerValue[i] & BitSlices.equal(indexValue, i);
+					}
+					value[0] = result;
+				}
+			};
+		}
+		if (signal instanceof RangeSelection) {
+			RangeSelection selection = (RangeSelection)signal;
+			Node container = getNode(selection.getContainerSignal());
+			int to = selection.getTo();
+			return new Node(width) {
+				@Override
+				void compute() {
+					System.arraycopy(container.get(), to, value, 0, value.length);
+				}
+			};
+		}
+		if (signal instanceof BitRepetition || signal instanceof VectorRepetition ||
+				signal instanceof OneBitVectorSignal) {
+			Node element;
+			if (signal instanceof BitRepetition) {
+				element = getNode(((BitRepetition) signal).getBitSignal());
+			} else if (signal instanceof VectorRepetition) {
+				element = getNode(((VectorRepetition) signal).getVectorSignal());
+			} else {
+				element = getNode(((OneBitVectorSignal) signal).getBitSignal());
+			}
+			return new Node(width) {
+				@Override
+				void compute() {
+					long[] elementValue = element.get();
+					for (int i = 0; i < value.length; i += elementValue.length) {
+						System.arraycopy(elementValue, 0, value, i, elementValue.length);
+					}
+				}
+			};
+		}
+
+		throw new IllegalArgumentException("signal not supported by bit-sliced simulation: " + signal);
+	}
+
+	/**
+	 * A signal in bit-sliced form. The value is computed at most once between changes of the simulated state.
+	 */
+	private abstract class Node {
+
+		final long[] value;
+		private int validEpoch = -1;
+
+		Node(int width) {
+			this.value = new long[width];
+		}
+
+		long[] get() {
+			if (validEpoch != epoch) {
+				compute();
+				validEpoch = epoch;
+			}
+			return value;
+		}
+
+		abstract void compute();
+
+	}
+
+	/**
+	 * A constant, input or register. The next value is only used for registers.
+	 */
+	private final class StateNode extends Node {
+
+		final long[] next;
+
+		StateNode(int width) {
+			super(width);
+			this.next = new long[width];
+		}
+
+		@Override
+		long[] get() {
+			return value;
+		}
+
+		@Override
+		void compute() {
+		}
+
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+	// statements
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * A statement in bit-sliced form. It only has an effect in the lanes whose bit is set in the mask.
+	 */
+	private interface SlicedStatement {
+		void execute(long mask);
+	}
+
+	private SlicedStatement compileStatement(Statement statement) {
+		if (statement instanceof StatementSequence) {
+			List<Statement> elements = ((StatementSequence) statement).getStatements();
+			SlicedStatement[] compiledElements = new SlicedStatement[elements.size()];
+			for (int i = 0; i < compiledElements.length; i++) {
+				compiledElements[i] = compileStatement(elements.get(i));
+			}
+			return mask -> {
+				for (SlicedStatement element : compiledElements) {
+					element.execute(mask);
+				}
+			};
+		}
+		if (statement instanceof NopStatement) {
+			return mask -> {
+			};
+		}
+		if (statement instanceof Assignment) {
+			return compileAssignment((Assignment)statement);
+		}
+		if (statement instanceof WhenStatement) {
+			WhenStatement whenStatement = (WhenStatement)statement;
+			Node condition = getNode(whenStatement.getCondition());
+			SlicedStatement thenBranch = compileStatement(whenStatement.getThenBranch());
+			SlicedStatement otherwiseBranch = compileStatement(whenStatement.getOtherwiseBranch());
+			return mask -> {
+				long conditionValue = condition.get()[0];
+				long thenMask = mask & conditionValue;
+				long otherwiseMask = mask & ~conditionValue;
+				if (thenMask != 0) {
+					thenBranch.execute(thenMask);
+				}
+				if (otherwiseMask != 0) {
+					otherwiseBranch.execute(otherwiseMask);
+				}
+			};
+		}
+		if (statement instanceof SwitchStatement) {
+			SwitchStatement switchStatement = (SwitchStatement)statement;
+			Node selector = getNode(switchStatement.getSelector());
+			List<SwitchStatement.Case> cases = switchStatement.getCases();
+			List<SlicedStatement> caseBranches = new ArrayList<>();
+			for (SwitchStatement.Case aCase : cases) {
+				caseBranches.add(compileStatement(aCase.getBranch()));
+			}
+			SlicedStatement defaultBranch = compileStatement(switchStatement.getDefaultBranch());
+			return mask -> {
+				long[] actualSelector = selector.get();
+				long remaining = mask;
+				for (int caseIndex = 0; caseIndex < caseBranches.size() && remaining != 0; caseIndex++) {
+					long match = 0;
+					for (Vector selectorValue : cases.get(caseIndex).getSelectorValues()) {
+						match |= BitSlices.equal(actualSelector, selectorValue);
+					}
+					match &= remaining;
+					if (match != 0) {
+						caseBranches.get(caseIndex).execute(match);
+						remaining &= ~match;
+					}
+				}
+				if (remaining != 0) {
+					defaultBranch.execute(remaining);
+				}
+			};
+		}
+		throw new IllegalArgumentException("statement not supported by bit-sliced simulation: " + statement);
+	}
+
+	private SlicedStatement compileAssignment(Assignment assignment) {
+		Node source = getNode(assignment.getSource());
+		AssignmentTarget target = assignment.getAssignmentTarget();
+		if (target instanceof ProceduralRegister) {
+			StateNode register = getStateNode((ProceduralRegister)target);
+			return mask -> BitSlices.mux(mask, source.get(), register.next, register.next);
+		}
+		if (target instanceof VectorTargetConstantIndexSelection) {
+			VectorTargetConstantIndexSelection selection = (VectorTargetConstantIndexSelection)target;
+			StateNode register = getStateNode(selection.getContainerTarget());
+			int index = selection.getIndex();
+			return mask -> register.next[index] = (source.get()[0] & mask) | (register.next[index] & ~mask);
+		}
+		if (target instanceof VectorTargetRangeSelection) {
+			VectorTargetRangeSelection selection = (VectorTargetRangeSelection)target;
+			StateNode register = getStateNode(selection.getContainerTarget());
+			int to = selection.getTo();
+			return mask -> {
+				long[] sourceValue = source.get();
+				for (int i = 0; i < sourceValue.length; i++) {
+					register.next[to + i] = (sourceValue[i] & mask) | (register.next[to + i] & ~mask);
+				}
+			};
+		}
+		if (target instanceof VectorTargetIndexSelection) {
+			VectorTargetIndexSelection selection = (VectorTargetIndexSelection)target;
+			StateNode register = getStateNode(selection.getContainerTarget());
+			Node index = getNode(selection.getIndexSignal());
+			return mask -> {
+				long sourceValue = source.get()[0];
+				long[] indexValue = index.get();
+				for (int i = 0; i < register.next.length; i++) {
+					long bitMask = mask & BitSlices.equal(indexValue, i);
+					register.next[i] = (sourceValue & bitMask) | (register.next[i] & ~bitMask);
+				}
+			};
+		}
+		throw new IllegalArgumentException("assignment target not supported by bit-sliced simulation: " + target);
+	}
+
+}
@@ -0,0 +1,185 @@
+package name.martingeisse.esdk.core.tools.simulation;
+
+import name.martingeisse.esdk.core.util.vector.Vector;
+
+/**
+ * Operations on bit-sliced values as used by {@link BitSlicedSimulation}. A bit-sliced value of width n is an array of
+ * n longs; element i contains bit i of the value for all 64 lanes, with lane j in bit j of the long. All operations
+ * therefore work on 64 independent values at once.
+ *
+ * Result arrays may be the same as operand arrays only where noted.
+ */
+final class BitSlices {
+
+	// prevent instantiation
+	private BitSlices() {
+	}
+
+	/**
+	 * Sets each lane to the constant value.
+	 */
+	static void broadcast(Vector value, long[] result) {
+		for (int i = 0; i < result.length; i++) {
+			result[i] = value.select(i) ? -1L : 0;
+		}
+	}
+
+	/**
+	 * Selects onTrue for lanes whose bit in the condition is set and onFalse for all other lanes. The result may be
+	 * the same array as either operand.
+	 */
+	static void mux(long condition, long[] onTrue, long[] onFalse, long[] result) {
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (onTrue[i] & condition) | (onFalse[i] & ~condition);
+		}
+	}
+
+	/**
+	 * Adds the operands and a carry-in (per lane), returning the carry-out. The result may be the same array as
+	 * either operand.
+	 */
+	static long add(long[] a, long[] b, long carry, long[] result) {
+		for (int i = 0; i < result.length; i++) {
+			long x = a[i];
+			long y = b[i];
+			result[i] = x ^ y ^ carry;
+			carry = (x & y) | (carry & (x ^ y));
+		}
+		return carry;
+	}
+
+	/**
+	 * Subtracts b from a, computed as a + ~b + 1. The result may be the same array as either operand.
+	 */
+	static void subtract(long[] a, long[] b, long[] result) {
+		long carry = -1L;
+		for (int i = 0; i < result.length; i++) {
+			long x = a[i];
+			long y = ~b[i];
+			result[i] = x ^ y ^ carry;
+			carry = (x & y) | (carry & (x ^ y));
+		}
+	}
+
+	/**
+	 * Multiplies the operands by adding a shifted copy of a for each bit of b. The result must be a separate array.
+	 */
+	static void multiply(long[] a, long[] b, long[] result) {
+		for (int i = 0; i < result.length; i++) {
+			result[i] = 0;
+		}
+		for (int j = 0; j < result.length; j++) {
+			long select = b[j];
+			if (select == 0) {
+				continue;
+			}
+			long carry = 0;
+			for (int i = j; i < result.length; i++) {
+				long x = result[i];
+				long y = a[i - j] & select;
+				result[i] = x ^ y ^ carry;
+				carry = (x & y) | (carry & (x ^ y));
+			}
+		}
+	}
+
+	/**
+	 * Shifts the value left or right by a per-lane amount, using one multiplexer stage per bit of the amount. Bits
+	 * shifted in are zero. The result must be a separate array.
+	 */
+	static void shift(long[] value, long[] amount, boolean left, long[] result) {
+		System.arraycopy(value, 0, result, 0, result.length);
+		for (int stage = 0; stage < amount.length; stage++) {
+			long select = amount[stage];
+			if (select == 0) {
+				continue;
+			}
+			int distance = (stage < 31) ? (1 << stage) : Integer.MAX_VALUE;
+			if (left) {
+				for (int i = result.length - 1; i >= 0; i--) {
+					long shifted = (i >= distance) ? result[i - distance] : 0;
+					result[i] = (shifted & select) | (result[i] & ~select);
+				}
+			} else {
+				for (int i = 0; i < result.length; i++) {
+					long shifted = (i < result.length - distance) ? result[i + distance] : 0;
+					result[i] = (shifted & select) | (result[i] & ~select);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the lanes in which a equals b.
+	 */
+	static long equal(long[] a, long[] b) {
+		long result = -1L;
+		for (int i = 0; i < a.length; i++) {
+			result &= ~(a[i] ^ b[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the lanes in which the value equals the constant.
+	 */
+	static long equal(long[] a, Vector constant) {
+		long result = -1L;
+		for (int i = 0; i < a.length; i++) {
+			result &= constant.select(i) ? a[i] : ~a[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the lanes in which the value equals the constant. Bits of the constant beyond the width of the value
+	 * must be zero for a match.
+	 */
+	static long equal(long[] a, int constant) {
+		if (a.length < 32 && (constant >>> a.length) != 0) {
+			return 0;
+		}
+		long result = -1L;
+		for (int i = 0; i < a.length; i++) {
+			boolean bit = (i < 32) && ((constant >>> i) & 1) != 0;
+			result &= bit ? a[i] : ~a[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the lanes in which a is less than b, treating both as unsigned. This is the inverse of the carry-out
+	 * of a - b.
+	 */
+	static long lessThan(long[] a, long[] b) {
+		long carry = -1L;
+		for (int i = 0; i < a.length; i++) {
+			long x = a[i];
+			long y = ~b[i];
+			carry = (x & y) | (carry & (x ^ y));
+		}
+		return ~carry;
+	}
+
+	/**
+	 * Extracts the value of a single lane.
+	 */
+	static Vector getLane(long[] value, int lane) {
+		long[] words = new long[(value.length + 63) / 64];
+		for (int i = 0; i < value.length; i++) {
+			words[i >>> 6] |= ((value[i] >>> lane) & 1) << (i & 63);
+		}
+		return Vector.fromWords(value.length, words);
+	}
+
+	/**
+	 * Replaces the value of a single lane.
+	 */
+	static void setLane(long[] value, int lane, Vector laneValue) {
+		long mask = 1L << lane;
+		for (int i = 0; i < value.length; i++) {
+			value[i] = laneValue.select(i) ? (value[i] | mask) : (value[i] & ~mask);
+		}
+	}
+
+}
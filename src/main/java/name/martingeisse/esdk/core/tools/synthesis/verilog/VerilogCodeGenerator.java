@@ -12,6 +12,7 @@ import name.martingeisse.esdk.core.library.signal.BitSignal;
 import name.martingeisse.esdk.core.library.signal.Signal;
 import name.martingeisse.esdk.core.library.signal.VectorSignal;
 import name.martingeisse.esdk.core.library.signal.connector.SignalConnector;
+import name.martingeisse.esdk.core.tools.optimization.SignalOptimizer;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.contribution.VerilogContribution;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.FakeVerilogExpressionWriter;
 import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExpressionNesting;
@@ -20,6 +21,7 @@ import name.martingeisse.esdk.core.util.AbsoluteNames;
 
 import java.io.Writer;
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * Generates the contents of the main Verilog file.
@@ -46,7 +48,12 @@ public class VerilogCodeGenerator {
 		};
 		this.toplevelModuleName = toplevelModuleName;
 		this.auxiliaryFileFactory = auxiliaryFileFactory;
-		this.names = new VerilogNames(new AbsoluteNames(ImplicitGlobalDesign.getOrFail()));
+		// Construction must be finalized before naming items if simplifying signals may add new constants.
+		Design design = ImplicitGlobalDesign.getOrFail();
+		if (design.isSignalOptimizationEnabled()) {
+			design.finalizeConstruction();
+		}
+		this.names = new VerilogNames(new AbsoluteNames(design));
 	}
 
 	public void generate() {
@@ -56,12 +63,15 @@ public class VerilogCodeGenerator {
 		design.finalizeConstruction();
 
 		// collect contributions from all items
+		SignalOptimizer optimizer = design.getSignalOptimizer();
+		List<DesignItem> contributingItems = new ArrayList<>();
 		List<VerilogContribution> contributions = new ArrayList<>();
 		for (DesignItem item : design.getItems()) {
 			VerilogContribution contribution = item.getVerilogContribution();
 			if (contribution == null) {
 				throw new RuntimeException("Got null verilog contribution which is not allowed; item = " + item);
 			}
+			contributingItems.add(item);
 			contributions.add(contribution);
 		}
 
@@ -106,10 +116,11 @@ public class VerilogCodeGenerator {
 				contribution.prepareSynthesis(synthesisPreparationContext);
 			}
 		}
+		final Set<Signal> explicitlyDeclaredSignals = new HashSet<>(signalDeclarations.keySet());
 
 		// Analyze all signals for shared usage. These signals will be declared too.
+		final Set<Signal> analyzedSignals = new HashSet<>();
 		{
-			final Set<Signal> analyzedSignals = new HashSet<>();
 			SignalUsageConsumer signalUsageConsumer = new SignalUsageConsumer() {
 
 				final VerilogExpressionWriter fakeExpressionWriter = new FakeVerilogExpressionWriter() {
@@ -138,6 +149,11 @@ public class VerilogCodeGenerator {
 						signal = ((SignalConnector) signal).getConnected();
 					}
 
+					// use the simplified signal, except for signals that must be declared as they are
+					if (signalDeclarations.get(signal) == null) {
+						signal = optimizer.getOptimized(signal);
+					}
+
 					// Extract all signals that are used in more than one place. Those have been analyzed already when we found them
 					// the first time.
 					if (!analyzedSignals.add(signal)) {
@@ -175,6 +191,21 @@ public class VerilogCodeGenerator {
 			}
 		}
 
+		// Drop combinational logic that is not used anymore because it got simplified away. Other signals have
+		// been analyzed by now if they are used at all. Signals that have been named or declared explicitly are kept.
+		if (design.isSignalOptimizationEnabled()) {
+			Predicate<Signal> unused = signal -> isUnusedLogic(signal, analyzedSignals, explicitlyDeclaredSignals);
+			List<VerilogContribution> usedContributions = new ArrayList<>();
+			for (int i = 0; i < contributions.size(); i++) {
+				DesignItem item = contributingItems.get(i);
+				if (!(item instanceof Signal) || !unused.test((Signal) item)) {
+					usedContributions.add(contributions.get(i));
+				}
+			}
+			contributions = usedContributions;
+			signalDeclarations.keySet().removeIf(unused);
+		}
+
 		// consume toplevel ports
 		List<ToplevelPortContribution> toplevelPorts = new ArrayList<>();
 		for (VerilogContribution contribution : contributions) {
@@ -257,6 +288,11 @@ public class VerilogCodeGenerator {
 
 	}
 
+	private static boolean isUnusedLogic(Signal signal, Set<Signal> analyzedSignals, Set<Signal> explicitlyDeclaredSignals) {
+		return SignalOptimizer.isRemovableIfUnused(signal) && signal.getDesignItem().getName() == null &&
+			!explicitlyDeclaredSignals.contains(signal) && !analyzedSignals.contains(signal);
+	}
+
 	public VerilogNames getNames() {
 		return names;
 	}
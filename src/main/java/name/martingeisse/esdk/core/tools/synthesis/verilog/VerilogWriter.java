@@ -70,7 +70,7 @@ public abstract class VerilogWriter extends PrintWriter {
 	/**
 	 * Prints the expression to use for a signal at a point where the signal gets used. This either prints
 	 * the signal name or the implementing expression, based on whether a declaration for the signal is
-	 * available.
+	 * available. Signals without a declaration are replaced by their simplified signal first.
 	 *
 	 * Unlike VerilogExpressionWriter, this method does not take the nesting of the signal as a parameter.
 	 * In fact, while printing the output, the nesting cannot be taken into account at all -- wrong nesting
@@ -89,6 +89,11 @@ public abstract class VerilogWriter extends PrintWriter {
 		}
 		String name = getNameOrNull(signal.getDesignItem());
 		if (name == null) {
+			Signal optimized = signal.getDesignItem().getDesign().getSignalOptimizer().getOptimized(signal);
+			if (optimized != signal) {
+				printSignal(optimized);
+				return;
+			}
 			printImplementationExpression(signal);
 		} else {
 			print(name);
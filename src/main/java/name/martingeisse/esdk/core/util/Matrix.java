@@ -11,37 +11,83 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.regex.Pattern;
 
 /**
  * A mutable bit matrix. This is basically a mutable fixed-size array of {@link Vector}s which all have the same
  * pre-configured width. Access happens in rows, not individual bits.
+ *
+ * Rows of up to 64 bits are stored in a byte, short, int or long array, depending on the column count, so large
+ * memories do not need an object per row. For such matrices, {@link #getRowAsLong(int)} and
+ * {@link #setRowFromLong(int, long)} access rows without constructing a {@link Vector}. {@link #getRow(int)} keeps the
+ * vectors of recently used rows in a small cache, so it only constructs a vector when the row was not used recently.
+ * Wider rows are stored as {@link Vector} objects.
+ *
+ * A sparse matrix (see {@link #createSparse(int, int, Vector)}) is meant for huge, mostly unused address spaces. It
+ * divides its rows into pages of 4096 rows and only allocates a page when a row in it gets set to a value other than
+ * the fill value; the rows of other pages show the fill value. Code that visits the whole matrix should use
+ * {@link #forEachPopulatedRowRange(RowRangeConsumer)} to skip the pages that have not been allocated.
  */
 public final class Matrix {
 
+	/**
+	 * The maximum number of rows of a sparse matrix that can be written by {@link #writeToMif(PrintWriter)}.
+	 */
+	public static final int MAX_SPARSE_MIF_ROW_COUNT = 1 << 20;
+
 	private static final Pattern MATRIX_FILE_ROW_PATTERN = Pattern.compile("[0-9a-fA-F]+");
 
 	private final int rowCount;
 	private final int columnCount;
-	private final Vector[] rows;
-	private final Vector defaultRowValue;
+	private final MatrixStorage storage;
+	private final Vector fillValue;
+	private long modificationCount;
 
 	public Matrix(int rowCount, int columnCount) {
 		this(rowCount, columnCount, Vector.of(columnCount, 0));
 	}
 
 	public Matrix(int rowCount, int columnCount, Vector fillValue) {
+		if (fillValue.getWidth() != columnCount) {
+			throw new IllegalArgumentException("fill value has wrong width " + fillValue.getWidth() + ", expected " + columnCount);
+		}
 		this.rowCount = rowCount;
 		this.columnCount = columnCount;
-		this.rows = new Vector[rowCount];
-		this.defaultRowValue = fillValue;
+		this.storage = MatrixStorage.create(rowCount, columnCount, fillValue);
+		this.fillValue = fillValue;
 	}
 
 	@SuppressWarnings("CopyConstructorMissesField")
 	public Matrix(Matrix other) {
-		this(other.rowCount, other.columnCount, other.defaultRowValue);
-		System.arraycopy(other.rows, 0, this.rows, 0, rowCount);
+		this.rowCount = other.rowCount;
+		this.columnCount = other.columnCount;
+		this.storage = other.storage.copy();
+		this.fillValue = other.fillValue;
+	}
+
+	private Matrix(int rowCount, int columnCount, MatrixStorage storage, Vector fillValue) {
+		this.rowCount = rowCount;
+		this.columnCount = columnCount;
+		this.storage = storage;
+		this.fillValue = fillValue;
+	}
+
+	/**
+	 * Creates a sparse matrix filled with zeros.
+	 */
+	public static Matrix createSparse(int rowCount, int columnCount) {
+		return createSparse(rowCount, columnCount, Vector.of(columnCount, 0));
+	}
+
+	/**
+	 * Creates a sparse matrix filled with the specified value. Only the pages that get set to other values occupy
+	 * memory.
+	 */
+	public static Matrix createSparse(int rowCount, int columnCount, Vector fillValue) {
+		if (fillValue.getWidth() != columnCount) {
+			throw new IllegalArgumentException("fill value has wrong width " + fillValue.getWidth() + ", expected " + columnCount);
+		}
+		return new Matrix(rowCount, columnCount, MatrixStorage.createSparse(rowCount, columnCount, fillValue), fillValue);
 	}
 
 	public int getRowCount() {
@@ -52,6 +98,17 @@ public final class Matrix {
 		return columnCount;
 	}
 
+	/**
+	 * Returns the value that all rows had when this matrix was created.
+	 */
+	public Vector getFillValue() {
+		return fillValue;
+	}
+
+	public boolean isSparse() {
+		return storage.isSparse();
+	}
+
 	private void checkRowIndex(int rowIndex) {
 		if (rowIndex < 0 || rowIndex >= rowCount) {
 			throw new IllegalArgumentException("invalid row index " + rowIndex + " for row count " + rowCount);
@@ -66,8 +123,7 @@ public final class Matrix {
 
 	public Vector getRow(int rowIndex) {
 		checkRowIndex(rowIndex);
-		Vector row = rows[rowIndex];
-		return (row == null ? defaultRowValue : row);
+		return storage.getRow(rowIndex);
 	}
 
 	public void setRow(int rowIndex, Vector row) {
@@ -78,7 +134,8 @@ public final class Matrix {
 		if (row.getWidth() != columnCount) {
 			throw new IllegalArgumentException("row has wrong width " + row.getWidth() + ", expected " + columnCount);
 		}
-		rows[rowIndex] = row;
+		storage.setRow(rowIndex, row);
+		modificationCount++;
 	}
 
 	public void setRows(int fromRowIndex, int toRowIndex, Vector row) {
@@ -89,21 +146,86 @@ public final class Matrix {
 		if (row.getWidth() != columnCount) {
 			throw new IllegalArgumentException("row has wrong width " + row.getWidth() + ", expected " + columnCount);
 		}
-		Arrays.fill(rows, fromRowIndex, toRowIndex, row);
+		storage.setRows(fromRowIndex, toRowIndex, row);
+		modificationCount++;
 	}
 
+	/**
+	 * Returns the bits of a row as a long, like {@link Vector#getAsSignedLong()}. The matrix must have at most 64
+	 * columns.
+	 */
+	public long getRowAsLong(int rowIndex) {
+		checkRowIndex(rowIndex);
+		return storage.getRowAsLong(rowIndex);
+	}
+
+	/**
+	 * Sets a row from its bits, which must not have any bits set beyond the column count. The matrix must have at
+	 * most 64 columns.
+	 */
+	public void setRowFromLong(int rowIndex, long value) {
+		checkRowIndex(rowIndex);
+		if (columnCount < 64 && (value >>> columnCount) != 0) {
+			throw new IllegalArgumentException("row value " + Long.toHexString(value) + " has more than " + columnCount + " bits");
+		}
+		storage.setRowFromLong(rowIndex, value);
+		modificationCount++;
+	}
+
+	/**
+	 * Returns a counter that gets incremented whenever rows of this matrix are set. This allows code that watches the
+	 * contents, such as activity-driven simulation, to detect changes made through this object.
+	 */
+	public long getModificationCount() {
+		return modificationCount;
+	}
+
+	/**
+	 * Checks whether the specified row lies in a populated part of this matrix. Rows outside of it contain the fill
+	 * value. All rows of a matrix that is not sparse are populated.
+	 */
+	public boolean isRowPopulated(int rowIndex) {
+		checkRowIndex(rowIndex);
+		return storage.isRowPopulated(rowIndex);
+	}
+
+	/**
+	 * Calls the consumer for each range of populated rows (see {@link #isRowPopulated(int)}), in ascending order. For
+	 * a matrix that is not sparse, this is a single range with all rows. For a sparse matrix, these are the allocated
+	 * pages, with adjacent pages merged into a single range.
+	 */
+	public void forEachPopulatedRowRange(RowRangeConsumer consumer) {
+		storage.forEachPopulatedRowRange(consumer);
+	}
+
+	/**
+	 * Writes the rows in the hex format understood by $readmemh. That format cannot express a default value, so all
+	 * rows are written, and the rows of a sparse matrix that have not been populated get the fill value. Only the
+	 * populated rows are visited to do so, but since the output is not sparse, a sparse matrix must not have more than
+	 * {@link #MAX_SPARSE_MIF_ROW_COUNT} rows.
+	 */
 	public void writeToMif(PrintWriter out) {
+		if (storage.isSparse() && rowCount > MAX_SPARSE_MIF_ROW_COUNT) {
+			throw new IllegalStateException("cannot write a sparse matrix with " + rowCount + " rows as MIF, the maximum is " + MAX_SPARSE_MIF_ROW_COUNT);
+		}
 		int matrixDigitCount = (columnCount + 3) / 4;
 		String allZeros = StringUtils.repeat('0', matrixDigitCount);
-		for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
-			Vector row = rows[rowIndex];
-			if (row == null) {
-				row = defaultRowValue;
+		String fillDigits = fillValue.getDigits();
+		String fillLine = allZeros.substring(fillDigits.length()) + fillDigits;
+		int[] nextRowIndex = {0};
+		storage.forEachPopulatedRowRange((fromRowIndex, toRowIndex) -> {
+			for (int rowIndex = nextRowIndex[0]; rowIndex < fromRowIndex; rowIndex++) {
+				out.println(fillLine);
+			}
+			for (int rowIndex = fromRowIndex; rowIndex < toRowIndex; rowIndex++) {
+				String digits = storage.getRow(rowIndex).getDigits();
+				out.print(allZeros.substring(digits.length()));
+				out.println(digits);
 			}
-			String digits = row.getDigits();
-			String zeros = allZeros.substring(digits.length());
-			out.print(zeros);
-			out.println(digits);
+			nextRowIndex[0] = toRowIndex;
+		});
+		for (int rowIndex = nextRowIndex[0]; rowIndex < rowCount; rowIndex++) {
+			out.println(fillLine);
 		}
 	}
 
@@ -194,4 +316,12 @@ public final class Matrix {
 		return matrix;
 	}
 
+	/**
+	 * Receives a range of rows, with the end index being exclusive.
+	 */
+	@FunctionalInterface
+	public interface RowRangeConsumer {
+		void consume(int fromRowIndex, int toRowIndex);
+	}
+
 }
@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2018 Martin Geisse
+ * This file is distributed under the terms of the MIT license.
+ */
+package name.martingeisse.esdk.core.util;
+
+import name.martingeisse.esdk.core.util.vector.Vector;
+
+import java.util.Arrays;
+
+/**
+ * The rows of a {@link Matrix}. Rows of up to 64 bits are stored in the smallest primitive array that can hold them,
+ * so a matrix does not need an object per row. Wider rows are stored as {@link Vector} objects.
+ *
+ * A sparse storage divides the rows into pages of {@link #SPARSE_PAGE_SIZE} rows and only allocates a page, using one
+ * of the above storages, when a value other than the fill value gets written to it.
+ *
+ * Range checks and the modification count are handled by the matrix. Values passed to the storage have the column
+ * count of the matrix, and values stored in primitive arrays have all bits above the column count cleared.
+ */
+abstract class MatrixStorage {
+
+	static final int SPARSE_PAGE_SHIFT = 12;
+	static final int SPARSE_PAGE_SIZE = 1 << SPARSE_PAGE_SHIFT;
+
+	final int rowCount;
+	final int columnCount;
+
+	MatrixStorage(int rowCount, int columnCount) {
+		this.rowCount = rowCount;
+		this.columnCount = columnCount;
+	}
+
+	/**
+	 * Creates a storage with all rows set to the fill value.
+	 */
+	static MatrixStorage create(int rowCount, int columnCount, Vector fillValue) {
+		if (columnCount > 64) {
+			return new VectorArrayStorage(rowCount, columnCount, fillValue);
+		}
+		PrimitiveArrayStorage storage;
+		if (columnCount <= 8) {
+			storage = new ByteArrayStorage(rowCount, columnCount);
+		} else if (columnCount <= 16) {
+			storage = new ShortArrayStorage(rowCount, columnCount);
+		} else if (columnCount <= 32) {
+			storage = new IntArrayStorage(rowCount, columnCount);
+		} else {
+			storage = new LongArrayStorage(rowCount, columnCount);
+		}
+		long fillBits = fillValue.getAsSignedLong();
+		if (fillBits != 0) {
+			storage.setRowsFromLong(0, rowCount, fillBits);
+		}
+		return storage;
+	}
+
+	/**
+	 * Creates a sparse storage in which no page has been allocated yet, so all rows show the fill value.
+	 */
+	static MatrixStorage createSparse(int rowCount, int columnCount, Vector fillValue) {
+		return new SparseStorage(rowCount, columnCount, fillValue);
+	}
+
+	abstract Vector getRow(int rowIndex);
+
+	abstract void setRow(int rowIndex, Vector row);
+
+	abstract void setRows(int fromRowIndex, int toRowIndex, Vector row);
+
+	abstract long getRowAsLong(int rowIndex);
+
+	abstract void setRowFromLong(int rowIndex, long value);
+
+	abstract MatrixStorage copy();
+
+	boolean isSparse() {
+		return false;
+	}
+
+	/**
+	 * Checks whether the row may contain a value other than the fill value. This is true for all rows unless the
+	 * storage is sparse.
+	 */
+	boolean isRowPopulated(int rowIndex) {
+		return true;
+	}
+
+	/**
+	 * Calls the consumer for the ranges of rows that may contain values other than the fill value, in ascending
+	 * order. Unless the storage is sparse, this is a single range with all rows.
+	 */
+	void forEachPopulatedRowRange(Matrix.RowRangeConsumer consumer) {
+		if (rowCount > 0) {
+			consumer.consume(0, rowCount);
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+	// rows of up to 64 bits
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * The vectors for the most recently read or written rows are kept in a small direct-mapped cache, so reading an
+	 * unchanged row again, as simulation of a register file does, usually does not allocate a new vector. The cache has
+	 * a fixed size, so the matrix does not end up with a vector per row. Writing a row replaces or drops its cached
+	 * vector, so the cache never needs to be checked against the array.
+	 *
+	 * Rows may be read by several threads at once, such as by memory read ports during the parallel computeNextState()
+	 * phase. Each cache slot therefore holds a single immutable entry with both the row index and the vector, which is
+	 * read only once per lookup, so a thread never combines the index of one entry with the vector of another. Racing
+	 * reads may replace each other's entries, which only costs a cache miss.
+	 */
+	private static abstract class PrimitiveArrayStorage extends MatrixStorage {
+
+		private static final int ROW_VECTOR_CACHE_SIZE = 64;
+
+		private final CachedRow[] cachedRows = new CachedRow[ROW_VECTOR_CACHE_SIZE];
+
+		PrimitiveArrayStorage(int rowCount, int columnCount) {
+			super(rowCount, columnCount);
+		}
+
+		@Override
+		Vector getRow(int rowIndex) {
+			int slot = rowIndex & (ROW_VECTOR_CACHE_SIZE - 1);
+			CachedRow cachedRow = cachedRows[slot];
+			if (cachedRow != null && cachedRow.rowIndex == rowIndex) {
+				return cachedRow.row;
+			}
+			Vector row = Vector.of(columnCount, getRowAsLong(rowIndex));
+			cachedRows[slot] = new CachedRow(rowIndex, row);
+			return row;
+		}
+
+		@Override
+		final void setRow(int rowIndex, Vector row) {
+			setBits(rowIndex, row.getAsSignedLong());
+			cachedRows[rowIndex & (ROW_VECTOR_CACHE_SIZE - 1)] = new CachedRow(rowIndex, row);
+		}
+
+		@Override
+		final void setRows(int fromRowIndex, int toRowIndex, Vector row) {
+			fillBits(fromRowIndex, toRowIndex, row.getAsSignedLong());
+			dropCachedRows(fromRowIndex, toRowIndex);
+		}
+
+		@Override
+		final void setRowFromLong(int rowIndex, long value) {
+			setBits(rowIndex, value);
+			int slot = rowIndex & (ROW_VECTOR_CACHE_SIZE - 1);
+			CachedRow cachedRow = cachedRows[slot];
+			if (cachedRow != null && cachedRow.rowIndex == rowIndex) {
+				cachedRows[slot] = null;
+			}
+		}
+
+		final void setRowsFromLong(int fromRowIndex, int toRowIndex, long value) {
+			fillBits(fromRowIndex, toRowIndex, value);
+			dropCachedRows(fromRowIndex, toRowIndex);
+		}
+
+		private void dropCachedRows(int fromRowIndex, int toRowIndex) {
+			for (int slot = 0; slot < ROW_VECTOR_CACHE_SIZE; slot++) {
+				CachedRow cachedRow = cachedRows[slot];
+				if (cachedRow != null && cachedRow.rowIndex >= fromRowIndex && cachedRow.rowIndex < toRowIndex) {
+					cachedRows[slot] = null;
+				}
+			}
+		}
+
+		abstract void setBits(int rowIndex, long value);
+
+		abstract void fillBits(int fromRowIndex, int toRowIndex, long value);
+
+	}
+
+	private static final class CachedRow {
+
+		private final int rowIndex;
+		private final Vector row;
+
+		CachedRow(int rowIndex, Vector row) {
+			this.rowIndex = rowIndex;
+			this.row = row;
+		}
+
+	}
+
+	private static final class ByteArrayStorage extends PrimitiveArrayStorage {
+
+		private final byte[] rows;
+
+		ByteArrayStorage(int rowCount, int columnCount) {
+			super(rowCount, columnCount);
+			this.rows = new byte[rowCount];
+		}
+
+		private ByteArrayStorage(ByteArrayStorage original) {
+			super(original.rowCount, original.columnCount);
+			this.rows = original.rows.clone();
+		}
+
+		@Override
+		Vector getRow(int rowIndex) {
+			// vectors of up to 8 bits are shared instances, so there is nothing to cache
+			return Vector.of(columnCount, getRowAsLong(rowIndex));
+		}
+
+		@Override
+		long getRowAsLong(int rowIndex) {
+			return rows[rowIndex] & 0xffL;
+		}
+
+		@Override
+		void setBits(int rowIndex, long value) {
+			rows[rowIndex] = (byte) value;
+		}
+
+		@Override
+		void fillBits(int fromRowIndex, int toRowIndex, long value) {
+			Arrays.fill(rows, fromRowIndex, toRowIndex, (byte) value);
+		}
+
+		@Override
+		MatrixStorage copy() {
+			return new ByteArrayStorage(this);
+		}
+
+	}
+
+	private static final class ShortArrayStorage extends PrimitiveArrayStorage {
+
+		private final short[] rows;
+
+		ShortArrayStorage(int rowCount, int columnCount) {
+			super(rowCount, columnCount);
+			this.rows = new short[rowCount];
+		}
+
+		private ShortArrayStorage(ShortArrayStorage original) {
+			super(original.rowCount, original.columnCount);
+			this.rows = original.rows.clone();
+		}
+
+		@Override
+		long getRowAsLong(int rowIndex) {
+			return rows[rowIndex] & 0xffffL;
+		}
+
+		@Override
+		void setBits(int rowIndex, long value) {
+			rows[rowIndex] = (short) value;
+		}
+
+		@Override
+		void fillBits(int fromRowIndex, int toRowIndex, long value) {
+			Arrays.fill(rows, fromRowIndex, toRowIndex, (short) value);
+		}
+
+		@Override
+		MatrixStorage copy() {
+			return new ShortArrayStorage(this);
+		}
+
+	}
+
+	private static final class IntArrayStorage extends PrimitiveArrayStorage {
+
+		private final int[] rows;
+
+		IntArrayStorage(int rowCount, int columnCount) {
+			super(rowCount, columnCount);
+			this.rows = new int[rowCount];
+		}
+
+		private IntArrayStorage(IntArrayStorage original) {
+			super(original.rowCount, original.columnCount);
+			this.rows = original.rows.clone();
+		}
+
+		@Override
+		long getRowAsLong(int rowIndex) {
+			return rows[rowIndex] & 0xffffffffL;
+		}
+
+		@Override
+		void setBits(int rowIndex, long value) {
+			rows[rowIndex] = (int) value;
+		}
+
+		@Override
+		void fillBits(int fromRowIndex, int toRowIndex, long value) {
+			Arrays.fill(rows, fromRowIndex, toRowIndex, (int) value);
+		}
+
+		@Override
+		MatrixStorage copy() {
+			return new IntArrayStorage(this);
+		}
+
+	}
+
+	private static final class LongArrayStorage extends PrimitiveArrayStorage {
+
+		private final long[] rows;
+
+		LongArrayStorage(int rowCount, int columnCount) {
+			super(rowCount, columnCount);
+			this.rows = new long[rowCount];
+		}
+
+		private LongArrayStorage(LongArrayStorage original) {
+			super(original.rowCount, original.columnCount);
+			this.rows = original.rows.clone();
+		}
+
+		@Override
+		long getRowAsLong(int rowIndex) {
+			return rows[rowIndex];
+		}
+
+		@Override
+		void setBits(int rowIndex, long value) {
+			rows[rowIndex] = value;
+		}
+
+		@Override
+		void fillBits(int fromRowIndex, int toRowIndex, long value) {
+			Arrays.fill(rows, fromRowIndex, toRowIndex, value);
+		}
+
+		@Override
+		MatrixStorage copy() {
+			return new LongArrayStorage(this);
+		}
+
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+	// wider rows
+	// ----------------------------------------------------------------------------------------------------------------
+
+	private static final class VectorArrayStorage extends MatrixStorage {
+
+		private final Vector[] rows;
+		private final Vector defaultRowValue;
+
+		VectorArrayStorage(int rowCount, int columnCount, Vector defaultRowValue) {
+			super(rowCount, columnCount);
+			this.rows = new Vector[rowCount];
+			this.defaultRowValue = defaultRowValue;
+		}
+
+		private VectorArrayStorage(VectorArrayStorage original) {
+			super(original.rowCount, original.columnCount);
+			this.rows = original.rows.clone();
+			this.defaultRowValue = original.defaultRowValue;
+		}
+
+		@Override
+		Vector getRow(int rowIndex) {
+			Vector row = rows[rowIndex];
+			return (row == null ? defaultRowValue : row);
+		}
+
+		@Override
+		void setRow(int rowIndex, Vector row) {
+			rows[rowIndex] = row;
+		}
+
+		@Override
+		void setRows(int fromRowIndex, int toRowIndex, Vector row) {
+			Arrays.fill(rows, fromRowIndex, toRowIndex, row);
+		}
+
+		@Override
+		long getRowAsLong(int rowIndex) {
+			throw new IllegalStateException("cannot return the rows of a matrix with " + columnCount + " columns as long");
+		}
+
+		@Override
+		void setRowFromLong(int rowIndex, long value) {
+			throw new IllegalStateException("cannot set the rows of a matrix with " + columnCount + " columns from a long");
+		}
+
+		@Override
+		MatrixStorage copy() {
+			return new VectorArrayStorage(this);
+		}
+
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+	// sparse storage
+	// ----------------------------------------------------------------------------------------------------------------
+
+	private static final class SparseStorage extends MatrixStorage {
+
+		private final Vector fillValue;
+		private final MatrixStorage[] pages;
+
+		SparseStorage(int rowCount, int columnCount, Vector fillValue) {
+			super(rowCount, columnCount);
+			this.fillValue = fillValue;
+			this.pages = new MatrixStorage[(int) (((long) rowCount + SPARSE_PAGE_SIZE - 1) >>> SPARSE_PAGE_SHIFT)];
+		}
+
+		private SparseStorage(SparseStorage original) {
+			super(original.rowCount, original.columnCount);
+			this.fillValue = original.fillValue;
+			this.pages = new MatrixStorage[original.pages.length];
+			for (int i = 0; i < pages.length; i++) {
+				if (original.pages[i] != null) {
+					pages[i] = original.pages[i].copy();
+				}
+			}
+		}
+
+		private MatrixStorage getOrCreatePage(int pageIndex) {
+			MatrixStorage page = pages[pageIndex];
+			if (page == null) {
+				int pageRowCount = Math.min(SPARSE_PAGE_SIZE, rowCount - (pageIndex << SPARSE_PAGE_SHIFT));
+				page = create(pageRowCount, columnCount, fillValue);
+				pages[pageIndex] = page;
+			}
+			return page;
+		}
+
+		@Override
+		Vector getRow(int rowIndex) {
+			MatrixStorage page = pages[rowIndex >>> SPARSE_PAGE_SHIFT];
+			return (page == null ? fillValue : page.getRow(rowIndex & (SPARSE_PAGE_SIZE - 1)));
+		}
+
+		@Override
+		void setRow(int rowIndex, Vector row) {
+			int pageIndex = rowIndex >>> SPARSE_PAGE_SHIFT;
+			if (pages[pageIndex] != null || !row.equals(fillValue)) {
+				getOrCreatePage(pageIndex).setRow(rowIndex & (SPARSE_PAGE_SIZE - 1), row);
+			}
+		}
+
+		@Override
+		void setRows(int fromRowIndex, int toRowIndex, Vector row) {
+			int rowIndex = fromRowIndex;
+			while (rowIndex < toRowIndex) {
+				int pageIndex = rowIndex >>> SPARSE_PAGE_SHIFT;
+				int pageStart = pageIndex << SPARSE_PAGE_SHIFT;
+				int pageEnd = (int) Math.min((long) pageStart + SPARSE_PAGE_SIZE, toRowIndex);
+				if (pages[pageIndex] != null || !row.equals(fillValue)) {
+					getOrCreatePage(pageIndex).setRows(rowIndex - pageStart, pageEnd - pageStart, row);
+				}
+				rowIndex = pageEnd;
+			}
+		}
+
+		@Override
+		long getRowAsLong(int rowIndex) {
+			MatrixStorage page = pages[rowIndex >>> SPARSE_PAGE_SHIFT];
+			if (page == null) {
+				if (columnCount > 64) {
+					throw new IllegalStateException("cannot return the rows of a matrix with " + columnCount + " columns as long");
+				}
+				return fillValue.getAsSignedLong();
+			}
+			return page.getRowAsLong(rowIndex & (SPARSE_PAGE_SIZE - 1));
+		}
+
+		@Override
+		void setRowFromLong(int rowIndex, long value) {
+			if (columnCount > 64) {
+				throw new IllegalStateException("cannot set the rows of a matrix with " + columnCount + " columns from a long");
+			}
+			int pageIndex = rowIndex >>> SPARSE_PAGE_SHIFT;
+			if (pages[pageIndex] != null || value != fillValue.getAsSignedLong()) {
+				getOrCreatePage(pageIndex).setRowFromLong(rowIndex & (SPARSE_PAGE_SIZE - 1), value);
+			}
+		}
+
+		@Override
+		MatrixStorage copy() {
+			return new SparseStorage(this);
+		}
+
+		@Override
+		boolean isSparse() {
+			return true;
+		}
+
+		@Override
+		boolean isRowPopulated(int rowIndex) {
+			return pages[rowIndex >>> SPARSE_PAGE_SHIFT] != null;
+		}
+
+		// adjacent populated pages are reported as a single range
+		@Override
+		void forEachPopulatedRowRange(Matrix.RowRangeConsumer consumer) {
+			int pageIndex = 0;
+			while (pageIndex < pages.length) {
+				if (pages[pageIndex] == null) {
+					pageIndex++;
+					continue;
+				}
+				int firstPageIndex = pageIndex;
+				while (pageIndex < pages.length && pages[pageIndex] != null) {
+					pageIndex++;
+				}
+				consumer.consume(firstPageIndex << SPARSE_PAGE_SHIFT, (int) Math.min((long) pageIndex << SPARSE_PAGE_SHIFT, rowCount));
+			}
+		}
+
+	}
+
+}
@@ -1,7 +1,5 @@
 package name.martingeisse.esdk.core.util;
 
-import name.martingeisse.esdk.core.util.vector.Vector;
-
 public final class MemoryDataUtil {
 
     /**
@@ -27,7 +25,7 @@ public final class MemoryDataUtil {
             throw new IllegalArgumentException("expected matrix to have 8 columns but has " + matrix.getColumnCount());
         }
         for (int i = 0; i < data.length; i++) {
-            matrix.setRow(i, Vector.of(8, data[i] & 0xff));
+            matrix.setRowFromLong(i, data[i] & 0xff);
         }
     }
 
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2018 Martin Geisse
+ * This file is distributed under the terms of the MIT license.
+ */
+package name.martingeisse.esdk.core.util;
+
+import name.martingeisse.esdk.core.util.vector.Vector;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps selector values of a switch statement or switch signal to the index of the matching case, using an array that
+ * is indexed by the selector value. This replaces comparing the selector with each case's selector values in turn.
+ * Only narrow selectors are supported since the array has an entry for every possible selector value.
+ *
+ * Like a linear search through the cases, the first case that lists a selector value wins if several cases list it.
+ */
+public final class SwitchJumpTable {
+
+	/**
+	 * The maximum selector width for which a jump table is built.
+	 */
+	public static final int MAX_SELECTOR_WIDTH = 16;
+
+	private final int[] caseIndices;
+
+	private SwitchJumpTable(int[] caseIndices) {
+		this.caseIndices = caseIndices;
+	}
+
+	/**
+	 * Builds a jump table, or returns null if the selector is too wide.
+	 */
+	public static SwitchJumpTable build(int selectorWidth, List<? extends List<Vector>> caseSelectorValues) {
+		if (selectorWidth > MAX_SELECTOR_WIDTH) {
+			return null;
+		}
+		int[] caseIndices = new int[1 << selectorWidth];
+		Arrays.fill(caseIndices, -1);
+		for (int i = caseSelectorValues.size() - 1; i >= 0; i--) {
+			for (Vector selectorValue : caseSelectorValues.get(i)) {
+				caseIndices[selectorValue.getAsUnsignedInt()] = i;
+			}
+		}
+		return new SwitchJumpTable(caseIndices);
+	}
+
+	/**
+	 * Returns the index of the case that matches the specified selector value, or -1 if no case matches.
+	 */
+	public int getCaseIndex(Vector selectorValue) {
+		return caseIndices[selectorValue.getAsUnsignedInt()];
+	}
+
+}
@@ -6,16 +6,66 @@ package name.martingeisse.esdk.core.util.vector;
 
 import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExpressionWriter;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 /**
+ * A vector of at most 64 bits, stored as a long with the bits beyond the width being zero.
  *
+ * Instances are obtained through {@link #valueOf(int, long)}, which returns preallocated instances for all values of
+ * up to {@link #SMALL_WIDTH_LIMIT} bits (such as bits of a register or a small state machine), and for zero and
+ * all-ones of every width. This avoids allocating a new vector for most results of simulation in those cases. Other
+ * values are allocated as needed, so instances must still be compared with equals().
  */
 final class Int64Vector extends Vector {
 
+	private static final int SMALL_WIDTH_LIMIT = 8;
+	private static final Int64Vector[][] SMALL_VECTORS = new Int64Vector[SMALL_WIDTH_LIMIT + 1][];
+	private static final Int64Vector[] ZEROS = new Int64Vector[65];
+	private static final Int64Vector[] ONES = new Int64Vector[65];
+
+	static {
+		for (int width = 0; width <= SMALL_WIDTH_LIMIT; width++) {
+			SMALL_VECTORS[width] = new Int64Vector[1 << width];
+			for (int value = 0; value < (1 << width); value++) {
+				SMALL_VECTORS[width][value] = new Int64Vector(width, value);
+			}
+		}
+		for (int width = 0; width <= 64; width++) {
+			if (width <= SMALL_WIDTH_LIMIT) {
+				ZEROS[width] = SMALL_VECTORS[width][0];
+				ONES[width] = SMALL_VECTORS[width][(1 << width) - 1];
+			} else {
+				ZEROS[width] = new Int64Vector(width, 0);
+				ONES[width] = new Int64Vector(width, getMask(width));
+			}
+		}
+	}
+
 	private final long value;
 
-	Int64Vector(int width, long value) {
+	/**
+	 * Returns a vector with the specified width and value, which must not have any bits beyond the width set. This
+	 * may return a shared instance.
+	 */
+	static Int64Vector valueOf(int width, long value) {
+		if (width >= 0 && width <= SMALL_WIDTH_LIMIT) {
+			if (value >= 0 && value < (1L << width)) {
+				return SMALL_VECTORS[width][(int) value];
+			}
+		} else if (width > 0 && width <= 64) {
+			if (value == 0) {
+				return ZEROS[width];
+			} else if (value == getMask(width)) {
+				return ONES[width];
+			}
+		}
+		return new Int64Vector(width, value);
+	}
+
+	private static long getMask(int width) {
+		return (width == 64) ? -1L : ((1L << width) - 1);
+	}
+
+	private Int64Vector(int width, long value) {
 		super(width);
 		if (width > 64) {
 			throw new IllegalArgumentException("this class does not support widths greater than 64, was: " + width);
@@ -31,6 +81,9 @@ final class Int64Vector extends Vector {
 
 	@Override
 	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
 		if (obj instanceof Int64Vector) {
 			Int64Vector other = (Int64Vector) obj;
 			return getWidth() == other.getWidth() && value == other.value;
@@ -40,7 +93,8 @@ final class Int64Vector extends Vector {
 
 	@Override
 	public int hashCode() {
-		return new HashCodeBuilder().append(getWidth()).append(value).toHashCode();
+		// same as HashCodeBuilder, without allocating one
+		return (17 * 37 + getWidth()) * 37 + Long.hashCode(value);
 	}
 
 	@Override
@@ -72,6 +126,11 @@ final class Int64Vector extends Vector {
 		return value;
 	}
 
+	@Override
+	public long getWord(int index) {
+		return (index == 0) ? value : 0;
+	}
+
 	private long expectSameWidth(Vector other) {
 		if (getWidth() != other.getWidth()) {
 			throw new IllegalArgumentException("expected a vector of same width as this (" + getWidth() + "), got " + other.getWidth());
@@ -86,9 +145,9 @@ final class Int64Vector extends Vector {
 	private static Int64Vector truncate(long result, int width) {
 		if (width < 64) {
 			long truncated = result & ((1L << width) - 1);
-			return new Int64Vector(width, truncated);
+			return valueOf(width, truncated);
 		} else {
-			return new Int64Vector(width, result);
+			return valueOf(width, result);
 		}
 	}
 
@@ -136,18 +195,27 @@ final class Int64Vector extends Vector {
 
 	@Override
 	public Vector prepend(boolean bit) {
-		return new Int64Vector(getWidth() + 1, (bit ? (1L << getWidth()) : 0) | value);
+		if (getWidth() == 64) {
+			return MultiWordVector.concat(Vector.of(1, bit ? 1 : 0), this);
+		}
+		return valueOf(getWidth() + 1, (bit ? (1L << getWidth()) : 0) | value);
 	}
 
 	@Override
 	public Vector concat(boolean bit) {
-		return new Int64Vector(getWidth() + 1, (value << 1) | (bit ? 1 : 0));
+		if (getWidth() == 64) {
+			return MultiWordVector.concat(this, Vector.of(1, bit ? 1 : 0));
+		}
+		return valueOf(getWidth() + 1, (value << 1) | (bit ? 1 : 0));
 	}
 
 	@Override
 	public Vector concat(Vector vector) {
 		int otherWidth = vector.getWidth();
-		return new Int64Vector(getWidth() + otherWidth, value << otherWidth | vector.getAsSignedLong());
+		if (getWidth() + otherWidth > 64) {
+			return MultiWordVector.concat(this, vector);
+		}
+		return valueOf(getWidth() + otherWidth, value << otherWidth | vector.getAsSignedLong());
 	}
 
 	@Override
@@ -162,22 +230,22 @@ final class Int64Vector extends Vector {
 
 	@Override
 	public Vector and(Vector other) {
-		return new Int64Vector(getWidth(), value & expectSameWidth(other));
+		return valueOf(getWidth(), value & expectSameWidth(other));
 	}
 
 	@Override
 	public Vector or(Vector other) {
-		return new Int64Vector(getWidth(), value | expectSameWidth(other));
+		return valueOf(getWidth(), value | expectSameWidth(other));
 	}
 
 	@Override
 	public Vector xor(Vector other) {
-		return new Int64Vector(getWidth(), value ^ expectSameWidth(other));
+		return valueOf(getWidth(), value ^ expectSameWidth(other));
 	}
 
 	@Override
 	public Vector xnor(Vector other) {
-		return new Int64Vector(getWidth(), ~(value ^ expectSameWidth(other)));
+		return truncate(~(value ^ expectSameWidth(other)));
 	}
 
 	@Override
@@ -193,7 +261,7 @@ final class Int64Vector extends Vector {
 		if (amount < 0 || amount >= getWidth()) {
 			throw new IllegalArgumentException("invalid shift amount " + amount + " for width " + getWidth());
 		}
-		return new Int64Vector(getWidth(), value >>> amount);
+		return valueOf(getWidth(), value >>> amount);
 	}
 
 	@Override
@@ -206,7 +274,7 @@ final class Int64Vector extends Vector {
 		int width = getWidth();
 		int printWidth = (width + 3) / 4;
 		String zeros = StringUtils.repeat('0', printWidth);
-		String digits = Long.toString(value, 16);
+		String digits = Long.toHexString(value);
 		String combined = zeros + digits;
 		out.print(combined.substring(combined.length() - printWidth));
 	}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2018 Martin Geisse
+ * This file is distributed under the terms of the MIT license.
+ */
+package name.martingeisse.esdk.core.util.vector;
+
+import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExpressionWriter;
+
+import java.util.Arrays;
+
+/**
+ * A vector of more than 64 bits, stored as an array of 64-bit words with word 0 containing the lowest bits. Bits of
+ * the highest word beyond the width are always zero. Arithmetic is done word by word, propagating carries.
+ * <p>
+ * Operations whose result is at most 64 bits wide return an {@link Int64Vector}.
+ */
+final class MultiWordVector extends Vector {
+
+	private final long[] words;
+
+	/**
+	 * Takes ownership of the words, which must not be modified afterwards.
+	 */
+	MultiWordVector(int width, long[] words) {
+		super(width);
+		if (width <= 64) {
+			throw new IllegalArgumentException("this class does not support widths of 64 or less, was: " + width);
+		}
+		if (words.length != getWordCount(width)) {
+			throw new IllegalArgumentException("expected " + getWordCount(width) + " words for width " + width + ", got " + words.length);
+		}
+		long mask = getTopWordMask(width);
+		if ((words[words.length - 1] & mask) != words[words.length - 1]) {
+			throw new IllegalArgumentException("words have more than " + width + " bits");
+		}
+		this.words = words;
+	}
+
+	static int getWordCount(int width) {
+		return (width + 63) >>> 6;
+	}
+
+	private static long getTopWordMask(int width) {
+		int topBits = width & 63;
+		return (topBits == 0) ? -1L : ((1L << topBits) - 1);
+	}
+
+	/**
+	 * Clears the bits of the words beyond the width and creates a vector from them, taking ownership of the words.
+	 * The array may be longer than needed for the width, in which case the extra words are ignored.
+	 */
+	static Vector truncate(int width, long[] words) {
+		if (width <= 64) {
+			long value = (words.length == 0) ? 0 : words[0];
+			return Int64Vector.valueOf(width, (width == 64) ? value : (value & ((1L << width) - 1)));
+		}
+		int wordCount = getWordCount(width);
+		if (words.length != wordCount) {
+			words = Arrays.copyOf(words, wordCount);
+		}
+		words[wordCount - 1] &= getTopWordMask(width);
+		return new MultiWordVector(width, words);
+	}
+
+	/**
+	 * Concatenates two vectors of any width, with the high vector as the left operand.
+	 */
+	static Vector concat(Vector high, Vector low) {
+		int lowWidth = low.getWidth();
+		int width = high.getWidth() + lowWidth;
+		long[] words = new long[getWordCount(width)];
+		for (int i = 0, n = getWordCount(lowWidth); i < n; i++) {
+			words[i] = low.getWord(i);
+		}
+		int index = lowWidth >>> 6;
+		int shift = lowWidth & 63;
+		for (int i = 0, n = getWordCount(high.getWidth()); i < n; i++) {
+			long word = high.getWord(i);
+			words[index + i] |= word << shift;
+			if (shift != 0 && index + i + 1 < words.length) {
+				words[index + i + 1] |= word >>> (64 - shift);
+			}
+		}
+		return truncate(width, words);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof MultiWordVector) {
+			MultiWordVector other = (MultiWordVector) obj;
+			return getWidth() == other.getWidth() && Arrays.equals(words, other.words);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return getWidth() * 31 + Arrays.hashCode(words);
+	}
+
+	@Override
+	public int getAsUnsignedInt() throws ArithmeticException {
+		throw new ArithmeticException("cannot convert a vector of width " + getWidth() + " to int");
+	}
+
+	@Override
+	public long getAsUnsignedLong() throws ArithmeticException {
+		throw new ArithmeticException("cannot convert a vector of width " + getWidth() + " to long");
+	}
+
+	@Override
+	public int getAsSignedInt() throws IllegalStateException {
+		throw new IllegalStateException("cannot return the bits of a vector of width " + getWidth() + " as int");
+	}
+
+	@Override
+	public long getAsSignedLong() throws IllegalStateException {
+		throw new IllegalStateException("cannot return the bits of a vector of width " + getWidth() + " as long");
+	}
+
+	@Override
+	public long getWord(int index) {
+		return (index < words.length) ? words[index] : 0;
+	}
+
+	private long[] expectSameWidth(Vector other) {
+		if (getWidth() != other.getWidth()) {
+			throw new IllegalArgumentException("expected a vector of same width as this (" + getWidth() + "), got " + other.getWidth());
+		}
+		return ((MultiWordVector) other).words;
+	}
+
+	@Override
+	public Vector add(Vector other) {
+		long[] otherWords = expectSameWidth(other);
+		long[] result = new long[words.length];
+		long carry = 0;
+		for (int i = 0; i < words.length; i++) {
+			long sum = words[i] + otherWords[i];
+			long carriedSum = sum + carry;
+			carry = ((Long.compareUnsigned(sum, words[i]) < 0) || (Long.compareUnsigned(carriedSum, sum) < 0)) ? 1 : 0;
+			result[i] = carriedSum;
+		}
+		return truncate(getWidth(), result);
+	}
+
+	@Override
+	public Vector subtract(Vector other) {
+		long[] otherWords = expectSameWidth(other);
+		long[] result = new long[words.length];
+		long borrow = 0;
+		for (int i = 0; i < words.length; i++) {
+			long difference = words[i] - otherWords[i];
+			long borrowedDifference = difference - borrow;
+			borrow = ((Long.compareUnsigned(words[i], otherWords[i]) < 0) || (Long.compareUnsigned(difference, borrow) < 0)) ? 1 : 0;
+			result[i] = borrowedDifference;
+		}
+		return truncate(getWidth(), result);
+	}
+
+	@Override
+	public Vector multiply(Vector other) {
+		long[] otherWords = expectSameWidth(other);
+		long[] result = new long[words.length];
+		for (int i = 0; i < words.length; i++) {
+			long x = words[i];
+			if (x == 0) {
+				continue;
+			}
+			long carry = 0;
+			for (int j = 0; i + j < words.length; j++) {
+				long y = otherWords[j];
+				long low = x * y;
+				long high = Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+
+				// add the low half and the carry to the result word, and the carries from that to the high half
+				long sum = result[i + j] + low;
+				if (Long.compareUnsigned(sum, low) < 0) {
+					high++;
+				}
+				long carriedSum = sum + carry;
+				if (Long.compareUnsigned(carriedSum, carry) < 0) {
+					high++;
+				}
+				result[i + j] = carriedSum;
+				carry = high;
+			}
+		}
+		return truncate(getWidth(), result);
+	}
+
+	@Override
+	public boolean select(int index) {
+		int width = getWidth();
+		if (index < 0 || index >= width) {
+			throw new IllegalArgumentException("invalid index " + index + " for width " + width);
+		}
+		return ((words[index >>> 6] >>> (index & 63)) & 1) != 0;
+	}
+
+	@Override
+	public boolean select(Vector index) {
+		int indexWidth = index.getWidth();
+		if (indexWidth > 31 || (1 << indexWidth > getWidth())) {
+			throw new IllegalArgumentException("index width " + indexWidth + " is too wide for vector width " + getWidth());
+		}
+		return select(index.getAsUnsignedInt());
+	}
+
+	@Override
+	public Vector select(int from, int to) {
+		if (to < 0 || from < to || from >= getWidth()) {
+			throw new IllegalArgumentException("invalid range [" + from + " .. " + to + "] for width " + getWidth());
+		}
+		int selectedWidth = from - to + 1;
+		if (selectedWidth <= 64) {
+			return Int64Vector.valueOf(selectedWidth, selectAsLong(from, to));
+		}
+		return truncate(selectedWidth, shiftWordsRight(to, getWordCount(selectedWidth)));
+	}
+
+	@Override
+	public Vector prepend(boolean bit) {
+		return concat(Vector.of(1, bit ? 1 : 0), this);
+	}
+
+	@Override
+	public Vector concat(boolean bit) {
+		return concat(this, Vector.of(1, bit ? 1 : 0));
+	}
+
+	@Override
+	public Vector concat(Vector vector) {
+		return concat(this, vector);
+	}
+
+	@Override
+	public Vector not() {
+		long[] result = new long[words.length];
+		for (int i = 0; i < words.length; i++) {
+			result[i] = ~words[i];
+		}
+		return truncate(getWidth(), result);
+	}
+
+	@Override
+	public Vector negate() {
+		long[] result = new long[words.length];
+		long carry = 1;
+		for (int i = 0; i < words.length; i++) {
+			result[i] = ~words[i] + carry;
+			carry = (carry != 0 && result[i] == 0) ? 1 : 0;
+		}
+		return truncate(getWidth(), result);
+	}
+
+	@Override
+	public Vector and(Vector other) {
+		long[] otherWords = expectSameWidth(other);
+		long[] result = new long[words.length];
+		for (int i = 0; i < words.length; i++) {
+			result[i] = words[i] & otherWords[i];
+		}
+		return new MultiWordVector(getWidth(), result);
+	}
+
+	@Override
+	public Vector or(Vector other) {
+		long[] otherWords = expectSameWidth(other);
+		long[] result = new long[words.length];
+		for (int i = 0; i < words.length; i++) {
+			result[i] = words[i] | otherWords[i];
+		}
+		return new MultiWordVector(getWidth(), result);
+	}
+
+	@Override
+	public Vector xor(Vector other) {
+		long[] otherWords = expectSameWidth(other);
+		long[] result = new long[words.length];
+		for (int i = 0; i < words.length; i++) {
+			result[i] = words[i] ^ otherWords[i];
+		}
+		return new MultiWordVector(getWidth(), result);
+	}
+
+	@Override
+	public Vector xnor(Vector other) {
+		long[] otherWords = expectSameWidth(other);
+		long[] result = new long[words.length];
+		for (int i = 0; i < words.length; i++) {
+			result[i] = ~(words[i] ^ otherWords[i]);
+		}
+		return truncate(getWidth(), result);
+	}
+
+	@Override
+	public Vector shiftLeft(int amount) {
+		if (amount < 0 || amount >= getWidth()) {
+			throw new IllegalArgumentException("invalid shift amount " + amount + " for width " + getWidth());
+		}
+		int wordShift = amount >>> 6;
+		int bitShift = amount & 63;
+		long[] result = new long[words.length];
+		for (int i = words.length - 1; i >= wordShift; i--) {
+			long word = words[i - wordShift] << bitShift;
+			if (bitShift != 0 && i - wordShift - 1 >= 0) {
+				word |= words[i - wordShift - 1] >>> (64 - bitShift);
+			}
+			result[i] = word;
+		}
+		return truncate(getWidth(), result);
+	}
+
+	@Override
+	public Vector shiftRight(int amount) {
+		if (amount < 0 || amount >= getWidth()) {
+			throw new IllegalArgumentException("invalid shift amount " + amount + " for width " + getWidth());
+		}
+		return new MultiWordVector(getWidth(), shiftWordsRight(amount, words.length));
+	}
+
+	// returns (count) words of this vector, starting at the specified bit
+	private long[] shiftWordsRight(int amount, int count) {
+		int wordShift = amount >>> 6;
+		int bitShift = amount & 63;
+		long[] result = new long[count];
+		for (int i = 0; i < count; i++) {
+			long word = getWord(i + wordShift) >>> bitShift;
+			if (bitShift != 0) {
+				word |= getWord(i + wordShift + 1) << (64 - bitShift);
+			}
+			result[i] = word;
+		}
+		return result;
+	}
+
+	@Override
+	public int compareUnsigned(Vector other) {
+		long[] otherWords = expectSameWidth(other);
+		for (int i = words.length - 1; i >= 0; i--) {
+			int result = Long.compareUnsigned(words[i], otherWords[i]);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public void printDigits(VerilogExpressionWriter out) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = words.length - 1; i >= 0; i--) {
+			String digits = Long.toHexString(words[i]);
+			for (int j = digits.length(); j < 16; j++) {
+				builder.append('0');
+			}
+			builder.append(digits);
+		}
+		int printWidth = (getWidth() + 3) / 4;
+		out.print(builder.substring(builder.length() - printWidth));
+	}
+
+}
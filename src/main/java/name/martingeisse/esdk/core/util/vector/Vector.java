@@ -13,6 +13,7 @@ import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExp
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.math.BigInteger;
+import java.util.Arrays;
 
 /**
  * Represents a bit vector with a specific width.
@@ -27,18 +28,47 @@ public abstract class Vector {
 	private final int width;
 
 	/**
-	 * Creates a vector value with the specified width and whose bits are the two's complement representation of the
-	 * specified value.
+	 * Creates a vector value with the specified width whose lowest bits are the bits of the specified value. The value
+	 * must not have any bits set beyond the width, so it must not be negative unless the width is exactly 64, in
+	 * which case the value is taken as a 64-bit pattern. Wider vectors with the highest bits set can be created using
+	 * {@link #fromWords(int, long[])}.
 	 */
 	public static Vector of(int width, long value) {
 		if (width > 64) {
-			throw new UnsupportedOperationException("vectors larger than 64 bits not yet implemented");
+			if (value < 0) {
+				throw new IllegalArgumentException("value " + value + " cannot be negative for a width of " + width);
+			}
+			long[] words = new long[MultiWordVector.getWordCount(width)];
+			words[0] = value;
+			return new MultiWordVector(width, words);
 		}
-		return new Int64Vector(width, value);
+		return Int64Vector.valueOf(width, value);
+	}
+
+	/**
+	 * Creates a vector value with the specified width from 64-bit words, with word 0 containing the lowest 64 bits.
+	 * Missing words are taken as zero. Bits of the words beyond the width must be zero.
+	 */
+	public static Vector fromWords(int width, long[] words) {
+		if (width > 64) {
+			return new MultiWordVector(width, Arrays.copyOf(words, MultiWordVector.getWordCount(width)));
+		}
+		for (int i = 1; i < words.length; i++) {
+			if (words[i] != 0) {
+				throw new IllegalArgumentException("words have more than " + width + " bits");
+			}
+		}
+		return Int64Vector.valueOf(width, words.length == 0 ? 0 : words[0]);
 	}
 
 	public static Vector repeat(int width, boolean bit) {
-		if (width == 64) {
+		if (width > 64) {
+			long[] words = new long[MultiWordVector.getWordCount(width)];
+			if (bit) {
+				Arrays.fill(words, -1L);
+			}
+			return MultiWordVector.truncate(width, words);
+		} else if (width == 64) {
 			return Vector.of(width, bit ? -1 : 0);
 		} else {
 			return Vector.of(width, bit ? ((1L << width) - 1) : 0);
@@ -47,9 +77,17 @@ public abstract class Vector {
 
 	public static Vector parseHex(int width, String digits) {
 		if (width > 64) {
-			throw new UnsupportedOperationException("vectors larger than 64 bits not yet implemented");
+			BigInteger value = new BigInteger(digits, 16);
+			if (value.bitLength() > width) {
+				throw new IllegalArgumentException("value " + digits + " has more than " + width + " bits");
+			}
+			long[] words = new long[MultiWordVector.getWordCount(width)];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = value.shiftRight(i * 64).longValue();
+			}
+			return new MultiWordVector(width, words);
 		}
-		return new Int64Vector(width, new BigInteger(digits, 16).longValue());
+		return Int64Vector.valueOf(width, new BigInteger(digits, 16).longValue());
 	}
 
 	Vector(int width) {
@@ -87,6 +125,30 @@ public abstract class Vector {
 	 */
 	public abstract long getAsSignedLong() throws IllegalStateException;
 
+	/**
+	 * Returns 64 bits of this vector, starting at bit (64 * index). Bits beyond the width of this vector, including
+	 * whole words, are zero.
+	 */
+	public abstract long getWord(int index);
+
+	/**
+	 * Selects a range of at most 64 bits and returns them as a long, using unsigned representation. This is the same
+	 * as select(from, to).getAsSignedLong(), but doesn't create an intermediate vector.
+	 */
+	public long selectAsLong(int from, int to) {
+		if (to < 0 || from < to || from >= width || from - to >= 64) {
+			throw new IllegalArgumentException("invalid range [" + from + " .. " + to + "] for width " + width);
+		}
+		int index = to >>> 6;
+		int shift = to & 63;
+		long bits = getWord(index) >>> shift;
+		if (shift != 0) {
+			bits |= getWord(index + 1) << (64 - shift);
+		}
+		int selectedWidth = from - to + 1;
+		return (selectedWidth == 64) ? bits : (bits & ((1L << selectedWidth) - 1));
+	}
+
 	/**
 	 * Expects this vector and the argument vector to be of the same size. Interprets the vectors as unsigned numbers,
 	 * adds them, truncates the result to the same width and returns it as a vector. (Due to the truncation,
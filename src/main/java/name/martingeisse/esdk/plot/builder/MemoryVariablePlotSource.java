@@ -32,6 +32,10 @@ public class MemoryVariablePlotSource implements VariablePlotSource {
     @Override
     public Object buildSample() {
         Matrix contents = memory.getMatrix();
+        if (previousContents == null && contents.isSparse()) {
+            // a full sample would contain every row of the address space, so start with the changes to the fill value
+            previousContents = Matrix.createSparse(contents.getRowCount(), contents.getColumnCount(), contents.getFillValue());
+        }
         if (previousContents == null) {
             MemorySample.Full sample = new MemorySample.Full(contents);
             previousContents = new Matrix(contents);
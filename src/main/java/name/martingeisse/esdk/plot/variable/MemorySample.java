@@ -43,15 +43,34 @@ public abstract class MemorySample {
             if (oldContents.getRowCount() != newContents.getRowCount() || oldContents.getColumnCount() != newContents.getColumnCount()) {
                 throw new IllegalArgumentException("memory size mismatch");
             }
+            if (oldContents.isSparse() && newContents.isSparse() && !oldContents.getFillValue().equals(newContents.getFillValue())) {
+                throw new IllegalArgumentException("fill value mismatch");
+            }
+
+            // rows that are unpopulated in both matrices contain the same fill value, so only populated rows are compared
             List<RowPatch> rowPatches = new ArrayList<>();
-            for (int i = 0; i < oldContents.getRowCount(); i++) {
-                if (!oldContents.getRow(i).equals(newContents.getRow(i))) {
-                    rowPatches.add(new RowPatch(i, newContents.getRow(i)));
+            newContents.forEachPopulatedRowRange((fromRowIndex, toRowIndex) -> {
+                for (int i = fromRowIndex; i < toRowIndex; i++) {
+                    addRowPatchIfChanged(rowPatches, oldContents, newContents, i);
                 }
-            }
+            });
+            oldContents.forEachPopulatedRowRange((fromRowIndex, toRowIndex) -> {
+                for (int i = fromRowIndex; i < toRowIndex; i++) {
+                    if (!newContents.isRowPopulated(i)) {
+                        addRowPatchIfChanged(rowPatches, oldContents, newContents, i);
+                    }
+                }
+            });
             this.rowPatches = ImmutableList.copyOf(rowPatches);
         }
 
+        private static void addRowPatchIfChanged(List<RowPatch> rowPatches, Matrix oldContents, Matrix newContents, int rowIndex) {
+            Vector newValue = newContents.getRow(rowIndex);
+            if (!oldContents.getRow(rowIndex).equals(newValue)) {
+                rowPatches.add(new RowPatch(rowIndex, newValue));
+            }
+        }
+
         @Override
         public void applyTo(Matrix matrix) {
             for (RowPatch rowPatch : rowPatches) {
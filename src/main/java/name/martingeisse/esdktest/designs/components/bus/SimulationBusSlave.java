@@ -89,10 +89,10 @@ public abstract class SimulationBusSlave extends ClockedSimulationDesignItem {
 
         // fetch as few values as possible, so it's faster
         if (enable) {
-            this.wordAddress = slaveInterface.wordAddress.getValue().getAsSignedInt();
+            this.wordAddress = slaveInterface.wordAddress.getValueAsInt();
             if (write) {
-                this.writeData = slaveInterface.writeData.getValue().getAsSignedInt();
-                this.writeMask = slaveInterface.writeMask.getValue().getAsSignedInt();
+                this.writeData = slaveInterface.writeData.getValueAsInt();
+                this.writeMask = slaveInterface.writeMask.getValueAsInt();
                 this.readData = ZERO32;
                 prepareWrite(wordAddress, writeData, writeMask);
             } else {
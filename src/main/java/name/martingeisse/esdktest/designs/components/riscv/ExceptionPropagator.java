@@ -14,7 +14,7 @@ public class ExceptionPropagator extends ClockedSimulationDesignItem {
 
     @Override
     public void computeNextState() {
-        int exceptionCode = cpu.exceptionCode.getValue().getAsSignedInt();
+        int exceptionCode = cpu.exceptionCode.getValueAsInt();
         if (exceptionCode != 0) {
             throw new RuntimeException("CPU exception, code " + exceptionCode);
         }
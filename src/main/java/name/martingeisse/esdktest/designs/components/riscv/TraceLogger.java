@@ -54,11 +54,11 @@ public class TraceLogger extends ClockedSimulationDesignItem {
         if (cpu.bus.enable.getValue() && cpu.bus.acknowledge.getValue()) {
             boolean write = cpu.bus.write.getValue();
             System.out.print(write ? ", bus write 0x" : ", bus read 0x");
-            System.out.print(toHex((long)cpu.bus.wordAddress.getValue().getAsSignedInt() << 2));
+            System.out.print(toHex((long)cpu.bus.wordAddress.getValueAsInt() << 2));
             System.out.print(", data 0x");
             System.out.print(toHex(write ? cpu.bus.writeData : cpu.bus.readData));
             if (write) {
-                System.out.print(", mask " + Integer.toBinaryString(cpu.bus.writeMask.getValue().getAsUnsignedInt()));
+                System.out.print(", mask " + Integer.toBinaryString(cpu.bus.writeMask.getValueAsUnsignedInt()));
             }
         }
         if (state.equals(RiscvCpu.STATE_DECODE_AND_READ1)) {
@@ -66,7 +66,7 @@ public class TraceLogger extends ClockedSimulationDesignItem {
             System.out.print(", instruction = ");
             disassembler.disassemble(cpu.instructionRegister);
             System.out.println();
-            int instruction = cpu.instructionRegister.getValue().getAsSignedInt();
+            int instruction = cpu.instructionRegister.getValueAsInt();
             System.out.print("\t[rd] = " + cpu.registers.getMatrix().getRow((instruction >> 7) & 31));
             System.out.print(", [rs1] = " + cpu.registers.getMatrix().getRow((instruction >> 15) & 31));
             System.out.print(", [rs2] = " + cpu.registers.getMatrix().getRow((instruction >> 20) & 31));
@@ -76,11 +76,7 @@ public class TraceLogger extends ClockedSimulationDesignItem {
     }
 
     private String toHex(VectorSignal signal) {
-        return toHex(signal.getValue());
-    }
-
-    private String toHex(Vector value) {
-        return toHex(value.getAsSignedInt());
+        return toHex(signal.getValueAsInt());
     }
 
     private String toHex(long value) {
@@ -89,7 +85,7 @@ public class TraceLogger extends ClockedSimulationDesignItem {
     }
 
     private String instructionToFields() {
-        int value = cpu.instructionRegister.getValue().getAsSignedInt();
+        int value = cpu.instructionRegister.getValueAsInt();
         return "0x" + Integer.toHexString(value >>> 25) + " " +
             "rs2=" + ((value >>> 20) & 31) + " " +
             "rs1=" + ((value >>> 15) & 31) + " " +
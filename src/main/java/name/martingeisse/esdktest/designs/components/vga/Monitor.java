@@ -46,9 +46,9 @@ public final class Monitor extends Component {
 
 			@Override
 			public void computeNextState() {
-				sampledR = r.getValue().getAsUnsignedInt();
-				sampledG = g.getValue().getAsUnsignedInt();
-				sampledB = b.getValue().getAsUnsignedInt();
+				sampledR = r.getValueAsUnsignedInt();
+				sampledG = g.getValueAsUnsignedInt();
+				sampledB = b.getValueAsUnsignedInt();
 				sampledHsync = hsync.getValue();
 				sampledVsync = vsync.getValue();
 
@@ -74,7 +74,7 @@ public class ComplianceTestingDesign extends Design {
 
                 @Override
                 public void computeNextState() {
-                    if (cpu.bus.wordAddress.getValue().getAsUnsignedInt() == 596 / 4 && cpu.bus.write.getValue()) {
+                    if (cpu.bus.wordAddress.getValueAsUnsignedInt() == 596 / 4 && cpu.bus.write.getValue()) {
                         throw new RuntimeException("***");
                     }
                 }
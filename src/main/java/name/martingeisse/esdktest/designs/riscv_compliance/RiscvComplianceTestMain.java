@@ -1,13 +1,19 @@
 package name.martingeisse.esdktest.designs.riscv_compliance;
 
+import name.martingeisse.esdk.core.tools.simulation.BatchSimulationResult;
+import name.martingeisse.esdk.core.tools.simulation.BatchSimulationRunner;
 import name.martingeisse.esdktest.designs.ExternalToolInvocation;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.LineIterator;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
 
 /**
  * TODO also run the tests from https://github.com/riscv-software-src/riscv-tests
@@ -63,21 +69,59 @@ public class RiscvComplianceTestMain {
             excludedBaseNames.add(name);
         }
 
-//        for (String baseFileName : baseFileNames) {
-//            if (excludedBaseNames.contains(baseFileName)) {
-//                continue;
-//            }
-//            File sourceFile = new File(sourceFileFolder, baseFileName + ".S");
-//            File referenceFile = new File(referenceFileFolder, baseFileName + ".reference_output");
-//            File testBuildFolder = new File(testSuiteBuildFolder, baseFileName);
-//            performTest(sourceFile, referenceFile, testBuildFolder);
-//        }
-
-        String baseFileName = "sh-align-01";
-        File sourceFile = new File(sourceFileFolder, baseFileName + ".S");
-        File referenceFile = new File(referenceFileFolder, baseFileName + ".reference_output");
-        File testBuildFolder = new File(testSuiteBuildFolder, baseFileName);
-        performTest(sourceFile, referenceFile, testBuildFolder);
+        // build and simulate all tests in parallel
+        List<String> testBaseNames = new ArrayList<>();
+        List<Supplier<ComplianceTestingDesign>> designFactories = new ArrayList<>();
+        for (String baseFileName : new TreeSet<>(baseFileNames)) {
+            if (excludedBaseNames.contains(baseFileName)) {
+                continue;
+            }
+            File sourceFile = new File(sourceFileFolder, baseFileName + ".S");
+            File testBuildFolder = new File(testSuiteBuildFolder, baseFileName);
+            testBaseNames.add(baseFileName);
+            designFactories.add(() -> {
+                try {
+                    File programFile = buildTest(sourceFile, testBuildFolder);
+                    ComplianceTestingDesign design = new ComplianceTestingDesign();
+                    design.loadMemoryContents(programFile);
+                    return design;
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        List<BatchSimulationResult<TestOutput>> results = new BatchSimulationRunner().run(designFactories,
+            design -> new TestOutput(design.getOutputStartAddress(), design.getOutput()));
+
+        // verify the outputs
+        int failureCount = 0;
+        for (BatchSimulationResult<TestOutput> result : results) {
+            String baseFileName = testBaseNames.get(result.getIndex());
+            File referenceFile = new File(referenceFileFolder, baseFileName + ".reference_output");
+            String error;
+            if (result.isSuccessful()) {
+                try {
+                    verifyOutput(result.getValue(), referenceFile);
+                    error = null;
+                } catch (RuntimeException e) {
+                    error = e.getMessage();
+                }
+            } else {
+                error = result.getException().toString();
+            }
+            System.out.println((error == null ? "OK    " : "FAIL  ") + baseFileName + " (" +
+                (result.getElaborationNanos() / 1000000) + "ms build, " +
+                (result.getSimulationNanos() / 1000000) + "ms simulation)" +
+                (error == null ? "" : ": " + error));
+            if (error != null) {
+                failureCount++;
+            }
+        }
+        if (failureCount > 0) {
+            throw new RuntimeException(failureCount + " of " + results.size() + " tests failed in " + testSuiteSourceFolder);
+        }
 
     }
 
@@ -92,17 +136,15 @@ public class RiscvComplianceTestMain {
         return baseFileNames;
     }
 
-    private static void performTest(File sourceFileAtOriginalLocation, File referenceFile, File testBuildFolder) throws Exception {
+    /**
+     * Assembles and links a test program, returning the binary image to load into memory.
+     */
+    private static File buildTest(File sourceFileAtOriginalLocation, File testBuildFolder) throws Exception {
         File sourceFile = new File(testBuildFolder, sourceFileAtOriginalLocation.getName());
         FileUtils.copyFile(sourceFileAtOriginalLocation, sourceFile);
         FileUtils.copyURLToFile(RiscvComplianceTestMain.class.getResource("model_test.h"), new File(testBuildFolder, "model_test.h"));
         FileUtils.copyURLToFile(RiscvComplianceTestMain.class.getResource("linkerscript"), new File(testBuildFolder, "linkerscript"));
 
-        System.out.println("*** performTest");
-        System.out.println("  " + sourceFile);
-        System.out.println("  " + referenceFile);
-        System.out.println("  " + testBuildFolder);
-
         // gcc
         {
             ExternalToolInvocation invocation = new ExternalToolInvocation();
@@ -133,14 +175,12 @@ public class RiscvComplianceTestMain {
             invocation.invoke();
         }
 
-        // run the test
-        ComplianceTestingDesign design = new ComplianceTestingDesign();
-        design.loadMemoryContents(new File(testBuildFolder, "program.bin"));
-        design.simulate();
+        return new File(testBuildFolder, "program.bin");
+    }
 
-        // verify the outputs
-        int outputStartAddress = design.getOutputStartAddress();
-        int[] output = design.getOutput();
+    private static void verifyOutput(TestOutput testOutput, File referenceFile) throws IOException {
+        int outputStartAddress = testOutput.startAddress;
+        int[] output = testOutput.values;
         LineIterator lineIterator = FileUtils.lineIterator(referenceFile);
         for (int actualValue : output) {
             if (!lineIterator.hasNext()) {
@@ -160,4 +200,16 @@ public class RiscvComplianceTestMain {
 
     }
 
+    private static final class TestOutput {
+
+        final int startAddress;
+        final int[] values;
+
+        TestOutput(int startAddress, int[] values) {
+            this.startAddress = startAddress;
+            this.values = values;
+        }
+
+    }
+
 }
@@ -0,0 +1,239 @@
+package name.martingeisse.esdk.core;
+
+import name.martingeisse.esdk.core.library.clocked.Clock;
+import name.martingeisse.esdk.core.library.clocked.ClockedItem;
+import name.martingeisse.esdk.core.library.procedural.ClockedBlock;
+import name.martingeisse.esdk.core.library.procedural.ProceduralMemory;
+import name.martingeisse.esdk.core.library.procedural.ProceduralVectorRegister;
+import name.martingeisse.esdk.core.library.signal.BitConstant;
+import name.martingeisse.esdk.core.library.signal.VectorSignal;
+import name.martingeisse.esdk.core.library.simulation.ClockGenerator;
+import name.martingeisse.esdk.core.library.simulation.SimulationTimeLimit;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.SignalUsageConsumer;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.SynthesisPreparationContext;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.VerilogWriter;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.contribution.VerilogContribution;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.expression.VerilogExpressionNesting;
+import name.martingeisse.esdk.core.util.vector.Vector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ *
+ */
+public class PartitionedSimulationTest {
+
+    private static final long SYNC_INTERVAL = 50;
+    private static final long COUNTER_PERIOD = 10;
+
+    @After
+    public void tearDown() {
+        ImplicitGlobalDesign.clear();
+    }
+
+    @Test
+    public void testCrossDomainReadLagsByAtMostOneSyncInterval() {
+        CrossingDesign sequential = new CrossingDesign(false);
+        sequential.design.simulate();
+        CrossingDesign partitioned = new CrossingDesign(true);
+        partitioned.design.simulate();
+
+        List<Integer> expected = sequential.readerRecorder.values;
+        List<Integer> actual = partitioned.readerRecorder.values;
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertTrue(expected.size() > 100);
+        long maxLag = SYNC_INTERVAL / COUNTER_PERIOD + 1;
+        boolean lagged = false;
+        for (int i = 0; i < expected.size(); i++) {
+            int expectedValue = expected.get(i);
+            int actualValue = actual.get(i);
+            Assert.assertTrue("cycle " + i + ": " + actualValue + " vs. " + expectedValue,
+                    actualValue <= expectedValue && actualValue >= expectedValue - maxLag);
+            if (actualValue != expectedValue) {
+                lagged = true;
+            }
+        }
+        Assert.assertTrue(lagged);
+
+        // the counter itself is not affected
+        Assert.assertEquals(sequential.counterRecorder.values, partitioned.counterRecorder.values);
+        Assert.assertEquals(1, getPartitionThreads(partitioned.counterRecorder).size());
+    }
+
+    @Test
+    public void testDomainsSharingMemoryAreMerged() {
+        SharedMemoryDesign sequential = new SharedMemoryDesign(false);
+        sequential.design.simulate();
+        SharedMemoryDesign partitioned = new SharedMemoryDesign(true);
+        partitioned.design.simulate();
+
+        // the memory is read without lag
+        Assert.assertTrue(sequential.readerRecorder.values.size() > 100);
+        Assert.assertEquals(sequential.readerRecorder.values, partitioned.readerRecorder.values);
+        Assert.assertEquals(sequential.independentRecorder.values, partitioned.independentRecorder.values);
+
+        // between synchronization points, the writer and the reader run on the same thread, the independent domain
+        // on another one
+        Set<Thread> writerThreads = getPartitionThreads(partitioned.writerRecorder);
+        Assert.assertEquals(1, writerThreads.size());
+        Assert.assertEquals(writerThreads, getPartitionThreads(partitioned.readerRecorder));
+        Assert.assertFalse(getPartitionThreads(partitioned.independentRecorder).containsAll(writerThreads));
+    }
+
+    @Test
+    public void testStopFromPartitionThread() {
+        CrossingDesign partitioned = new CrossingDesign(true);
+        partitioned.counterRecorder.stopValue = 20;
+        partitioned.design.simulate();
+
+        // the partition did not run any further clock edges, and its thread has terminated
+        Recorder recorder = partitioned.counterRecorder;
+        Assert.assertNotNull(recorder.stoppingThread);
+        Assert.assertNotSame(Thread.currentThread(), recorder.stoppingThread);
+        Assert.assertEquals(recorder.stoppedAt, (int) recorder.values.get(recorder.values.size() - 1));
+        Assert.assertFalse(recorder.stoppingThread.isAlive());
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            Assert.assertFalse(thread.getName(), thread.getName().startsWith("simulation-"));
+        }
+    }
+
+    // the threads other than the test thread, which runs the clock edges at synchronization points
+    private static Set<Thread> getPartitionThreads(Recorder recorder) {
+        Set<Thread> threads = Collections.newSetFromMap(new IdentityHashMap<>());
+        threads.addAll(recorder.threads);
+        threads.remove(Thread.currentThread());
+        return threads;
+    }
+
+    private static ProceduralVectorRegister newCounter(Clock clock) {
+        ProceduralVectorRegister counter = new ProceduralVectorRegister(16, Vector.of(16, 0));
+        new ClockedBlock(clock).getStatements().assign(counter, counter.add(1));
+        return counter;
+    }
+
+    // a counter in one clock domain, read by a register in another one
+    private static final class CrossingDesign {
+
+        private final Design design = new Design();
+        private final Recorder counterRecorder;
+        private final Recorder readerRecorder;
+
+        CrossingDesign(boolean partitioned) {
+            if (partitioned) {
+                design.setPartitionedSimulationEnabled(true, SYNC_INTERVAL);
+            }
+            Clock counterClock = new Clock(new BitConstant(false));
+            Clock readerClock = new Clock(new BitConstant(false));
+            new ClockGenerator(readerClock, 7, 3);
+            new ClockGenerator(counterClock, COUNTER_PERIOD);
+            new SimulationTimeLimit(2000);
+            ProceduralVectorRegister counter = newCounter(counterClock);
+            ProceduralVectorRegister reader = new ProceduralVectorRegister(16, Vector.of(16, 0));
+            new ClockedBlock(readerClock).getStatements().assign(reader, counter);
+            counterRecorder = new Recorder(counterClock, counter);
+            readerRecorder = new Recorder(readerClock, reader);
+        }
+
+    }
+
+    // a memory written in one clock domain and read in another, plus an independent domain
+    private static final class SharedMemoryDesign {
+
+        private final Design design = new Design();
+        private final Recorder writerRecorder;
+        private final Recorder readerRecorder;
+        private final Recorder independentRecorder;
+
+        SharedMemoryDesign(boolean partitioned) {
+            if (partitioned) {
+                design.setPartitionedSimulationEnabled(true, SYNC_INTERVAL);
+            }
+            Clock writerClock = new Clock(new BitConstant(false));
+            Clock readerClock = new Clock(new BitConstant(false));
+            Clock independentClock = new Clock(new BitConstant(false));
+            new ClockGenerator(independentClock, 9, 1);
+            new ClockGenerator(writerClock, COUNTER_PERIOD);
+            new ClockGenerator(readerClock, 7, 3);
+            new SimulationTimeLimit(2000);
+
+            ProceduralMemory memory = new ProceduralMemory(4, 16);
+            ProceduralVectorRegister writerCounter = newCounter(writerClock);
+            new ClockedBlock(writerClock).getStatements().assign(memory.select(writerCounter.select(1, 0)), writerCounter);
+
+            ProceduralVectorRegister readerCounter = newCounter(readerClock);
+            ProceduralVectorRegister reader = new ProceduralVectorRegister(16, Vector.of(16, 0));
+            new ClockedBlock(readerClock).getStatements().assign(reader, memory.select(readerCounter.select(1, 0)));
+
+            writerRecorder = new Recorder(writerClock, writerCounter);
+            readerRecorder = new Recorder(readerClock, reader);
+            independentRecorder = new Recorder(independentClock, newCounter(independentClock));
+        }
+
+    }
+
+    // Records the value of a signal before each clock edge, and the threads that simulated the edges. It reports the
+    // signal as used, so it does not prevent the partitioning of the design. If a stop value is set, it stops the
+    // simulation at the first edge after reaching that value that runs on a partition thread.
+    private static final class Recorder extends ClockedItem {
+
+        private final VectorSignal signal;
+        private final List<Integer> values = new ArrayList<>();
+        private final Set<Thread> threads = Collections.newSetFromMap(new IdentityHashMap<>());
+        private int stopValue = -1;
+        private int stoppedAt = -1;
+        private Thread stoppingThread;
+
+        Recorder(Clock clock, VectorSignal signal) {
+            super(clock);
+            this.signal = signal;
+        }
+
+        @Override
+        public void computeNextState() {
+            int value = signal.getValue().getAsUnsignedInt();
+            values.add(value);
+            threads.add(Thread.currentThread());
+            boolean partitionThread = Thread.currentThread().getName().startsWith("simulation-");
+            if (stopValue >= 0 && value >= stopValue && partitionThread) {
+                stoppedAt = value;
+                stoppingThread = Thread.currentThread();
+                getDesign().stopSimulation();
+            }
+        }
+
+        @Override
+        public void updateState() {
+        }
+
+        @Override
+        public VerilogContribution getVerilogContribution() {
+            return new VerilogContribution() {
+
+                @Override
+                public void prepareSynthesis(SynthesisPreparationContext context) {
+                    throw newSynthesisNotSupportedException();
+                }
+
+                @Override
+                public void analyzeSignalUsage(SignalUsageConsumer consumer) {
+                    consumer.consumeSignalUsage(signal, VerilogExpressionNesting.ALL);
+                }
+
+                @Override
+                public void printImplementation(VerilogWriter out) {
+                    throw newSynthesisNotSupportedException();
+                }
+
+            };
+        }
+
+    }
+
+}
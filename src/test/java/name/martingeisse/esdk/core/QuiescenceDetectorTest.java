@@ -0,0 +1,105 @@
+package name.martingeisse.esdk.core;
+
+import name.martingeisse.esdk.core.library.clocked.Clock;
+import name.martingeisse.esdk.core.library.procedural.ClockedBlock;
+import name.martingeisse.esdk.core.library.procedural.ProceduralVectorRegister;
+import name.martingeisse.esdk.core.library.signal.BitConstant;
+import name.martingeisse.esdk.core.library.signal.simulation.SimulatedSettableVectorSignal;
+import name.martingeisse.esdk.core.library.simulation.ClockGenerator;
+import name.martingeisse.esdk.core.util.vector.Vector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ */
+public class QuiescenceDetectorTest {
+
+    private static final long EVENT_TIME = 1_000_000;
+
+    @After
+    public void tearDown() {
+        ImplicitGlobalDesign.clear();
+    }
+
+    @Test
+    public void testSkipToOneShotEvent() {
+        List<String> expected = new CounterDesign(false).simulate(false);
+        List<String> actual = new CounterDesign(true).simulate(false);
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testSettableSignalChangesWhileQuiescent() {
+        List<String> expected = new CounterDesign(false).simulate(true);
+        List<String> actual = new CounterDesign(true).simulate(true);
+        Assert.assertEquals(expected, actual);
+        Assert.assertTrue(actual.get(0), actual.get(0).endsWith(" 5a b4"));
+    }
+
+    // Two clock domains with a free-running counter each, and a pipeline of registers that follows a settable signal
+    // and then stays unchanged. The counters have different periods and phases, so their values at an event also
+    // determine the simulation time of that event.
+    private static final class CounterDesign {
+
+        private final Design design = new Design();
+        private final ProceduralVectorRegister fastCounter;
+        private final ProceduralVectorRegister slowCounter;
+        private final SimulatedSettableVectorSignal input;
+        private final ProceduralVectorRegister latched;
+        private final ProceduralVectorRegister doubled;
+        private final List<String> trace = new ArrayList<>();
+
+        CounterDesign(boolean quiescenceDetectionEnabled) {
+            design.setQuiescenceDetectionEnabled(quiescenceDetectionEnabled);
+            Clock fastClock = new Clock(new BitConstant(false));
+            Clock slowClock = new Clock(new BitConstant(false));
+            new ClockGenerator(fastClock, 7, 3);
+            new ClockGenerator(slowClock, 10);
+
+            fastCounter = new ProceduralVectorRegister(8, Vector.of(8, 0));
+            new ClockedBlock(fastClock).getStatements().assign(fastCounter, fastCounter.add(1));
+            slowCounter = new ProceduralVectorRegister(24, Vector.of(24, 5));
+            new ClockedBlock(slowClock).getStatements().assign(slowCounter, slowCounter.add(3));
+
+            input = new SimulatedSettableVectorSignal(8);
+            input.setValue(Vector.of(8, 0x21));
+            latched = new ProceduralVectorRegister(8, Vector.of(8, 0));
+            doubled = new ProceduralVectorRegister(8, Vector.of(8, 0));
+            ClockedBlock pipeline = new ClockedBlock(slowClock);
+            pipeline.getStatements().assign(latched, input);
+            pipeline.getStatements().assign(doubled, latched.add(latched));
+        }
+
+        /**
+         * Records the state at a one-shot event far ahead and again shortly after it. If requested, the settable
+         * signal is changed halfway.
+         */
+        List<String> simulate(boolean changeInput) {
+            design.prepareSimulation();
+            if (changeInput) {
+                design.fire(() -> input.setValue(Vector.of(8, 0x5a)), EVENT_TIME / 2);
+            }
+            design.fire(() -> {
+                record();
+                design.fire(() -> {
+                    record();
+                    design.stopSimulation();
+                }, 25);
+            }, EVENT_TIME);
+            design.continueSimulation();
+            return trace;
+        }
+
+        private void record() {
+            trace.add(fastCounter.getValue().getDigits() + " " + slowCounter.getValue().getDigits() + " " +
+                    latched.getValue().getDigits() + " " + doubled.getValue().getDigits());
+        }
+
+    }
+
+}
@@ -0,0 +1,118 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.ImplicitGlobalDesign;
+import name.martingeisse.esdk.core.library.clocked.Clock;
+import name.martingeisse.esdk.core.library.clocked.ClockedItem;
+import name.martingeisse.esdk.core.library.signal.BitConstant;
+import name.martingeisse.esdk.core.library.signal.ClockSignal;
+import name.martingeisse.esdk.core.library.simulation.ClockGenerator;
+import name.martingeisse.esdk.core.library.simulation.SimulationTimeLimit;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.contribution.VerilogContribution;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.IntSupplier;
+
+/**
+ *
+ */
+public class ClockEdgeDispatcherGeneratorTest {
+
+    @After
+    public void tearDown() {
+        ImplicitGlobalDesign.clear();
+    }
+
+    @Test
+    public void testUnreadableClassFile() throws Exception {
+        Design design = new Design();
+        Clock clock = new Clock(new BitConstant(false));
+        new ClockGenerator(clock, 10);
+        new SimulationTimeLimit(995);
+        Class<?> itemClass = new UnsupportedVersionClassLoader().loadClass(CountingItem.class.getName());
+        IntSupplier item = (IntSupplier) itemClass.getConstructor(ClockSignal.class).newInstance(clock);
+        design.simulate();
+        Assert.assertEquals(100, item.getAsInt());
+    }
+
+    /**
+     * Counts its clock edges in updateState(). Its computeNextState() is empty.
+     */
+    public static final class CountingItem extends ClockedItem implements IntSupplier {
+
+        private int count;
+
+        public CountingItem(ClockSignal clockSignal) {
+            super(clockSignal);
+        }
+
+        @Override
+        public void computeNextState() {
+        }
+
+        @Override
+        public void updateState() {
+            count++;
+        }
+
+        @Override
+        public int getAsInt() {
+            return count;
+        }
+
+        @Override
+        public VerilogContribution getVerilogContribution() {
+            throw newSynthesisNotSupportedException();
+        }
+
+    }
+
+    /**
+     * Defines its own copy of {@link CountingItem}, but reports a class file version for it that ASM does not support,
+     * as for classes compiled for a newer Java version.
+     */
+    private static final class UnsupportedVersionClassLoader extends ClassLoader {
+
+        private final String className = CountingItem.class.getName();
+        private final String resourceName = className.replace('.', '/') + ".class";
+        private final byte[] classFile;
+
+        UnsupportedVersionClassLoader() throws IOException {
+            super(ClockEdgeDispatcherGeneratorTest.class.getClassLoader());
+            try (InputStream inputStream = getParent().getResourceAsStream(resourceName)) {
+                classFile = IOUtils.toByteArray(inputStream);
+            }
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(className)) {
+                return super.loadClass(name, resolve);
+            }
+            Class<?> result = findLoadedClass(name);
+            if (result == null) {
+                result = defineClass(name, classFile, 0, classFile.length);
+            }
+            return result;
+        }
+
+        @Override
+        public InputStream getResourceAsStream(String name) {
+            if (!name.equals(resourceName)) {
+                return super.getResourceAsStream(name);
+            }
+            byte[] patched = classFile.clone();
+            patched[6] = 0;
+            patched[7] = 99;
+            return new ByteArrayInputStream(patched);
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.ImplicitGlobalDesign;
+import name.martingeisse.esdk.core.library.procedural.ProceduralVectorRegister;
+import name.martingeisse.esdk.core.library.signal.VectorConstant;
+import name.martingeisse.esdk.core.library.signal.VectorSignal;
+import name.martingeisse.esdk.core.library.signal.mux.ConditionalVectorOperation;
+import name.martingeisse.esdk.core.util.vector.Vector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ *
+ */
+public class GetterGeneratorTest {
+
+    private static final int LEAF_COUNT = 512;
+
+    @After
+    public void tearDown() {
+        ImplicitGlobalDesign.clear();
+    }
+
+    @Test
+    public void testLargeTreeComputedAsLong() {
+        testLargeTree(32);
+    }
+
+    @Test
+    public void testLargeTreeComputedAsVector() {
+        testLargeTree(100);
+    }
+
+    // Builds a tree of conditional operations that is too large for a single method, and checks that the generated
+    // getter is split into methods that HotSpot will compile, without changing the result. The tree is balanced, since
+    // a chain of that size would be too deep for the recursive rendering on a default-sized stack.
+    private static void testLargeTree(int width) {
+        Design design = new Design();
+        ProceduralVectorRegister selector = new ProceduralVectorRegister(width, Vector.of(width, 0x5a3c96e1L));
+        ProceduralVectorRegister operand = new ProceduralVectorRegister(width, Vector.of(width, 0x12345678L));
+        VectorSignal[] nodes = new VectorSignal[LEAF_COUNT];
+        for (int i = 0; i < LEAF_COUNT; i++) {
+            VectorSignal onTrue = operand.add(new VectorConstant(width, i));
+            VectorSignal onFalse = operand.xor(new VectorConstant(width, i));
+            nodes[i] = new ConditionalVectorOperation(selector.select(i % width), onTrue, onFalse);
+        }
+        for (int count = LEAF_COUNT / 2; count > 0; count /= 2) {
+            for (int i = 0; i < count; i++) {
+                VectorSignal sum = nodes[2 * i].add(nodes[2 * i + 1]);
+                VectorSignal difference = nodes[2 * i].subtract(nodes[2 * i + 1]);
+                nodes[i] = new ConditionalVectorOperation(selector.select((count + i) % width), sum, difference);
+            }
+        }
+        VectorSignal value = nodes[0];
+
+        VectorSignalGetter getter = DefaultSignalGetterFactory.getGetter(value);
+        Assert.assertEquals(value.getValue(), getter.getValue());
+
+        String prefix = getter.getClass().getName() + ".";
+        int totalSize = 0;
+        boolean outlined = false;
+        for (Map.Entry<String, Integer> entry : GeneratedClassLoader.forDesign(design).getMethodSizes().entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                Assert.assertTrue(entry.getKey() + ": " + entry.getValue(),
+                        entry.getValue() < GeneratedClassLoader.HUGE_METHOD_SIZE);
+                totalSize += entry.getValue();
+                if (entry.getKey().startsWith(prefix + "outlined")) {
+                    outlined = true;
+                }
+            }
+        }
+        Assert.assertTrue(outlined);
+        Assert.assertTrue(totalSize > GeneratedClassLoader.HUGE_METHOD_SIZE);
+    }
+
+}
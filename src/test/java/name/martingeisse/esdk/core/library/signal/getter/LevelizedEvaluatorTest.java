@@ -0,0 +1,75 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.ImplicitGlobalDesign;
+import name.martingeisse.esdk.core.library.clocked.Clock;
+import name.martingeisse.esdk.core.library.memory.Memory;
+import name.martingeisse.esdk.core.library.memory.SynchronousMemoryPort;
+import name.martingeisse.esdk.core.library.procedural.ClockedBlock;
+import name.martingeisse.esdk.core.library.procedural.ProceduralBitRegister;
+import name.martingeisse.esdk.core.library.procedural.ProceduralVectorRegister;
+import name.martingeisse.esdk.core.library.signal.BitConstant;
+import name.martingeisse.esdk.core.library.simulation.ClockGenerator;
+import name.martingeisse.esdk.core.library.simulation.SimulationTimeLimit;
+import name.martingeisse.esdk.core.util.vector.Vector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ *
+ */
+public class LevelizedEvaluatorTest {
+
+    @After
+    public void tearDown() {
+        ImplicitGlobalDesign.clear();
+    }
+
+    @Test
+    public void testLevelizedValuesMatchOnDemandValues() {
+        TraceDesign onDemand = new TraceDesign();
+        List<String> onDemandTrace = onDemand.simulate(200);
+        Assert.assertNull(onDemand.getDesign().getLevelizedEvaluator());
+
+        TraceDesign levelized = new TraceDesign();
+        levelized.getDesign().setLevelizedSimulationEnabled(true);
+        List<String> levelizedTrace = levelized.simulate(200);
+        Assert.assertTrue(levelized.getDesign().getLevelizedEvaluator().getNodeCount() > 0);
+
+        Assert.assertEquals(200, levelizedTrace.size());
+        Assert.assertEquals(onDemandTrace, levelizedTrace);
+    }
+
+    @Test
+    public void testUnusedMemoryReadWithOutOfRangeAddress() {
+        Assert.assertEquals(Vector.of(8, 0), simulateUnusedMemoryRead(false));
+        Assert.assertEquals(Vector.of(8, 0), simulateUnusedMemoryRead(true));
+    }
+
+    // Builds a design with an asynchronous read port whose address is out of range, but whose read data is only used
+    // under a condition that is never true, and returns the value of the register it would be assigned to.
+    private static Vector simulateUnusedMemoryRead(boolean levelized) {
+        Design design = new Design();
+        design.setLevelizedSimulationEnabled(levelized);
+        Clock clock = new Clock(new BitConstant(false));
+        new ClockGenerator(clock, 10);
+        new SimulationTimeLimit(1000);
+        Memory memory = new Memory(5, 8);
+        SynchronousMemoryPort port = memory.createSynchronousPort(clock, SynchronousMemoryPort.ReadSupport.ASYNCHRONOUS);
+        port.setClockEnableSignal(new BitConstant(false));
+        ProceduralVectorRegister address = new ProceduralVectorRegister(3, Vector.of(3, 7));
+        port.setAddressSignal(address);
+        ClockedBlock block = new ClockedBlock(clock);
+        ProceduralBitRegister useReadData = new ProceduralBitRegister(false);
+        ProceduralVectorRegister result = new ProceduralVectorRegister(8, Vector.of(8, 0));
+        block.getStatements().assign(address, address);
+        block.getStatements().assign(useReadData, useReadData);
+        block.getStatements().when(useReadData).getThenBranch().assign(result, port.getReadDataSignal());
+        design.simulate();
+        return result.getValue();
+    }
+
+}
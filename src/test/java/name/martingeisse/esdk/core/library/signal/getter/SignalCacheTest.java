@@ -0,0 +1,36 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.ImplicitGlobalDesign;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ *
+ */
+public class SignalCacheTest {
+
+    @After
+    public void tearDown() {
+        ImplicitGlobalDesign.clear();
+    }
+
+    @Test
+    public void testCachedValuesMatchUncachedValues() {
+        TraceDesign cached = new TraceDesign();
+        List<String> cachedTrace = cached.simulate(200);
+        Assert.assertTrue(cached.getDesign().getSignalCache().isEnabled());
+
+        // parallel simulation runs the same generated code without the cache
+        TraceDesign uncached = new TraceDesign();
+        uncached.getClock().setParallelSimulationEnabled(true);
+        List<String> uncachedTrace = uncached.simulate(200);
+        Assert.assertFalse(uncached.getDesign().getSignalCache().isEnabled());
+
+        Assert.assertEquals(200, cachedTrace.size());
+        Assert.assertEquals(uncachedTrace, cachedTrace);
+    }
+
+}
@@ -0,0 +1,95 @@
+package name.martingeisse.esdk.core.library.signal.getter;
+
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.library.clocked.Clock;
+import name.martingeisse.esdk.core.library.clocked.ClockedItem;
+import name.martingeisse.esdk.core.library.procedural.ClockedBlock;
+import name.martingeisse.esdk.core.library.procedural.ProceduralVectorRegister;
+import name.martingeisse.esdk.core.library.procedural.statement.SwitchStatement;
+import name.martingeisse.esdk.core.library.procedural.statement.WhenStatement;
+import name.martingeisse.esdk.core.library.signal.BitConstant;
+import name.martingeisse.esdk.core.library.signal.VectorSignal;
+import name.martingeisse.esdk.core.library.simulation.ClockGenerator;
+import name.martingeisse.esdk.core.library.simulation.SimulationTimeLimit;
+import name.martingeisse.esdk.core.tools.synthesis.verilog.contribution.VerilogContribution;
+import name.martingeisse.esdk.core.util.vector.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small design whose registers are computed from shared combinational signals through assignments, when and
+ * switch statements. Tests configure the design or its clock, simulate it and compare the traces of its registers
+ * with and without the feature under test.
+ */
+final class TraceDesign {
+
+    private final Design design;
+    private final Clock clock;
+    private final ProceduralVectorRegister a;
+    private final ProceduralVectorRegister b;
+    private final ProceduralVectorRegister c;
+    private final List<String> trace = new ArrayList<>();
+
+    TraceDesign() {
+        design = new Design();
+        clock = new Clock(new BitConstant(false));
+        ClockedBlock block = new ClockedBlock(clock);
+        a = new ProceduralVectorRegister(8, Vector.of(8, 1));
+        b = new ProceduralVectorRegister(8, Vector.of(8, 2));
+        c = new ProceduralVectorRegister(8, Vector.of(8, 0));
+        VectorSignal sum = a.add(b);
+        VectorSignal mixed = sum.xor(a);
+        block.getStatements().assign(a, sum.add(1));
+        WhenStatement when = block.getStatements().when(sum.select(0));
+        when.getThenBranch().assign(b, mixed.subtract(b));
+        when.getOtherwiseBranch().assign(b, mixed.add(c));
+        SwitchStatement switchStatement = block.getStatements().switchOn(sum.select(1, 0));
+        switchStatement.addCase(Vector.of(2, 0)).assign(c, c.add(mixed));
+        switchStatement.addCase(Vector.of(2, 1), Vector.of(2, 2)).assign(c, sum.xor(c));
+        switchStatement.getDefaultBranch().assign(c, c.xor(b));
+        new TraceRecorder();
+    }
+
+    Design getDesign() {
+        return design;
+    }
+
+    Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Simulates the specified number of clock cycles and returns the values of the registers before each cycle.
+     */
+    List<String> simulate(int cycles) {
+        new ClockGenerator(clock, 10);
+        new SimulationTimeLimit(cycles * 10L - 5);
+        design.simulate();
+        return trace;
+    }
+
+    // records the registers in computeNextState(), so it sees the values from before the clock edge
+    private final class TraceRecorder extends ClockedItem {
+
+        TraceRecorder() {
+            super(clock);
+        }
+
+        @Override
+        public void computeNextState() {
+            trace.add(a.getValue() + " " + b.getValue() + " " + c.getValue());
+        }
+
+        @Override
+        public void updateState() {
+        }
+
+        @Override
+        public VerilogContribution getVerilogContribution() {
+            throw newSynthesisNotSupportedException();
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+package name.martingeisse.esdk.core.tools.simulation;
+
+import name.martingeisse.esdk.core.Design;
+import name.martingeisse.esdk.core.ImplicitGlobalDesign;
+import name.martingeisse.esdk.core.library.clocked.Clock;
+import name.martingeisse.esdk.core.library.signal.BitConstant;
+import name.martingeisse.esdk.core.library.signal.VectorConstant;
+import name.martingeisse.esdk.core.library.signal.mux.VectorSwitchSignal;
+import name.martingeisse.esdk.core.library.signal.simulation.SimulatedSettableVectorSignal;
+import name.martingeisse.esdk.core.util.vector.Vector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class BitSlicedSimulationTest {
+
+    @After
+    public void tearDown() {
+        ImplicitGlobalDesign.clear();
+    }
+
+    @Test
+    public void testSwitchSignalWithDuplicateSelectorValue() {
+        new Design();
+        Clock clock = new Clock(new BitConstant(false));
+        SimulatedSettableVectorSignal selector = new SimulatedSettableVectorSignal(2);
+        selector.setValue(Vector.of(2, 0));
+        VectorSwitchSignal switchSignal = new VectorSwitchSignal(selector, 8);
+        switchSignal.addCase(Vector.of(2, 1), new VectorConstant(8, 10));
+        switchSignal.addCase(Vector.of(2, 1), Vector.of(2, 2), new VectorConstant(8, 20));
+        switchSignal.setDefaultSignal(new VectorConstant(8, 30));
+        BitSlicedSimulation simulation = new BitSlicedSimulation(clock);
+        for (int lane = 0; lane < BitSlicedSimulation.LANE_COUNT; lane++) {
+            simulation.setInput(selector, lane, Vector.of(2, lane & 3));
+        }
+        for (int lane = 0; lane < BitSlicedSimulation.LANE_COUNT; lane++) {
+            selector.setValue(Vector.of(2, lane & 3));
+            Assert.assertEquals("lane " + lane, switchSignal.getValue(), simulation.getValue(switchSignal, lane));
+        }
+        Assert.assertEquals(Vector.of(8, 10), simulation.getValue(switchSignal, 1));
+    }
+
+}
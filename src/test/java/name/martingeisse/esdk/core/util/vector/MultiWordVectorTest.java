@@ -0,0 +1,193 @@
+package name.martingeisse.esdk.core.util.vector;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the multi-word arithmetic against {@link BigInteger}, for widths that are multiples of 64 and widths that
+ * are not.
+ */
+public class MultiWordVectorTest {
+
+    private static final int[] WIDTHS = {65, 100, 127, 128, 129, 191, 192, 200};
+
+    @Test
+    public void testAdd() {
+        for (int width : WIDTHS) {
+            for (BigInteger a : getValues(width)) {
+                for (BigInteger b : getValues(width)) {
+                    assertVector(width, a.add(b), toVector(width, a).add(toVector(width, b)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAddCarriesAcrossWords() {
+        // all ones in the lower words plus one carries into the highest word
+        BigInteger lowWordsFull = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+        Vector sum = toVector(200, lowWordsFull).add(Vector.of(200, 1));
+        Assert.assertEquals(Vector.fromWords(200, new long[] {0, 0, 1}), sum);
+
+        // all ones wraps around to zero, including the partial top word
+        Assert.assertEquals(Vector.of(100, 0), Vector.repeat(100, true).add(Vector.of(100, 1)));
+        Assert.assertEquals(Vector.of(128, 0), Vector.repeat(128, true).add(Vector.of(128, 1)));
+    }
+
+    @Test
+    public void testSubtract() {
+        for (int width : WIDTHS) {
+            for (BigInteger a : getValues(width)) {
+                for (BigInteger b : getValues(width)) {
+                    assertVector(width, a.subtract(b), toVector(width, a).subtract(toVector(width, b)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSubtractBorrowsAcrossWords() {
+        // zero in the lower words minus one borrows from the highest word
+        Vector difference = Vector.fromWords(200, new long[] {0, 0, 1}).subtract(Vector.of(200, 1));
+        Assert.assertEquals(Vector.fromWords(200, new long[] {-1L, -1L, 0}), difference);
+
+        // zero minus one wraps around to all ones, including the partial top word
+        Assert.assertEquals(Vector.repeat(100, true), Vector.of(100, 0).subtract(Vector.of(100, 1)));
+        Assert.assertEquals(Vector.repeat(128, true), Vector.of(128, 0).subtract(Vector.of(128, 1)));
+    }
+
+    @Test
+    public void testMultiply() {
+        for (int width : WIDTHS) {
+            for (BigInteger a : getValues(width)) {
+                for (BigInteger b : getValues(width)) {
+                    assertVector(width, a.multiply(b), toVector(width, a).multiply(toVector(width, b)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMultiplyWordsWithHighestBitSet() {
+        // Math.multiplyHigh() treats these words as negative, so its result must be corrected for unsigned operands
+        long[][] wordPairs = {
+            {0x8000000000000000L, 0x8000000000000000L},
+            {0xffffffffffffffffL, 0xffffffffffffffffL},
+            {0xffffffffffffffffL, 2},
+            {0x8000000000000001L, 0x7fffffffffffffffL},
+            {0xdeadbeefcafebabeL, 0xfedcba9876543210L},
+        };
+        for (long[] pair : wordPairs) {
+            for (int width : WIDTHS) {
+                BigInteger a = unsigned(pair[0]);
+                BigInteger b = unsigned(pair[1]);
+                assertVector(width, a.multiply(b), toVector(width, a).multiply(toVector(width, b)));
+                if (width > 128) {
+                    // the same words in a higher position, so the cross-word products carry into the top word
+                    BigInteger wideA = a.shiftLeft(64).or(b);
+                    BigInteger wideB = b.shiftLeft(64).or(a);
+                    assertVector(width, wideA.multiply(wideB), toVector(width, wideA).multiply(toVector(width, wideB)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNegate() {
+        for (int width : WIDTHS) {
+            for (BigInteger a : getValues(width)) {
+                assertVector(width, a.negate(), toVector(width, a).negate());
+            }
+        }
+    }
+
+    @Test
+    public void testShift() {
+        for (int width : WIDTHS) {
+            for (BigInteger a : getValues(width)) {
+                for (int amount : getPositions(width)) {
+                    Vector vector = toVector(width, a);
+                    assertVector(width, a.shiftLeft(amount), vector.shiftLeft(amount));
+                    assertVector(width, a.shiftRight(amount), vector.shiftRight(amount));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSelect() {
+        for (int width : WIDTHS) {
+            for (BigInteger a : getValues(width)) {
+                Vector vector = toVector(width, a);
+                for (int to : getPositions(width)) {
+                    Assert.assertEquals(a.testBit(to), vector.select(to));
+                    for (int from : getPositions(width)) {
+                        if (from >= to) {
+                            BigInteger expected = a.shiftRight(to);
+                            assertVector(from - to + 1, expected, vector.select(from, to));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // helpers
+    // ----------------------------------------------------------------------------------------------------------------
+
+    // values with all bits or no bits set in a word, the highest bit of a word set, and random values
+    private static List<BigInteger> getValues(int width) {
+        BigInteger modulus = BigInteger.ONE.shiftLeft(width);
+        List<BigInteger> values = new ArrayList<>();
+        values.add(BigInteger.ZERO);
+        values.add(BigInteger.ONE);
+        values.add(modulus.subtract(BigInteger.ONE));
+        values.add(BigInteger.ONE.shiftLeft(width - 1));
+        values.add(BigInteger.ONE.shiftLeft(63));
+        values.add(BigInteger.ONE.shiftLeft(64));
+        values.add(BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE));
+        if (width > 128) {
+            values.add(BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE));
+        }
+        Random random = new Random(width);
+        for (int i = 0; i < 8; i++) {
+            values.add(new BigInteger(width, random));
+        }
+        return values;
+    }
+
+    // bit positions next to the word boundaries and at both ends
+    private static List<Integer> getPositions(int width) {
+        List<Integer> positions = new ArrayList<>();
+        for (int position : new int[] {0, 1, 62, 63, 64, 65, 127, 128, 129, width - 2, width - 1}) {
+            if (position < width && !positions.contains(position)) {
+                positions.add(position);
+            }
+        }
+        return positions;
+    }
+
+    private static BigInteger unsigned(long word) {
+        return new BigInteger(Long.toUnsignedString(word));
+    }
+
+    private static Vector toVector(int width, BigInteger value) {
+        value = value.mod(BigInteger.ONE.shiftLeft(width));
+        long[] words = new long[(width + 63) / 64];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = value.shiftRight(i * 64).longValue();
+        }
+        return Vector.fromWords(width, words);
+    }
+
+    private static void assertVector(int width, BigInteger expected, Vector actual) {
+        Assert.assertEquals(toVector(width, expected), actual);
+    }
+
+}